@@ -14,6 +14,13 @@ android {
         versionName = "2.0.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Logging HTTP: NONE, BASIC, HEADERS o BODY; muestreo 1 de cada N peticiones
+        buildConfigField("String", "NETWORK_LOG_LEVEL", "\"BASIC\"")
+        buildConfigField("int", "NETWORK_LOG_SAMPLE_RATE", "1")
+
+        // Tope del splash: se cierra antes si los datos y la sesión ya están listos
+        buildConfigField("long", "SPLASH_MAX_WAIT_MS", "3000L")
     }
 
     buildTypes {
@@ -23,11 +30,16 @@ android {
                 getDefaultProguardFile("proguard-android-optimize.txt"),
                 "proguard-rules.pro"
             )
+            // En release el logging queda apagado; si se activa en runtime, solo 1 de cada 50
+            buildConfigField("String", "NETWORK_LOG_LEVEL", "\"NONE\"")
+            buildConfigField("int", "NETWORK_LOG_SAMPLE_RATE", "50")
         }
         debug {
             isDebuggable = true
             applicationIdSuffix = ".debug"
             versionNameSuffix = "-debug"
+            buildConfigField("String", "NETWORK_LOG_LEVEL", "\"BODY\"")
+            buildConfigField("int", "NETWORK_LOG_SAMPLE_RATE", "1")
         }
     }
 
@@ -46,6 +58,11 @@ android {
             excludes += "/META-INF/{AL2.0,LGPL2.1}"
         }
     }
+
+    testOptions {
+        // Los tests locales corren en la JVM: Log y demás llamadas a android.jar no hacen nada
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -64,6 +81,7 @@ dependencies {
     implementation("com.squareup.retrofit2:converter-gson:2.9.0")
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
     implementation("com.squareup.okhttp3:logging-interceptor:4.12.0")
+    implementation("com.squareup.okhttp3:okhttp-brotli:4.12.0")
 
     // JSON parsing - Gson
     implementation("com.google.code.gson:gson:2.10.1")
@@ -100,6 +118,9 @@ dependencies {
 
     // Preferences DataStore (alternativa moderna a SharedPreferences)
     implementation("androidx.datastore:datastore-preferences:1.0.0")
+    // API de DataStore para Java (RxJava 3): sesión del usuario
+    implementation("androidx.datastore:datastore-preferences-rxjava3:1.0.0")
+    implementation("io.reactivex.rxjava3:rxjava:3.1.8")
 
     // Work Manager (para tareas en background)
     implementation("androidx.work:work-runtime:2.9.0")
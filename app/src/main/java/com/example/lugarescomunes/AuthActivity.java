@@ -68,16 +68,17 @@ public class AuthActivity extends AppCompatActivity {
         // Inicializar repositorio de autenticación
         authRepository = AuthRepository.getInstance(this);
 
-        // Verificar si ya está logueado
-        if (authRepository.isLoggedIn()) {
-            Log.d(TAG, "Usuario ya logueado, navegando a MainActivity");
-            navigateToMainActivity();
-            return;
-        }
-
         initializeViews();
         setupClickListeners();
         setupInitialState();
+
+        // Verificar si ya está logueado (la sesión se lee de disco en segundo plano)
+        authRepository.whenSessionLoaded().thenAccept(repository -> runOnUiThread(() -> {
+            if (repository.isLoggedIn() && !isFinishing()) {
+                Log.d(TAG, "Usuario ya logueado, navegando a MainActivity");
+                navigateToMainActivity();
+            }
+        }));
     }
 
     private void initializeViews() {
@@ -0,0 +1,48 @@
+package com.example.lugarescomunes;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.example.lugarescomunes.api.ApiConfig;
+import com.example.lugarescomunes.repository.RoutesRepository;
+import com.example.lugarescomunes.repository.local.OfflineRoutesStore;
+import com.example.lugarescomunes.work.OutboxWorker;
+
+public class LugaresApplication extends Application {
+
+    private static final String TAG = "LugaresApplication";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Cliente HTTP único con cache en disco antes de que cualquier Activity lo use
+        ApiConfig.init(this);
+
+        // Íconos de tipos de lugar rasterizados en segundo plano antes de la primera lista o mapa
+        PlaceIconAtlas.getInstance(this).preload();
+
+        // Paquetes offline y cola de envíos de rutas, sin depender de qué pantalla se abra primero
+        RoutesRepository.getInstance(this);
+
+        // Escrituras que quedaron en la cola de sesiones anteriores
+        OutboxWorker.schedule(this);
+
+        Log.i(TAG, "Aplicación inicializada");
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Lo que se pueda volver a descargar es lo primero en liberarse
+        RoutesRepository.getInstance().onTrimMemory(level);
+        OfflineRoutesStore.getInstance(this).onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        RoutesRepository.getInstance().onTrimMemory(TRIM_MEMORY_COMPLETE);
+        OfflineRoutesStore.getInstance(this).onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+}
@@ -2,8 +2,6 @@ package com.example.lugarescomunes;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.View;
@@ -23,8 +21,10 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.lugarescomunes.repository.PlacesRepository;
+import com.example.lugarescomunes.startup.ReadinessGate;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
@@ -32,6 +32,7 @@ public class MainActivity extends AppCompatActivity {
     // Views del Splash Screen
     private LinearLayout splashContainer;
     private LinearLayout mainContentContainer;
+    private ReadinessGate splashGate;
 
     // Views del Header
     private ImageView searchIconImageView;
@@ -52,9 +53,6 @@ public class MainActivity extends AppCompatActivity {
     private List<Place> filteredPlacesList;
     private PlacesRepository placesRepository;
 
-    // Constantes
-    private static final int SPLASH_DURATION = 2500; // 2.5 segundos
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -82,8 +80,9 @@ public class MainActivity extends AppCompatActivity {
         setupClickListeners();
         setupSearchFunctionality();
 
-        // Mostrar splash screen y luego la pantalla principal
+        // Mostrar splash screen mientras se cargan los lugares
         showSplashScreen();
+        loadPlaces();
     }
     private void initializeViews() {
         // Splash screen views
@@ -124,11 +123,18 @@ public class MainActivity extends AppCompatActivity {
             }
 
             @Override
-            public void onFavoriteClick(Place place) {
-                // Manejar click en favorito
-                String message = place.isFavorite() ?
-                        "Agregado a favoritos" : "Removido de favoritos";
-                Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+            public void onFavoriteClick(Place clicked) {
+                // Manejar click en favorito (el adapter entrega su copia, se cambia el original)
+                for (Place place : placesList) {
+                    if (place.getId() != null && place.getId().equals(clicked.getId())) {
+                        place.setFavorite(!place.isFavorite());
+                        String message = place.isFavorite() ?
+                                "Agregado a favoritos" : "Removido de favoritos";
+                        Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+                        break;
+                    }
+                }
+                placesAdapter.updatePlaces(filteredPlacesList);
             }
 
             @Override
@@ -138,9 +144,6 @@ public class MainActivity extends AppCompatActivity {
                 startActivity(intent);
             }
         });
-
-        // Cargar datos de ejemplo
-        loadSampleData();
     }
 
     private void setupClickListeners() {
@@ -205,16 +208,15 @@ public class MainActivity extends AppCompatActivity {
         splashContainer.setVisibility(View.VISIBLE);
         mainContentContainer.setVisibility(View.GONE);
 
-        // Después del tiempo definido, mostrar contenido principal
-        new Handler(Looper.getMainLooper()).postDelayed(this::showMainContent, SPLASH_DURATION);
+        // Mostrar contenido principal en cuanto haya lugares (o al cumplirse el tope)
+        splashGate = new ReadinessGate(EnumSet.of(ReadinessGate.Condition.DATA),
+                BuildConfig.SPLASH_MAX_WAIT_MS, this::showMainContent);
+        splashGate.start();
     }
 
     private void showMainContent() {
         splashContainer.setVisibility(View.GONE);
         mainContentContainer.setVisibility(View.VISIBLE);
-
-        // Cargar datos (simulamos carga)
-        loadPlaces();
     }
 
     private void toggleSearchBar() {
@@ -240,14 +242,6 @@ public class MainActivity extends AppCompatActivity {
     private void loadPlaces() {
         showLoading(true);
 
-        // Simular carga de datos desde API
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            showLoading(false);
-            updatePlacesList();
-        }, 1500);
-    }
-
-    private void loadSampleData() {
         // Cargar datos desde el repositorio
         placesRepository.getAllPlaces()
                 .thenAccept(places -> {
@@ -256,11 +250,16 @@ public class MainActivity extends AppCompatActivity {
                         placesList.addAll(places);
                         filteredPlacesList.clear();
                         filteredPlacesList.addAll(places);
-                        placesAdapter.notifyDataSetChanged();
+                        showLoading(false);
+                        updatePlacesList();
+                        splashGate.markReady(ReadinessGate.Condition.DATA);
                     });
                 })
                 .exceptionally(throwable -> {
                     runOnUiThread(() -> {
+                        showLoading(false);
+                        updatePlacesList();
+                        splashGate.markReady(ReadinessGate.Condition.DATA);
                         Toast.makeText(this, "Error cargando lugares: " + throwable.getMessage(),
                                 Toast.LENGTH_SHORT).show();
                     });
@@ -304,7 +303,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updatePlacesList() {
-        placesAdapter.notifyDataSetChanged();
+        placesAdapter.updatePlaces(filteredPlacesList);
 
         if (filteredPlacesList.isEmpty()) {
             emptyStateContainer.setVisibility(View.VISIBLE);
@@ -320,4 +319,12 @@ public class MainActivity extends AppCompatActivity {
         placesRecyclerView.setVisibility(show ? View.GONE : View.VISIBLE);
         emptyStateContainer.setVisibility(View.GONE);
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (splashGate != null) {
+            splashGate.cancel();
+        }
+    }
 }
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.example.lugarescomunes;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.location.Location;
 import android.os.Bundle;
 import android.util.Log;
@@ -12,6 +15,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.example.lugarescomunes.map.PlaceCluster;
+import com.example.lugarescomunes.map.PlaceClusterer;
 import com.example.lugarescomunes.repository.PlacesRepository;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
@@ -19,15 +24,26 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.tasks.OnSuccessListener;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import androidx.appcompat.widget.Toolbar;
 
@@ -39,11 +55,44 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     // Coordenadas del campus PUCE (centro aproximado)
     private static final LatLng PUCE_CAMPUS = new LatLng(-0.210759, -78.487359);
 
+    // Margen alrededor del área visible (fracción del ancho/alto): desplazamientos chicos
+    // no agregan ni quitan marcadores
+    private static final double VIEWPORT_PADDING = 0.25;
+    private static final int CLUSTER_ICON_DP = 40;
+    private static final float UNAVAILABLE_ALPHA = 0.6f;
+    private static final float DIMMED_ALPHA = 0.35f;
+    private static final float HIGHLIGHT_Z_INDEX = 1f;
+
     private GoogleMap mMap;
     private FusedLocationProviderClient fusedLocationClient;
     private PlacesRepository placesRepository;
     private Map<Marker, Place> markerPlaceMap;
 
+    // Agrupamiento: se calcula en un hilo de fondo; en el hilo principal solo se aplican diferencias
+    private final ExecutorService clusterExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "map-clusters");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private PlaceClusterer clusterer = PlaceClusterer.EMPTY;
+    // Evita aplicar el resultado de un cálculo que ya quedó viejo
+    private int clusterGeneration = 0;
+    // Marcadores en el mapa por clave de PlaceCluster. Un lugar solo tiene clave
+    // PlaceClusterer.keyFor(id), así que id -> Marker es una consulta directa.
+    private final Map<String, Marker> markersByKey = new HashMap<>();
+    private final Map<Marker, PlaceCluster> markerClusterMap = new HashMap<>();
+    // Lugar -> clave del grupo que lo contiene, solo para lugares agrupados en el mapa
+    private final Map<String, String> clusterKeyByPlaceId = new HashMap<>();
+    // Todos los lugares cargados por id (copias propias: las actualizaciones no tocan el cache)
+    private final Map<String, Place> placesById = new HashMap<>();
+    private Set<String> highlightedIds = Collections.emptySet();
+    // Lugar a enfocar cuando su marcador aparezca (estaba agrupado o fuera de la vista)
+    private String pendingFocusId;
+
+    // Íconos reutilizados: los de tipo vienen de PlaceIconAtlas; uno por etiqueta de grupo
+    private PlaceIconAtlas iconAtlas;
+    private final Map<String, BitmapDescriptor> clusterIcons = new HashMap<>();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -62,6 +111,7 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         // Inicializar servicios
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         placesRepository = PlacesRepository.getInstance();
+        iconAtlas = PlaceIconAtlas.getInstance(this);
         markerPlaceMap = new HashMap<>();
 
         // Inicializar mapa
@@ -106,8 +156,17 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         mMap.getUiSettings().setCompassEnabled(true);
         mMap.getUiSettings().setMyLocationButtonEnabled(true);
 
+        // Recalcular marcadores cuando la cámara se detiene
+        mMap.setOnCameraIdleListener(this::refreshMarkers);
+
         // Listener para clicks en marcadores
         mMap.setOnMarkerClickListener(marker -> {
+            PlaceCluster cluster = markerClusterMap.get(marker);
+            if (cluster != null && !cluster.isSingle()) {
+                // Grupo: acercar hasta separar sus lugares
+                zoomIntoCluster(cluster);
+                return true;
+            }
             Place place = markerPlaceMap.get(marker);
             if (place != null) {
                 showPlaceInfo(place);
@@ -165,6 +224,9 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
                                 LatLng currentLocation = new LatLng(location.getLatitude(), location.getLongitude());
                                 Log.d(TAG, "Ubicación actual: " + currentLocation);
 
+                                // Distancias calculadas en el dispositivo con el índice espacial
+                                placesRepository.updateDistances(location.getLatitude(), location.getLongitude());
+
                                 // Si está dentro del campus, centrar en ubicación actual
                                 if (isLocationInCampus(currentLocation)) {
                                     mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(currentLocation, 18f));
@@ -189,6 +251,7 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         Log.d(TAG, "Cargando lugares en el mapa...");
 
         placesRepository.getAllPlaces()
+                // El índice de agrupamiento se arma fuera del hilo principal
                 .thenAccept(places -> {
                     runOnUiThread(() -> {
                         Log.d(TAG, "Agregando " + places.size() + " lugares al mapa");
@@ -206,48 +269,254 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     }
 
     private void addPlacesToMap(List<Place> places) {
-        mMap.clear();
-        markerPlaceMap.clear();
+        if (isFinishing() || isDestroyed() || mMap == null) {
+            return;
+        }
+        placesById.clear();
+        for (Place place : places) {
+            if (place != null && place.getId() != null) {
+                placesById.put(place.getId(), new Place(place));
+            }
+        }
+        rebuildClusterer();
+    }
+
+    // El índice de agrupamiento se arma fuera del hilo principal
+    private void rebuildClusterer() {
+        if (!canUseClusterExecutor()) {
+            return;
+        }
+        List<Place> snapshot = new ArrayList<>(placesById.values());
+        CompletableFuture.supplyAsync(() -> PlaceClusterer.build(snapshot), clusterExecutor)
+                .thenAccept(built -> runOnUiThread(() -> {
+                    if (!isDestroyed()) {
+                        clusterer = built;
+                        refreshMarkers();
+                    }
+                }))
+                .exceptionally(throwable -> {
+                    Log.e(TAG, "Error armando el índice del mapa", throwable);
+                    return null;
+                });
+    }
+
+    // Calcula en segundo plano los marcadores del área visible (con margen) y aplica el resultado
+    private void refreshMarkers() {
+        if (mMap == null || !canUseClusterExecutor()) {
+            return;
+        }
+
+        LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        float zoom = mMap.getCameraPosition().zoom;
+        double latPadding = (bounds.northeast.latitude - bounds.southwest.latitude) * VIEWPORT_PADDING;
+        double lngPadding = (bounds.northeast.longitude - bounds.southwest.longitude) * VIEWPORT_PADDING;
+        double south = bounds.southwest.latitude - latPadding;
+        double west = bounds.southwest.longitude - lngPadding;
+        double north = bounds.northeast.latitude + latPadding;
+        double east = bounds.northeast.longitude + lngPadding;
+
+        int generation = ++clusterGeneration;
+        PlaceClusterer current = clusterer;
+        CompletableFuture.supplyAsync(() -> current.clusters(south, west, north, east, zoom), clusterExecutor)
+                .thenAccept(clusters -> runOnUiThread(() -> {
+                    if (generation == clusterGeneration && !isDestroyed()) {
+                        applyClusters(clusters);
+                    }
+                }))
+                .exceptionally(throwable -> {
+                    Log.e(TAG, "Error calculando marcadores", throwable);
+                    return null;
+                });
+    }
+
+    // Después de onDestroy el executor ya no acepta tareas (RejectedExecutionException):
+    // un updatePlaces o un fin de movimiento de cámara que llegue tarde se ignora.
+    // Todo corre en el hilo principal, igual que onDestroy, así que no hay carrera.
+    private boolean canUseClusterExecutor() {
+        return !isDestroyed() && !clusterExecutor.isShutdown();
+    }
+
+    // Solo se tocan los marcadores que entran o salen; los que siguen iguales no se recrean
+    private void applyClusters(List<PlaceCluster> clusters) {
+        Map<String, PlaceCluster> wanted = new HashMap<>(clusters.size() * 2);
+        for (PlaceCluster cluster : clusters) {
+            wanted.put(cluster.getKey(), cluster);
+        }
+
+        int removed = 0;
+        Iterator<Map.Entry<String, Marker>> iterator = markersByKey.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Marker> entry = iterator.next();
+            if (!wanted.containsKey(entry.getKey())) {
+                Marker marker = entry.getValue();
+                unindex(entry.getKey(), markerClusterMap.remove(marker));
+                markerPlaceMap.remove(marker);
+                marker.remove();
+                iterator.remove();
+                removed++;
+            }
+        }
+
+        int added = 0;
+        for (PlaceCluster cluster : clusters) {
+            Marker marker = markersByKey.get(cluster.getKey());
+            if (marker != null) {
+                // Mismo marcador; el grupo puede traer copias nuevas de los lugares
+                index(marker, cluster);
+                continue;
+            }
+            marker = mMap.addMarker(markerOptionsFor(cluster));
+            if (marker != null) {
+                markersByKey.put(cluster.getKey(), marker);
+                index(marker, cluster);
+                restyle(marker);
+                added++;
+            }
+        }
+
+        Log.d(TAG, "Marcadores: +" + added + " -" + removed + " (" + markersByKey.size() + " en el mapa)");
+
+        if (pendingFocusId != null) {
+            Marker focused = markersByKey.get(PlaceClusterer.keyFor(pendingFocusId));
+            if (focused != null) {
+                focused.showInfoWindow();
+                pendingFocusId = null;
+            }
+        }
+    }
+
+    private void index(Marker marker, PlaceCluster cluster) {
+        markerClusterMap.put(marker, cluster);
+        if (cluster.isSingle()) {
+            markerPlaceMap.put(marker, cluster.getPlace());
+            return;
+        }
+        for (Place place : cluster.getPlaces()) {
+            clusterKeyByPlaceId.put(place.getId(), cluster.getKey());
+        }
+    }
+
+    private void unindex(String key, PlaceCluster cluster) {
+        if (cluster == null || cluster.isSingle()) {
+            return;
+        }
+        for (Place place : cluster.getPlaces()) {
+            // Otro grupo pudo haber tomado el lugar en este mismo recálculo
+            if (key.equals(clusterKeyByPlaceId.get(place.getId()))) {
+                clusterKeyByPlaceId.remove(place.getId());
+            }
+        }
+    }
+
+    // Marcador que hoy representa al lugar: el propio o el del grupo que lo contiene.
+    // null si está fuera del área visible.
+    public Marker getMarkerForPlace(String placeId) {
+        Marker marker = markersByKey.get(PlaceClusterer.keyFor(placeId));
+        if (marker != null) {
+            return marker;
+        }
+        String clusterKey = clusterKeyByPlaceId.get(placeId);
+        return clusterKey != null ? markersByKey.get(clusterKey) : null;
+    }
+
+    // Opacidad y orden según disponibilidad y resaltado
+    private void restyle(Marker marker) {
+        // Para un lugar solo, markerPlaceMap tiene la versión más reciente
+        Place single = markerPlaceMap.get(marker);
+        PlaceCluster cluster = markerClusterMap.get(marker);
+        List<Place> places = single != null ? Collections.singletonList(single) :
+                cluster != null ? cluster.getPlaces() : Collections.emptyList();
 
+        boolean highlighted = false;
         for (Place place : places) {
-            if (place.getLatitude() != 0 && place.getLongitude() != 0) {
-                LatLng position = new LatLng(place.getLatitude(), place.getLongitude());
-
-                MarkerOptions markerOptions = new MarkerOptions()
-                        .position(position)
-                        .title(place.getName())
-                        .snippet(place.getCategory() + " • " + place.getWhat3words())
-                        .icon(BitmapDescriptorFactory.defaultMarker(getMarkerColor(place.getType())));
-
-                Marker marker = mMap.addMarker(markerOptions);
-                if (marker != null) {
-                    markerPlaceMap.put(marker, place);
-                }
+            if (highlightedIds.contains(place.getId())) {
+                highlighted = true;
+                break;
             }
         }
 
-        Log.d(TAG, "Marcadores agregados: " + markerPlaceMap.size());
+        float alpha = 1f;
+        if (!highlightedIds.isEmpty() && !highlighted) {
+            alpha = DIMMED_ALPHA;
+        } else if (single != null && !single.isAvailable()) {
+            alpha = UNAVAILABLE_ALPHA;
+        }
+        marker.setAlpha(alpha);
+        marker.setZIndex(highlighted ? HIGHLIGHT_Z_INDEX : 0f);
+    }
+
+    private MarkerOptions markerOptionsFor(PlaceCluster cluster) {
+        LatLng position = new LatLng(cluster.getLatitude(), cluster.getLongitude());
+        if (cluster.isSingle()) {
+            Place place = cluster.getPlace();
+            return new MarkerOptions()
+                    .position(position)
+                    .title(place.getName())
+                    .snippet(place.getCategory() + " • " + place.getWhat3words())
+                    .anchor(0.5f, 0.5f)
+                    .icon(iconAtlas.getMarkerDescriptor(place.getType()));
+        }
+        return new MarkerOptions()
+                .position(position)
+                .title(cluster.size() + " lugares")
+                .anchor(0.5f, 0.5f)
+                .icon(getClusterIcon(cluster.size()));
+    }
+
+    private void zoomIntoCluster(PlaceCluster cluster) {
+        LatLngBounds.Builder builder = LatLngBounds.builder();
+        for (Place place : cluster.getPlaces()) {
+            builder.include(new LatLng(place.getLatitude(), place.getLongitude()));
+        }
+        int padding = (int) (48 * getResources().getDisplayMetrics().density);
+        mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), padding));
+    }
+
+    // Círculo con la cantidad; por encima de 9 se agrupa en tramos para no crear un ícono por número
+    private BitmapDescriptor getClusterIcon(int size) {
+        String label = clusterLabel(size);
+        BitmapDescriptor icon = clusterIcons.get(label);
+        if (icon != null) {
+            return icon;
+        }
+
+        float density = getResources().getDisplayMetrics().density;
+        int pixels = (int) (CLUSTER_ICON_DP * density);
+        Bitmap bitmap = Bitmap.createBitmap(pixels, pixels, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint circle = new Paint(Paint.ANTI_ALIAS_FLAG);
+        circle.setColor(ContextCompat.getColor(this, R.color.primary));
+        canvas.drawCircle(pixels / 2f, pixels / 2f, pixels / 2f, circle);
+        circle.setColor(ContextCompat.getColor(this, R.color.white));
+        circle.setStyle(Paint.Style.STROKE);
+        circle.setStrokeWidth(2 * density);
+        canvas.drawCircle(pixels / 2f, pixels / 2f, pixels / 2f - density, circle);
+
+        Paint text = new Paint(Paint.ANTI_ALIAS_FLAG);
+        text.setColor(ContextCompat.getColor(this, R.color.white));
+        text.setTextSize(14 * density);
+        text.setFakeBoldText(true);
+        text.setTextAlign(Paint.Align.CENTER);
+        float baseline = pixels / 2f - (text.descent() + text.ascent()) / 2f;
+        canvas.drawText(label, pixels / 2f, baseline, text);
+
+        icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+        clusterIcons.put(label, icon);
+        return icon;
     }
 
-    private float getMarkerColor(PlaceType placeType) {
-        switch (placeType) {
-            case CLASSROOM:
-                return BitmapDescriptorFactory.HUE_BLUE;
-            case LABORATORY:
-                return BitmapDescriptorFactory.HUE_ORANGE;
-            case LIBRARY:
-                return BitmapDescriptorFactory.HUE_VIOLET;
-            case CAFETERIA:
-                return BitmapDescriptorFactory.HUE_GREEN;
-            case OFFICE:
-                return BitmapDescriptorFactory.HUE_RED;
-            case AUDITORIUM:
-                return BitmapDescriptorFactory.HUE_YELLOW;
-            case SERVICE:
-                return BitmapDescriptorFactory.HUE_CYAN;
-            default:
-                return BitmapDescriptorFactory.HUE_RED;
+    private String clusterLabel(int size) {
+        if (size < 10) {
+            return String.valueOf(size);
+        }
+        int[] steps = {1000, 500, 250, 100, 50, 25, 10};
+        for (int step : steps) {
+            if (size >= step) {
+                return step + "+";
+            }
         }
+        return String.valueOf(size);
     }
 
     private void showPlaceInfo(Place place) {
@@ -262,17 +531,97 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     // Método público para navegar a un lugar específico
     public void navigateToPlace(Place place) {
-        if (mMap != null && place.getLatitude() != 0 && place.getLongitude() != 0) {
-            LatLng position = new LatLng(place.getLatitude(), place.getLongitude());
-            mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(position, 19f));
-
-            // Encontrar y mostrar el marcador
-            for (Map.Entry<Marker, Place> entry : markerPlaceMap.entrySet()) {
-                if (entry.getValue().getId().equals(place.getId())) {
-                    entry.getKey().showInfoWindow();
-                    break;
-                }
+        if (place != null && place.getId() != null) {
+            focusPlace(place.getId());
+        }
+    }
+
+    // ===== API DE MARCADORES POR ID =====
+
+    // Centra el mapa en el lugar y muestra su ventana de información. Si está agrupado o fuera
+    // de la vista, la ventana se abre cuando su marcador aparezca al terminar el movimiento.
+    public boolean focusPlace(String placeId) {
+        Place place = placesById.get(placeId);
+        if (mMap == null || place == null ||
+                (place.getLatitude() == 0 && place.getLongitude() == 0)) {
+            return false;
+        }
+
+        LatLng position = new LatLng(place.getLatitude(), place.getLongitude());
+        float zoom = Math.max(PlaceClusterer.MAX_CLUSTER_ZOOM, mMap.getCameraPosition().zoom);
+        mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(position, zoom));
+
+        Marker marker = markersByKey.get(PlaceClusterer.keyFor(placeId));
+        if (marker != null) {
+            marker.showInfoWindow();
+            pendingFocusId = null;
+        } else {
+            pendingFocusId = placeId;
+        }
+        return true;
+    }
+
+    // Resalta estos lugares (los demás se atenúan); una colección vacía quita el resaltado.
+    // Recorre solo los marcadores presentes, que el recorte por viewport mantiene acotados.
+    public void highlightPlaces(Collection<String> placeIds) {
+        highlightedIds = placeIds == null || placeIds.isEmpty() ?
+                Collections.emptySet() : new HashSet<>(placeIds);
+        for (Marker marker : markerClusterMap.keySet()) {
+            restyle(marker);
+        }
+    }
+
+    // Aplica cambios de muchos lugares a la vez (p. ej. disponibilidad enviada por el servidor).
+    // Cada marcador visible se actualiza en su lugar; después se recalculan los grupos en segundo plano.
+    public void updatePlaces(Collection<Place> updatedPlaces) {
+        if (updatedPlaces == null || updatedPlaces.isEmpty()) {
+            return;
+        }
+
+        int touched = 0;
+        for (Place updated : updatedPlaces) {
+            if (updated == null || updated.getId() == null) {
+                continue;
             }
+            Place place = new Place(updated);
+            placesById.put(place.getId(), place);
+
+            Marker marker = markersByKey.get(PlaceClusterer.keyFor(place.getId()));
+            if (marker == null) {
+                continue;
+            }
+            markerPlaceMap.put(marker, place);
+            marker.setPosition(new LatLng(place.getLatitude(), place.getLongitude()));
+            marker.setTitle(place.getName());
+            marker.setSnippet(place.getCategory() + " • " + place.getWhat3words());
+            marker.setIcon(iconAtlas.getMarkerDescriptor(place.getType()));
+            restyle(marker);
+            touched++;
+        }
+
+        Log.d(TAG, updatedPlaces.size() + " lugares actualizados, " + touched + " marcadores visibles");
+        if (mMap != null) {
+            rebuildClusterer();
         }
     }
-}
\ No newline at end of file
+
+    // Solo cambia la disponibilidad de los lugares indicados
+    public void updateAvailability(Map<String, Boolean> availabilityById) {
+        List<Place> updated = new ArrayList<>(availabilityById.size());
+        for (Map.Entry<String, Boolean> entry : availabilityById.entrySet()) {
+            Place place = placesById.get(entry.getKey());
+            if (place != null && entry.getValue() != null && place.isAvailable() != entry.getValue()) {
+                Place copy = new Place(place);
+                copy.setAvailable(entry.getValue());
+                updated.add(copy);
+            }
+        }
+        updatePlaces(updated);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        clusterExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.lugarescomunes;
+
+import android.Manifest;
+import android.location.Location;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.example.lugarescomunes.location.LocationTracker;
+import com.example.lugarescomunes.models.CompactPolyline;
+import com.example.lugarescomunes.navigation.NavigationEngine;
+import com.example.lugarescomunes.navigation.NavigationViewModel;
+import com.example.lugarescomunes.repository.NavigationRepository;
+import com.example.lugarescomunes.repository.RoutesRepository;
+
+import java.util.Locale;
+
+// Navegación paso a paso sobre una ruta: el seguimiento corre en el dispositivo (NavigationEngine)
+// y el servidor solo se entera del inicio y del fin de la sesión.
+public class NavigationActivity extends AppCompatActivity {
+
+    private static final String TAG = "NavigationActivity";
+    private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
+
+    // Constantes para Intent extras
+    public static final String EXTRA_ROUTE_ID = "route_id";
+    public static final String EXTRA_ROUTE_NAME = "route_name";
+    public static final String EXTRA_DESTINATION_NAME = "destination_name";
+    public static final String EXTRA_DESTINATION_ID = "destination_id";
+
+    // Views
+    private Toolbar toolbar;
+    private TextView statusTextView;
+    private TextView instructionDistanceTextView;
+    private TextView instructionTextView;
+    private TextView landmarkTextView;
+    private ProgressBar routeProgressBar;
+    private TextView remainingTextView;
+    private Button finishButton;
+
+    // Datos de la ruta
+    private String routeId;
+    private String routeName;
+    private String destinationName;
+    private String destinationId;
+
+    // Motor y sesión viven en el ViewModel: una rotación no reinicia la navegación
+    private NavigationViewModel navigation;
+    private NavigationEngine engine;
+    private LocationTracker locationTracker;
+    private boolean locationPermissionRequested = false;
+    private Location lastLocation;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_navigation);
+
+        Log.d(TAG, "=== NAVIGATION ACTIVITY INICIADA ===");
+
+        routeId = getIntent().getStringExtra(EXTRA_ROUTE_ID);
+        routeName = getIntent().getStringExtra(EXTRA_ROUTE_NAME);
+        destinationName = getIntent().getStringExtra(EXTRA_DESTINATION_NAME);
+        destinationId = getIntent().getStringExtra(EXTRA_DESTINATION_ID);
+
+        if (routeId == null || routeId.trim().isEmpty()) {
+            Log.e(TAG, "No se recibió la ruta a navegar");
+            Toast.makeText(this, "Error: ruta no especificada", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        // La pantalla se mantiene encendida mientras se navega
+        getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+
+        initializeViews();
+        setupToolbar();
+
+        navigation = new ViewModelProvider(this).get(NavigationViewModel.class);
+        locationTracker = new LocationTracker(this, this::onLocationChanged);
+
+        if (navigation.getEngine() != null) {
+            // Recreada (rotación): se sigue con el mismo motor y la misma sesión
+            resumeNavigation(navigation.getEngine());
+        } else {
+            loadRoute();
+        }
+    }
+
+    private void initializeViews() {
+        toolbar = findViewById(R.id.toolbar);
+        statusTextView = findViewById(R.id.navigationStatusTextView);
+        instructionDistanceTextView = findViewById(R.id.instructionDistanceTextView);
+        instructionTextView = findViewById(R.id.instructionTextView);
+        landmarkTextView = findViewById(R.id.landmarkTextView);
+        routeProgressBar = findViewById(R.id.routeProgressBar);
+        remainingTextView = findViewById(R.id.remainingTextView);
+        finishButton = findViewById(R.id.finishNavigationButton);
+
+        finishButton.setOnClickListener(v -> {
+            finishNavigation(false);
+            finish();
+        });
+    }
+
+    private void setupToolbar() {
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setDisplayShowHomeEnabled(true);
+            getSupportActionBar().setTitle(destinationName != null ? destinationName : "Navegación");
+            if (routeName != null) {
+                getSupportActionBar().setSubtitle(routeName);
+            }
+        }
+    }
+
+    // El recorrido sale del paquete offline si existe; si no, de la API
+    private void loadRoute() {
+        RoutesRepository.getInstance(this).getRoutePolyline(routeId, destinationId)
+                .thenAccept(polyline -> runOnUiThread(() -> onRouteLoaded(polyline)))
+                .exceptionally(throwable -> {
+                    Log.e(TAG, "Error cargando recorrido de la ruta " + routeId, throwable);
+                    runOnUiThread(() -> {
+                        instructionTextView.setText("No se pudo cargar el recorrido");
+                        statusTextView.setText("Verifica tu conexión e intenta de nuevo");
+                    });
+                    return null;
+                });
+    }
+
+    private void onRouteLoaded(CompactPolyline polyline) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (polyline == null || polyline.isEmpty()) {
+            instructionTextView.setText("Esta ruta no tiene recorrido disponible");
+            statusTextView.setText("");
+            return;
+        }
+
+        engine = new NavigationEngine(polyline);
+        navigation.setEngine(engine);
+        Log.d(TAG, "Recorrido cargado: " + polyline.size() + " puntos, " +
+                Math.round(engine.getTotalMeters()) + " m");
+
+        instructionTextView.setText("Esperando señal GPS...");
+        remainingTextView.setText("Distancia total: " + formatDistance(engine.getTotalMeters()));
+
+        // Si ya había una ubicación (el tracker arrancó antes que la ruta), usarla de inmediato
+        if (lastLocation != null) {
+            onLocationChanged(lastLocation);
+        }
+    }
+
+    private void resumeNavigation(NavigationEngine existing) {
+        engine = existing;
+        if (engine.getLastUpdate() != null) {
+            render(engine.getLastUpdate());
+        } else {
+            instructionTextView.setText("Esperando señal GPS...");
+            remainingTextView.setText("Distancia total: " + formatDistance(engine.getTotalMeters()));
+        }
+    }
+
+    // ===== UBICACIÓN =====
+
+    private void startLocationUpdates() {
+        if (locationTracker.start() || locationPermissionRequested) {
+            return;
+        }
+        locationPermissionRequested = true;
+        ActivityCompat.requestPermissions(this,
+                new String[]{Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION},
+                LOCATION_PERMISSION_REQUEST_CODE);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
+                                           @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+
+        if (requestCode != LOCATION_PERMISSION_REQUEST_CODE) {
+            return;
+        }
+        if (LocationTracker.hasPermission(this)) {
+            locationTracker.start();
+        } else {
+            statusTextView.setText("Se necesita permiso de ubicación para navegar");
+        }
+    }
+
+    private void onLocationChanged(Location location) {
+        lastLocation = location;
+        if (engine == null || navigation.isFinished()) {
+            return;
+        }
+
+        if (navigation.getSessionId() == null) {
+            startSession(location);
+        }
+
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : 0f;
+        NavigationEngine.Update update = engine.update(location.getLatitude(), location.getLongitude(), accuracy);
+        render(update);
+
+        if (update.getState() == NavigationEngine.State.ARRIVED) {
+            finishNavigation(true);
+        }
+    }
+
+    private void startSession(Location location) {
+        // Se encola: sin señal se sigue navegando y el registro sale cuando vuelva la red
+        String sessionId = NavigationRepository.getInstance(this)
+                .startNavigation(routeId, location.getLatitude(), location.getLongitude());
+        navigation.startSession(sessionId, SystemClock.elapsedRealtime());
+    }
+
+    private void render(NavigationEngine.Update update) {
+        switch (update.getState()) {
+            case ARRIVED:
+                statusTextView.setText("");
+                instructionDistanceTextView.setText("🏁");
+                instructionTextView.setText(destinationName != null ?
+                        "Llegaste a " + destinationName : "Llegaste a tu destino");
+                landmarkTextView.setVisibility(View.GONE);
+                routeProgressBar.setProgress(100);
+                remainingTextView.setText("");
+                finishButton.setText("Cerrar");
+                return;
+            case OFF_ROUTE:
+                statusTextView.setText("⚠️ Estás fuera de la ruta (" +
+                        formatDistance(update.getDistanceFromRoute()) + "). Regresa al recorrido.");
+                statusTextView.setTextColor(ContextCompat.getColor(this, R.color.warning));
+                break;
+            default:
+                statusTextView.setText("En ruta");
+                statusTextView.setTextColor(ContextCompat.getColor(this, R.color.textSecondary));
+                break;
+        }
+
+        if (update.getInstruction() != null) {
+            instructionDistanceTextView.setText(formatDistance(update.getDistanceToInstruction()));
+            instructionTextView.setText(update.getInstruction());
+        } else {
+            instructionDistanceTextView.setText(formatDistance(update.getRemainingMeters()));
+            instructionTextView.setText("Continúa hasta el destino");
+        }
+
+        if (update.getLandmark() != null && !update.getLandmark().trim().isEmpty()) {
+            landmarkTextView.setText("📍 " + update.getLandmark());
+            landmarkTextView.setVisibility(View.VISIBLE);
+        } else {
+            landmarkTextView.setVisibility(View.GONE);
+        }
+
+        routeProgressBar.setProgress((int) Math.round(update.getProgress() * 100));
+        remainingTextView.setText("Faltan " + formatDistance(update.getRemainingMeters()));
+    }
+
+    // Cierra la sesión una sola vez: al llegar, al tocar "Finalizar" o al salir de la pantalla
+    private void finishNavigation(boolean arrived) {
+        if (navigation == null || navigation.isFinished()) {
+            return;
+        }
+        navigation.setFinished();
+        if (locationTracker != null) {
+            locationTracker.stop();
+        }
+
+        String sessionId = navigation.getSessionId();
+        if (sessionId == null) {
+            Log.d(TAG, "Navegación terminada sin sesión iniciada");
+            return;
+        }
+
+        double latitude = lastLocation != null ? lastLocation.getLatitude() : 0;
+        double longitude = lastLocation != null ? lastLocation.getLongitude() : 0;
+        int minutes = (int) Math.max(1, Math.ceil((SystemClock.elapsedRealtime() - navigation.getStartedAt()) / 60000.0));
+
+        NavigationRepository.getInstance(this)
+                .completeNavigation(sessionId, latitude, longitude, minutes, arrived);
+
+        if (arrived) {
+            Toast.makeText(this, "¡Llegaste a tu destino!", Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private String formatDistance(double meters) {
+        if (meters >= 1000) {
+            return String.format(Locale.getDefault(), "%.1f km", meters / 1000);
+        }
+        return Math.round(meters) + " m";
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            onBackPressed();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (navigation != null && !navigation.isFinished()) {
+            startLocationUpdates();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (locationTracker != null) {
+            locationTracker.stop();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Salir sin llegar cuenta como navegación abandonada; en una rotación (no isFinishing)
+        // la sesión sigue abierta en el ViewModel
+        if (isFinishing()) {
+            finishNavigation(false);
+        }
+    }
+}
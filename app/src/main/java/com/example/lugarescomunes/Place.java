@@ -94,6 +94,33 @@ public class Place {
         this.placeTypeString = "CLASSROOM";
     }
 
+    // Copia superficial (las listas se comparten). Los adapters muestran copias para que el
+    // diff detecte los cambios hechos después sobre el original (favorito, distancia...)
+    public Place(Place other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.category = other.category;
+        this.description = other.description;
+        this.what3words = other.what3words;
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+        this.isAvailable = other.isAvailable;
+        this.placeTypeString = other.placeTypeString;
+        this.capacity = other.capacity;
+        this.schedule = other.schedule;
+        this.imageUrl = other.imageUrl;
+        this.buildingName = other.buildingName;
+        this.floorNumber = other.floorNumber;
+        this.roomCode = other.roomCode;
+        this.equipment = other.equipment;
+        this.accessibilityFeatures = other.accessibilityFeatures;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.isFavorite = other.isFavorite;
+        this.distanceInMeters = other.distanceInMeters;
+        this.type = other.type;
+    }
+
     // Getters
     public String getId() {
         return id;
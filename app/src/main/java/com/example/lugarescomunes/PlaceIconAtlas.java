@@ -0,0 +1,192 @@
+package com.example.lugarescomunes;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Íconos de cada PlaceType rasterizados una sola vez y compartidos por la lista y el mapa.
+// Los vectores (ic_classroom, ic_library, ...) se inflan y dibujan al iniciar la app en un hilo
+// de fondo; después cada fila y cada marcador reutilizan el mismo Bitmap / BitmapDescriptor.
+public class PlaceIconAtlas {
+
+    private static final String TAG = "PlaceIconAtlas";
+
+    // Glifo de la lista (el ImageView de 40dp tiene 8dp de padding)
+    private static final int GLYPH_DP = 24;
+    // Marcador del mapa: círculo del color del tipo con el glifo adentro
+    private static final int MARKER_DP = 36;
+    private static final int MARKER_GLYPH_DP = 20;
+    private static final float MARKER_BORDER_DP = 2f;
+
+    private static PlaceIconAtlas instance;
+
+    private final Context context;
+    private final Map<PlaceType, Bitmap> glyphs = new EnumMap<>(PlaceType.class);
+    private final Map<PlaceType, Bitmap> markers = new EnumMap<>(PlaceType.class);
+    // Solo se pueden crear con el SDK de mapas inicializado (después de onMapReady)
+    private final Map<PlaceType, BitmapDescriptor> markerDescriptors = new EnumMap<>(PlaceType.class);
+
+    private PlaceIconAtlas(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized PlaceIconAtlas getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaceIconAtlas(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Etapa de inicio: rasteriza todos los tipos fuera del hilo principal
+    public void preload() {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "place-icons");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        executor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            for (PlaceType type : PlaceType.values()) {
+                getGlyph(type);
+                getMarkerBitmap(type);
+            }
+            Log.d(TAG, "Íconos de " + PlaceType.values().length + " tipos listos en " +
+                    (SystemClock.elapsedRealtime() - start) + "ms");
+        });
+        executor.shutdown();
+    }
+
+    // Si la precarga todavía no llegó a este tipo, se dibuja en el momento (una sola vez)
+    public synchronized Bitmap getGlyph(PlaceType type) {
+        PlaceType key = type != null ? type : PlaceType.SERVICE;
+        Bitmap bitmap = glyphs.get(key);
+        if (bitmap == null) {
+            bitmap = rasterize(iconFor(key), dp(GLYPH_DP));
+            glyphs.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    public synchronized Bitmap getMarkerBitmap(PlaceType type) {
+        PlaceType key = type != null ? type : PlaceType.SERVICE;
+        Bitmap bitmap = markers.get(key);
+        if (bitmap == null) {
+            bitmap = drawMarker(key);
+            markers.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    // Llamar desde el hilo principal con el mapa ya listo
+    public synchronized BitmapDescriptor getMarkerDescriptor(PlaceType type) {
+        PlaceType key = type != null ? type : PlaceType.SERVICE;
+        BitmapDescriptor descriptor = markerDescriptors.get(key);
+        if (descriptor == null) {
+            descriptor = BitmapDescriptorFactory.fromBitmap(getMarkerBitmap(key));
+            markerDescriptors.put(key, descriptor);
+        }
+        return descriptor;
+    }
+
+    public static int iconFor(PlaceType type) {
+        switch (type) {
+            case CLASSROOM:
+                return R.drawable.ic_classroom;
+            case LABORATORY:
+                return R.drawable.ic_laboratory;
+            case LIBRARY:
+                return R.drawable.ic_library;
+            case CAFETERIA:
+                return R.drawable.ic_cafeteria;
+            case OFFICE:
+                return R.drawable.ic_office;
+            case AUDITORIUM:
+                return R.drawable.ic_auditorium;
+            case SERVICE:
+                return R.drawable.ic_service;
+            default:
+                return R.drawable.ic_classroom;
+        }
+    }
+
+    public static int backgroundFor(PlaceType type) {
+        switch (type) {
+            case CLASSROOM:
+                return R.drawable.circle_background_blue;
+            case LABORATORY:
+                return R.drawable.circle_background_orange;
+            case LIBRARY:
+                return R.drawable.circle_background_purple;
+            case CAFETERIA:
+                return R.drawable.circle_background_green;
+            case OFFICE:
+                return R.drawable.circle_background_red;
+            case AUDITORIUM:
+                return R.drawable.circle_background_gray;
+            case SERVICE:
+                return R.drawable.circle_background_blue;
+            default:
+                return R.drawable.circle_background_blue;
+        }
+    }
+
+    private Bitmap drawMarker(PlaceType type) {
+        int size = dp(MARKER_DP);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        // Borde blanco para que el marcador se distinga sobre el mapa híbrido
+        Paint border = new Paint(Paint.ANTI_ALIAS_FLAG);
+        border.setColor(ContextCompat.getColor(context, R.color.white));
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f, border);
+
+        int inset = Math.round(MARKER_BORDER_DP * density());
+        Drawable circle = ContextCompat.getDrawable(context, backgroundFor(type));
+        if (circle != null) {
+            circle.setBounds(inset, inset, size - inset, size - inset);
+            circle.draw(canvas);
+        }
+
+        int glyphSize = dp(MARKER_GLYPH_DP);
+        int offset = (size - glyphSize) / 2;
+        Drawable glyph = ContextCompat.getDrawable(context, iconFor(type));
+        if (glyph != null) {
+            glyph.setBounds(offset, offset, offset + glyphSize, offset + glyphSize);
+            glyph.draw(canvas);
+        }
+        return bitmap;
+    }
+
+    private Bitmap rasterize(int drawableRes, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Drawable drawable = ContextCompat.getDrawable(context, drawableRes);
+        if (drawable != null) {
+            Canvas canvas = new Canvas(bitmap);
+            drawable.setBounds(0, 0, size, size);
+            drawable.draw(canvas);
+        }
+        return bitmap;
+    }
+
+    private float density() {
+        return context.getResources().getDisplayMetrics().density;
+    }
+
+    private int dp(int value) {
+        return Math.round(value * density());
+    }
+}
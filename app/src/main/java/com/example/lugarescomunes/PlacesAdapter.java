@@ -10,13 +10,24 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewHolder> {
 
-    private List<Place> places;
+    // Payloads para re-bind parcial de una fila
+    public static final String PAYLOAD_FAVORITE = "favorite";
+    public static final String PAYLOAD_AVAILABILITY = "availability";
+    public static final String PAYLOAD_DISTANCE = "distance";
+
+    // Diff en background por Place.id; la lista actual es inmutable y contiene copias
+    private final AsyncListDiffer<Place> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private Context context;
     private OnPlaceClickListener listener;
 
@@ -27,9 +38,51 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
         void onNavigateClick(Place place);
     }
 
+    private static final DiffUtil.ItemCallback<Place> DIFF_CALLBACK = new DiffUtil.ItemCallback<Place>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Place oldItem, @NonNull Place newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Place oldItem, @NonNull Place newItem) {
+            return sameCardContent(oldItem, newItem) &&
+                    oldItem.isFavorite() == newItem.isFavorite() &&
+                    oldItem.isAvailable() == newItem.isAvailable() &&
+                    oldItem.getDistanceInMeters() == newItem.getDistanceInMeters();
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Place oldItem, @NonNull Place newItem) {
+            // Cambió texto o tipo: re-bind completo
+            if (!sameCardContent(oldItem, newItem)) {
+                return null;
+            }
+            List<String> payloads = new ArrayList<>(3);
+            if (oldItem.isFavorite() != newItem.isFavorite()) {
+                payloads.add(PAYLOAD_FAVORITE);
+            }
+            if (oldItem.isAvailable() != newItem.isAvailable()) {
+                payloads.add(PAYLOAD_AVAILABILITY);
+            }
+            if (oldItem.getDistanceInMeters() != newItem.getDistanceInMeters()) {
+                payloads.add(PAYLOAD_DISTANCE);
+            }
+            return payloads;
+        }
+    };
+
+    private static boolean sameCardContent(Place a, Place b) {
+        return Objects.equals(a.getName(), b.getName()) &&
+                Objects.equals(a.getCategory(), b.getCategory()) &&
+                Objects.equals(a.getDescription(), b.getDescription()) &&
+                Objects.equals(a.getWhat3words(), b.getWhat3words()) &&
+                a.getType() == b.getType();
+    }
+
     public PlacesAdapter(List<Place> places, Context context) {
-        this.places = places;
         this.context = context;
+        updatePlaces(places);
     }
 
     public void setOnPlaceClickListener(OnPlaceClickListener listener) {
@@ -45,13 +98,34 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
 
     @Override
     public void onBindViewHolder(@NonNull PlaceViewHolder holder, int position) {
-        Place place = places.get(position);
+        Place place = differ.getCurrentList().get(position);
         holder.bind(place);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull PlaceViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        Place place = differ.getCurrentList().get(position);
+        // Los listeners deben apuntar a la copia que se muestra ahora
+        holder.setupClickListeners(place);
+        for (Object payload : payloads) {
+            if (payload instanceof Collection) {
+                for (Object item : (Collection<?>) payload) {
+                    holder.bindPayload(place, item);
+                }
+            } else {
+                holder.bindPayload(place, payload);
+            }
+        }
+    }
+
     @Override
     public int getItemCount() {
-        return places.size();
+        return differ.getCurrentList().size();
     }
 
     public class PlaceViewHolder extends RecyclerView.ViewHolder {
@@ -68,8 +142,13 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
         private LinearLayout distanceContainer;
         private TextView distanceTextView;
 
+        private final PlaceIconAtlas iconAtlas;
+        // Tipo cuyo icono muestra la fila (las filas se reciclan)
+        private PlaceType boundType;
+
         public PlaceViewHolder(@NonNull View itemView) {
             super(itemView);
+            iconAtlas = PlaceIconAtlas.getInstance(itemView.getContext());
 
             // Inicializar views
             placeTypeIcon = itemView.findViewById(R.id.placeTypeIcon);
@@ -91,16 +170,47 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
             placeCategoryTextView.setText(place.getCategory());
             placeDescriptionTextView.setText(place.getDescription());
             what3wordsTextView.setText(place.getWhat3words());
-            distanceTextView.setText(place.getFormattedDistance());
+            bindDistance(place);
+
+            // Icono del tipo ya rasterizado (PlaceIconAtlas); si la fila se recicla con el mismo
+            // tipo no hace falta tocarlo
+            if (boundType != place.getType()) {
+                boundType = place.getType();
+                placeTypeIcon.setImageBitmap(iconAtlas.getGlyph(boundType));
+                placeTypeIcon.setBackgroundResource(PlaceIconAtlas.backgroundFor(boundType));
+            }
 
-            // Configurar icono del tipo de lugar
-            placeTypeIcon.setImageResource(getIconForPlaceType(place.getType()));
+            // Configurar disponibilidad
+            bindAvailability(place);
 
-            // Configurar background del icono según el tipo
-            int backgroundColor = getBackgroundColorForPlaceType(place.getType());
-            placeTypeIcon.setBackgroundResource(backgroundColor);
+            // Configurar icono de favorito
+            bindFavorite(place);
 
-            // Configurar disponibilidad
+            // Configurar color de la categoría
+            int categoryBackgroundColor = getCategoryBackgroundForPlaceType(place.getType());
+            placeCategoryTextView.setBackgroundResource(categoryBackgroundColor);
+
+            // Click listeners
+            setupClickListeners(place);
+        }
+
+        void bindPayload(Place place, Object payload) {
+            if (PAYLOAD_FAVORITE.equals(payload)) {
+                bindFavorite(place);
+            } else if (PAYLOAD_AVAILABILITY.equals(payload)) {
+                bindAvailability(place);
+            } else if (PAYLOAD_DISTANCE.equals(payload)) {
+                bindDistance(place);
+            } else {
+                bind(place);
+            }
+        }
+
+        private void bindDistance(Place place) {
+            distanceTextView.setText(place.getFormattedDistance());
+        }
+
+        private void bindAvailability(Place place) {
             availabilityTextView.setText(place.getAvailabilityText());
             int availabilityColor = place.isAvailable() ?
                     android.R.color.holo_green_light : android.R.color.holo_red_light;
@@ -108,18 +218,12 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
                     place.isAvailable() ? R.drawable.circle_background_green : R.drawable.circle_background_red
             );
             availabilityTextView.setTextColor(context.getResources().getColor(availabilityColor));
+        }
 
-            // Configurar icono de favorito
+        private void bindFavorite(Place place) {
             int favoriteIconRes = place.isFavorite() ?
                     R.drawable.ic_favorite : R.drawable.ic_favorite_border;
             favoriteIcon.setImageResource(favoriteIconRes);
-
-            // Configurar color de la categoría
-            int categoryBackgroundColor = getCategoryBackgroundForPlaceType(place.getType());
-            placeCategoryTextView.setBackgroundResource(categoryBackgroundColor);
-
-            // Click listeners
-            setupClickListeners(place);
         }
 
         private void setupClickListeners(Place place) {
@@ -137,21 +241,21 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
 
             // Click en favorito
             favoriteIcon.setOnClickListener(v -> {
-                place.setFavorite(!place.isFavorite());
+                // La fila muestra una copia: el listener cambia el original y envía la lista de
+                // nuevo, y el diff actualiza solo el icono (payload de favorito)
+                if (listener != null) {
+                    listener.onFavoriteClick(place);
+                    return;
+                }
 
-                // Actualizar icono
-                int favoriteIconRes = place.isFavorite() ?
-                        R.drawable.ic_favorite : R.drawable.ic_favorite_border;
-                favoriteIcon.setImageResource(favoriteIconRes);
+                Place updated = new Place(place);
+                updated.setFavorite(!place.isFavorite());
+                replacePlace(updated);
 
                 // Mostrar feedback
-                String message = place.isFavorite() ?
+                String message = updated.isFavorite() ?
                         "Agregado a favoritos" : "Removido de favoritos";
                 Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
-
-                if (listener != null) {
-                    listener.onFavoriteClick(place);
-                }
             });
 
             // Click en código what3words
@@ -199,48 +303,6 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
                     .show();
         }
 
-        private int getIconForPlaceType(PlaceType type) {
-            switch (type) {
-                case CLASSROOM:
-                    return R.drawable.ic_classroom;
-                case LABORATORY:
-                    return R.drawable.ic_laboratory;
-                case LIBRARY:
-                    return R.drawable.ic_library;
-                case CAFETERIA:
-                    return R.drawable.ic_cafeteria;
-                case OFFICE:
-                    return R.drawable.ic_office;
-                case AUDITORIUM:
-                    return R.drawable.ic_auditorium;
-                case SERVICE:
-                    return R.drawable.ic_service;
-                default:
-                    return R.drawable.ic_classroom;
-            }
-        }
-
-        private int getBackgroundColorForPlaceType(PlaceType type) {
-            switch (type) {
-                case CLASSROOM:
-                    return R.drawable.circle_background_blue;
-                case LABORATORY:
-                    return R.drawable.circle_background_orange;
-                case LIBRARY:
-                    return R.drawable.circle_background_purple;
-                case CAFETERIA:
-                    return R.drawable.circle_background_green;
-                case OFFICE:
-                    return R.drawable.circle_background_red;
-                case AUDITORIUM:
-                    return R.drawable.circle_background_gray;
-                case SERVICE:
-                    return R.drawable.circle_background_blue;
-                default:
-                    return R.drawable.circle_background_blue;
-            }
-        }
-
         private int getCategoryBackgroundForPlaceType(PlaceType type) {
             switch (type) {
                 case CLASSROOM:
@@ -263,29 +325,56 @@ public class PlacesAdapter extends RecyclerView.Adapter<PlacesAdapter.PlaceViewH
         }
     }
 
-    // Métodos para actualizar datos
+    // Métodos para actualizar datos: se calcula el diff contra lo mostrado en un hilo de fondo
+    // y se despachan solo los cambios. Se guardan copias, así que la lista recibida se puede
+    // seguir modificando sin afectar al adapter.
     public void updatePlaces(List<Place> newPlaces) {
-        this.places.clear();
-        this.places.addAll(newPlaces);
-        notifyDataSetChanged();
+        updatePlaces(newPlaces, null);
+    }
+
+    public void updatePlaces(List<Place> newPlaces, Runnable commitCallback) {
+        List<Place> snapshot = new ArrayList<>(newPlaces.size());
+        for (Place place : newPlaces) {
+            snapshot.add(new Place(place));
+        }
+        differ.submitList(snapshot, commitCallback);
     }
 
     public void addPlace(Place place) {
-        places.add(place);
-        notifyItemInserted(places.size() - 1);
+        List<Place> updated = new ArrayList<>(differ.getCurrentList());
+        updated.add(new Place(place));
+        differ.submitList(updated);
     }
 
     public void removePlace(int position) {
-        if (position >= 0 && position < places.size()) {
-            places.remove(position);
-            notifyItemRemoved(position);
+        List<Place> current = differ.getCurrentList();
+        if (position >= 0 && position < current.size()) {
+            List<Place> updated = new ArrayList<>(current);
+            updated.remove(position);
+            differ.submitList(updated);
         }
     }
 
+    private void replacePlace(Place place) {
+        List<Place> updated = new ArrayList<>(differ.getCurrentList());
+        for (int i = 0; i < updated.size(); i++) {
+            if (Objects.equals(updated.get(i).getId(), place.getId())) {
+                updated.set(i, place);
+                differ.submitList(updated);
+                return;
+            }
+        }
+    }
+
+    public List<Place> getCurrentPlaces() {
+        return differ.getCurrentList();
+    }
+
     public Place getPlaceAt(int position) {
-        if (position >= 0 && position < places.size()) {
-            return places.get(position);
+        List<Place> current = differ.getCurrentList();
+        if (position >= 0 && position < current.size()) {
+            return current.get(position);
         }
         return null;
     }
-}
\ No newline at end of file
+}
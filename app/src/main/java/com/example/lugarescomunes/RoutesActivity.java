@@ -19,8 +19,10 @@ import com.example.lugarescomunes.repository.RoutesRepository;
 import com.example.lugarescomunes.repository.PlacesRepository;
 import com.example.lugarescomunes.models.api.RouteResponse;
 import com.example.lugarescomunes.Place;
+import com.example.lugarescomunes.work.OfflineRoutesWorker;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class RoutesActivity extends AppCompatActivity {
@@ -74,7 +76,7 @@ public class RoutesActivity extends AppCompatActivity {
         getIntentData();
 
         // Inicializar repositorios
-        routesRepository = RoutesRepository.getInstance();
+        routesRepository = RoutesRepository.getInstance(this);
         placesRepository = PlacesRepository.getInstance();
 
         // Inicializar views
@@ -159,6 +161,9 @@ public class RoutesActivity extends AppCompatActivity {
     private void loadPlaceDetailsAndRoutes() {
         showLoading(true);
 
+        // Paquete offline en paralelo: si existe, las rutas aparecen sin esperar a la red
+        showOfflineRoutes();
+
         Log.d(TAG, "Cargando detalles del lugar: " + destinationId);
 
         // Primero cargar detalles del lugar
@@ -254,6 +259,29 @@ public class RoutesActivity extends AppCompatActivity {
         // placeImageView.setImageResource(R.drawable.placeholder_place_image);
     }
 
+    private void showOfflineRoutes() {
+        routesRepository.loadOfflineRoutes(destinationId)
+                .thenAccept(routes -> runOnUiThread(() -> {
+                    // La respuesta de la red pudo llegar antes: no pisarla con datos guardados
+                    if (routes.isEmpty() || !routesList.isEmpty()) {
+                        return;
+                    }
+                    Log.d(TAG, "Rutas desde paquete offline: " + routes.size());
+                    showLoading(false);
+                    displayRoutes(routes);
+                }));
+    }
+
+    private void displayRoutes(List<RouteResponse> routes) {
+        routesList.clear();
+        routesList.addAll(routes);
+        routesAdapter.updateRoutes(routesList);
+        showRoutesContent();
+
+        // Actualizar título de la sección
+        routesSectionTitleTextView.setText("🗺️ " + routes.size() + " rutas disponibles");
+    }
+
     private void loadRoutesToDestination() {
         Log.d(TAG, "Cargando rutas para destino: " + destinationId);
 
@@ -265,16 +293,15 @@ public class RoutesActivity extends AppCompatActivity {
                         Log.d(TAG, "Rutas recibidas: " + (routes != null ? routes.size() : 0));
 
                         if (routes != null && !routes.isEmpty()) {
-                            routesList.clear();
-                            routesList.addAll(routes);
-                            routesAdapter.notifyDataSetChanged();
-                            showRoutesContent();
-
-                            // Actualizar título de la sección
-                            routesSectionTitleTextView.setText("🗺️ " + routes.size() + " rutas disponibles");
+                            displayRoutes(routes);
 
                             Log.i(TAG, "Rutas cargadas exitosamente: " + routes.size());
                             Toast.makeText(this, routes.size() + " rutas encontradas", Toast.LENGTH_SHORT).show();
+
+                            // Guardar el destino para la próxima vez sin señal
+                            if (!routesRepository.hasOfflinePackage(destinationId)) {
+                                OfflineRoutesWorker.enqueue(this, Collections.singletonList(destinationId));
+                            }
                         } else {
                             Log.w(TAG, "No se encontraron rutas para el destino");
                             showEmptyState();
@@ -286,6 +313,11 @@ public class RoutesActivity extends AppCompatActivity {
                         showLoading(false);
                         Log.e(TAG, "Error cargando rutas", throwable);
 
+                        // Ya se muestran las rutas del paquete offline
+                        if (!routesList.isEmpty()) {
+                            return;
+                        }
+
                         String errorMessage = "Error cargando rutas";
                         if (throwable.getMessage() != null) {
                             errorMessage += ": " + throwable.getMessage();
@@ -319,16 +351,12 @@ public class RoutesActivity extends AppCompatActivity {
     private void handleNavigateClick(RouteResponse route) {
         Log.d(TAG, "Iniciar navegación con ruta: " + route.getName());
 
-        String message = String.format("🧭 Iniciando navegación hacia %s\nUsando: %s",
-                destinationName, route.getName());
-
-        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
-
-        // TODO: Implementar navegación real
-        // Intent navigationIntent = new Intent(this, NavigationActivity.class);
-        // navigationIntent.putExtra("route_id", route.getId());
-        // navigationIntent.putExtra("destination_place", destinationPlace);
-        // startActivity(navigationIntent);
+        Intent navigationIntent = new Intent(this, NavigationActivity.class);
+        navigationIntent.putExtra(NavigationActivity.EXTRA_ROUTE_ID, route.getId());
+        navigationIntent.putExtra(NavigationActivity.EXTRA_ROUTE_NAME, route.getName());
+        navigationIntent.putExtra(NavigationActivity.EXTRA_DESTINATION_NAME, destinationName);
+        navigationIntent.putExtra(NavigationActivity.EXTRA_DESTINATION_ID, destinationId);
+        startActivity(navigationIntent);
     }
 
     private void showLoading(boolean show) {
@@ -7,17 +7,22 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.lugarescomunes.models.api.RouteResponse;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class RoutesAdapter extends RecyclerView.Adapter<RoutesAdapter.RouteViewHolder> {
 
-    private List<RouteResponse> routes;
+    // Diff en background por RouteResponse.id
+    private final AsyncListDiffer<RouteResponse> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private OnRouteClickListener listener;
 
     public interface OnRouteClickListener {
@@ -25,9 +30,35 @@ public class RoutesAdapter extends RecyclerView.Adapter<RoutesAdapter.RouteViewH
         void onNavigateClick(RouteResponse route);
     }
 
+    private static final DiffUtil.ItemCallback<RouteResponse> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<RouteResponse>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull RouteResponse oldItem, @NonNull RouteResponse newItem) {
+                    return Objects.equals(oldItem.getId(), newItem.getId());
+                }
+
+                // Solo los campos que muestra la tarjeta
+                @Override
+                public boolean areContentsTheSame(@NonNull RouteResponse oldItem, @NonNull RouteResponse newItem) {
+                    return Objects.equals(oldItem.getName(), newItem.getName()) &&
+                            Objects.equals(oldItem.getDescription(), newItem.getDescription()) &&
+                            Objects.equals(oldItem.getFormattedDistance(), newItem.getFormattedDistance()) &&
+                            Objects.equals(oldItem.getTotalDistance(), newItem.getTotalDistance()) &&
+                            Objects.equals(oldItem.getFormattedTime(), newItem.getFormattedTime()) &&
+                            Objects.equals(oldItem.getEstimatedTime(), newItem.getEstimatedTime()) &&
+                            Objects.equals(oldItem.getDifficulty(), newItem.getDifficulty()) &&
+                            Objects.equals(oldItem.getDifficultyText(), newItem.getDifficultyText()) &&
+                            Objects.equals(oldItem.getRatingText(), newItem.getRatingText()) &&
+                            Objects.equals(oldItem.getAverageRating(), newItem.getAverageRating()) &&
+                            Objects.equals(oldItem.getTotalRatings(), newItem.getTotalRatings()) &&
+                            oldItem.isPopularRoute() == newItem.isPopularRoute() &&
+                            oldItem.isWellRatedRoute() == newItem.isWellRatedRoute();
+                }
+            };
+
     public RoutesAdapter(List<RouteResponse> routes, OnRouteClickListener listener) {
-        this.routes = routes;
         this.listener = listener;
+        updateRoutes(routes);
     }
 
     @NonNull
@@ -40,13 +71,13 @@ public class RoutesAdapter extends RecyclerView.Adapter<RoutesAdapter.RouteViewH
 
     @Override
     public void onBindViewHolder(@NonNull RouteViewHolder holder, int position) {
-        RouteResponse route = routes.get(position);
+        RouteResponse route = differ.getCurrentList().get(position);
         holder.bind(route, listener);
     }
 
     @Override
     public int getItemCount() {
-        return routes.size();
+        return differ.getCurrentList().size();
     }
 
     static class RouteViewHolder extends RecyclerView.ViewHolder {
@@ -282,29 +313,31 @@ public class RoutesAdapter extends RecyclerView.Adapter<RoutesAdapter.RouteViewH
         }
     }
 
-    // Métodos para actualizar datos
+    // Métodos para actualizar datos: diff en un hilo de fondo y solo los cambios a la vista
     public void updateRoutes(List<RouteResponse> newRoutes) {
-        this.routes.clear();
-        this.routes.addAll(newRoutes);
-        notifyDataSetChanged();
+        differ.submitList(new ArrayList<>(newRoutes));
     }
 
     public void addRoute(RouteResponse route) {
-        routes.add(route);
-        notifyItemInserted(routes.size() - 1);
+        List<RouteResponse> updated = new ArrayList<>(differ.getCurrentList());
+        updated.add(route);
+        differ.submitList(updated);
     }
 
     public void removeRoute(int position) {
-        if (position >= 0 && position < routes.size()) {
-            routes.remove(position);
-            notifyItemRemoved(position);
+        List<RouteResponse> current = differ.getCurrentList();
+        if (position >= 0 && position < current.size()) {
+            List<RouteResponse> updated = new ArrayList<>(current);
+            updated.remove(position);
+            differ.submitList(updated);
         }
     }
 
     public RouteResponse getRouteAt(int position) {
-        if (position >= 0 && position < routes.size()) {
-            return routes.get(position);
+        List<RouteResponse> current = differ.getCurrentList();
+        if (position >= 0 && position < current.size()) {
+            return current.get(position);
         }
         return null;
     }
-}
\ No newline at end of file
+}
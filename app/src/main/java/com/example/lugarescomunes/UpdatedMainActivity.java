@@ -1,6 +1,9 @@
 package com.example.lugarescomunes;
 
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -16,28 +19,42 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lugarescomunes.location.DistanceUpdater;
+import com.example.lugarescomunes.location.LocationTracker;
 import com.example.lugarescomunes.repository.PlacesRepository;
 import com.example.lugarescomunes.repository.AuthRepository;
 import com.example.lugarescomunes.models.api.UserResponse;
+import com.example.lugarescomunes.startup.ReadinessGate;
+import com.example.lugarescomunes.startup.StartupOrchestrator;
+import com.example.lugarescomunes.work.OfflineRoutesWorker;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class UpdatedMainActivity extends AppCompatActivity {
 
     private static final String TAG = "UpdatedMainActivity";
-    private static final int SPLASH_DURATION = 1500; // 1.5 segundos
+    private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
+    // Pausa de escritura antes de buscar
+    private static final long SEARCH_DEBOUNCE_MS = 250;
 
     // Views del Splash Screen
     private LinearLayout splashContainer;
     private LinearLayout mainContentContainer;
+    private ReadinessGate splashGate;
 
     // Views del Header
     private ImageView searchIconImageView;
@@ -57,10 +74,23 @@ public class UpdatedMainActivity extends AppCompatActivity {
     private PlacesAdapter placesAdapter;
     private List<Place> placesList;
     private List<Place> filteredPlacesList;
+    private boolean hasCachedData = false;
+
+    // Búsqueda: una sola búsqueda por pausa y solo se aplica el resultado más reciente
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingSearch;
+    private CompletableFuture<List<Place>> searchInProgress;
+    private int searchGeneration = 0;
 
     // Repositorios
     private PlacesRepository placesRepository;
+    // Null hasta que el arranque termina de leer la sesión guardada
     private AuthRepository authRepository;
+    private StartupOrchestrator startup;
+
+    // Ubicación: distancias y orden de la lista en vivo
+    private LocationTracker locationTracker;
+    private boolean locationPermissionRequested = false;
 
     // Estado del usuario
     private boolean isLoggedIn = false;
@@ -69,8 +99,14 @@ public class UpdatedMainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Sesión, cache, descarga y health check arrancan antes de inflar la pantalla
+        startup = StartupOrchestrator.getInstance();
+        startup.start(this);
+
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_main);
+        startup.watchFirstFrame(getWindow().getDecorView());
 
         Log.d(TAG, "=== UPDATED MAIN ACTIVITY INICIADA ===");
 
@@ -81,19 +117,54 @@ public class UpdatedMainActivity extends AppCompatActivity {
         });
 
         // Inicializar repositorios
-        placesRepository = PlacesRepository.getInstance();
-        authRepository = AuthRepository.getInstance(this);
-
-        // Verificar estado de autenticación
-        checkAuthenticationStatus();
+        placesRepository = PlacesRepository.getInstance(this);
+        locationTracker = new LocationTracker(this, this::onLocationChanged);
 
         initializeViews();
         setupRecyclerView();
         setupClickListeners();
         setupSearchFunctionality();
 
-        // Mostrar splash screen primero
+        // Mostrar splash screen primero: se cierra cuando haya datos y sesión
         showSplashScreen();
+
+        // Verificar estado de autenticación cuando la sesión guardada esté leída
+        restoreSession();
+
+        // El cache local y la descarga ya están en curso: se pintan detrás del splash
+        loadCachedPlaces();
+        loadPlaces();
+    }
+
+    private void restoreSession() {
+        startup.session().thenAccept(repository -> runOnUiThread(() -> {
+            if (isDestroyed()) {
+                return;
+            }
+            authRepository = repository;
+            checkAuthenticationStatus();
+            splashGate.markReady(ReadinessGate.Condition.SESSION);
+        }));
+    }
+
+    // Pintar inmediatamente los destinos guardados en disco (si existen)
+    private void loadCachedPlaces() {
+        startup.cachedPlaces()
+                .thenAccept(places -> runOnUiThread(() -> {
+                    // Si la red ya respondió no pisar datos más nuevos
+                    if (places.isEmpty() || !placesList.isEmpty()) {
+                        return;
+                    }
+
+                    hasCachedData = true;
+                    placesList.addAll(places);
+                    filteredPlacesList.addAll(places);
+                    placesAdapter.updatePlaces(filteredPlacesList);
+                    showContentWithData();
+                    splashGate.markReady(ReadinessGate.Condition.DATA);
+
+                    Log.i(TAG, "Destinos mostrados desde cache local: " + places.size());
+                }));
     }
 
     private void checkAuthenticationStatus() {
@@ -184,7 +255,12 @@ public class UpdatedMainActivity extends AppCompatActivity {
         Log.d(TAG, "RecyclerView configurado correctamente");
     }
 
-    private void handleFavoriteClick(Place place) {
+    private void handleFavoriteClick(Place clicked) {
+        // El adapter entrega su copia: cambiar el lugar original (compartido con el cache)
+        Place place = findPlaceById(clicked.getId());
+        if (place == null) {
+            return;
+        }
         place.setFavorite(!place.isFavorite());
 
         String message = place.isFavorite() ?
@@ -193,8 +269,13 @@ public class UpdatedMainActivity extends AppCompatActivity {
 
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
 
-        // Actualizar adapter para reflejar el cambio
-        placesAdapter.notifyDataSetChanged();
+        // El diff solo re-enlaza el icono de favorito de esa fila
+        placesAdapter.updatePlaces(filteredPlacesList);
+
+        // Los favoritos se precargan para consultarlos sin señal
+        if (place.isFavorite()) {
+            OfflineRoutesWorker.enqueue(this, Collections.singletonList(place.getId()));
+        }
 
         // TODO: Aquí se podría guardar en el servidor si el usuario está logueado
         if (isLoggedIn) {
@@ -202,6 +283,20 @@ public class UpdatedMainActivity extends AppCompatActivity {
         }
     }
 
+    private Place findPlaceById(String placeId) {
+        for (Place place : placesList) {
+            if (place.getId() != null && place.getId().equals(placeId)) {
+                return place;
+            }
+        }
+        for (Place place : filteredPlacesList) {
+            if (place.getId() != null && place.getId().equals(placeId)) {
+                return place;
+            }
+        }
+        return null;
+    }
+
     private void setupClickListeners() {
         // Click en icono de búsqueda
         searchIconImageView.setOnClickListener(v -> toggleSearchBar());
@@ -245,8 +340,7 @@ public class UpdatedMainActivity extends AppCompatActivity {
 
             @Override
             public void afterTextChanged(Editable s) {
-                String query = s.toString().trim();
-                filterPlaces(query);
+                scheduleSearch(s.toString().trim());
             }
         });
 
@@ -258,16 +352,22 @@ public class UpdatedMainActivity extends AppCompatActivity {
         splashContainer.setVisibility(View.VISIBLE);
         mainContentContainer.setVisibility(View.GONE);
 
-        // Después del tiempo del splash, mostrar contenido principal
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            splashContainer.setVisibility(View.GONE);
-            mainContentContainer.setVisibility(View.VISIBLE);
+        // Se cierra apenas haya destinos (cache o red) y la sesión esté leída; con red lenta
+        // y sin cache no se espera más que el tope: el contenido muestra su propio progreso
+        splashGate = new ReadinessGate(
+                EnumSet.of(ReadinessGate.Condition.DATA, ReadinessGate.Condition.SESSION),
+                BuildConfig.SPLASH_MAX_WAIT_MS,
+                this::hideSplashScreen);
+        splashGate.start();
 
-            // Cargar datos después de mostrar el contenido
-            loadPlacesWithHealthCheck();
-        }, SPLASH_DURATION);
+        Log.d(TAG, "Splash screen mostrado (máximo " + BuildConfig.SPLASH_MAX_WAIT_MS + "ms)");
+    }
 
-        Log.d(TAG, "Splash screen mostrado por " + SPLASH_DURATION + "ms");
+    private void hideSplashScreen() {
+        splashContainer.setVisibility(View.GONE);
+        mainContentContainer.setVisibility(View.VISIBLE);
+        startup.mark(StartupOrchestrator.Phase.SPLASH_DISMISSED);
+        reportFirstDataIfVisible();
     }
 
     private void updateUserInterface() {
@@ -361,88 +461,150 @@ public class UpdatedMainActivity extends AppCompatActivity {
         }
     }
 
-    private void loadPlacesWithHealthCheck() {
-        showLoading(true);
-
-        Log.d(TAG, "Iniciando health check de API");
-
-        // Verificar salud de la API primero
-        placesRepository.checkApiHealth()
-                .thenAccept(healthy -> {
-                    if (healthy) {
-                        Log.i(TAG, "API disponible, cargando destinos");
-                        runOnUiThread(() -> {
-                            loadPlacesFromBackend();
-                        });
-                    } else {
-                        runOnUiThread(() -> {
-                            Log.w(TAG, "API no disponible");
-                            showLoading(false);
-                            Toast.makeText(this, "⚠️ Servicio temporalmente no disponible. " +
-                                    "Verifica tu conexión a internet.", Toast.LENGTH_LONG).show();
-                            showEmptyState();
-                        });
-                    }
-                })
-                .exceptionally(throwable -> {
-                    Log.e(TAG, "Error en health check", throwable);
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Toast.makeText(this, "❌ Error de conexión. Verifica tu internet.", Toast.LENGTH_LONG).show();
-                        showEmptyState();
-                    });
-                    return null;
-                });
+    // Sin esperar al health check: la descarga sale de inmediato y el health check
+    // (que corre en paralelo) solo decide qué mensaje mostrar si falla
+    private void loadPlaces() {
+        // Con datos en cache no se bloquea la pantalla: se revalida en background
+        if (!hasCachedData) {
+            showLoading(true);
+        }
+        CompletableFuture<Boolean> health = startup.takeHealth();
+        loadPlacesFromBackend(health);
     }
 
-    private void loadPlacesFromBackend() {
-        Log.d(TAG, "Cargando destinos desde /routes/destinations");
+    private void loadPlacesFromBackend(CompletableFuture<Boolean> health) {
+        Log.d(TAG, "Revalidando destinos desde /routes/destinations");
 
-        placesRepository.getAllPlaces()
-                .thenAccept(places -> {
+        startup.takePlacesFetch(this::showFirstPlaces)
+                .thenAccept(diff -> {
                     runOnUiThread(() -> {
                         showLoading(false);
+                        // Con o sin destinos, ya hay una respuesta que mostrar
+                        splashGate.markReady(ReadinessGate.Condition.DATA);
 
-                        Log.d(TAG, "Destinos recibidos: " + (places != null ? places.size() : 0));
+                        List<Place> places = diff.getPlaces();
+                        Log.d(TAG, "Destinos recibidos: " + places.size() + " " + diff);
 
-                        if (places != null && !places.isEmpty()) {
-                            placesList.clear();
-                            placesList.addAll(places);
+                        if (!places.isEmpty()) {
+                            boolean firstLoad = placesList.isEmpty();
 
-                            filteredPlacesList.clear();
-                            filteredPlacesList.addAll(places);
-
-                            placesAdapter.notifyDataSetChanged();
+                            // Solo repintar si el servidor trajo algo distinto a lo mostrado
+                            if (firstLoad || diff.hasChanges() || placesList.size() != places.size()) {
+                                placesList.clear();
+                                placesList.addAll(places);
+                                applyCurrentFilter();
+                            }
                             showContentWithData();
 
                             Log.i(TAG, "Destinos cargados exitosamente: " + places.size());
-                            Toast.makeText(this, "🎯 " + places.size() + " destinos disponibles", Toast.LENGTH_SHORT).show();
+                            if (firstLoad) {
+                                Toast.makeText(this, "🎯 " + places.size() + " destinos disponibles", Toast.LENGTH_SHORT).show();
+                            }
                         } else {
                             Log.w(TAG, "No se encontraron destinos");
+                            placesList.clear();
+                            filteredPlacesList.clear();
+                            placesAdapter.updatePlaces(filteredPlacesList);
                             showEmptyState();
                         }
                     });
                 })
                 .exceptionally(throwable -> {
-                    runOnUiThread(() -> {
-                        showLoading(false);
-                        Log.e(TAG, "Error cargando destinos", throwable);
-
-                        String errorMessage = "Error cargando destinos";
-                        if (throwable.getMessage() != null) {
-                            errorMessage += ": " + throwable.getMessage();
-                        }
-
-                        Toast.makeText(this, "❌ " + errorMessage, Toast.LENGTH_LONG).show();
-                        showEmptyState();
-                    });
+                    Log.e(TAG, "Error cargando destinos", throwable);
+                    // El health check ya está en curso (o terminó): solo elige el mensaje
+                    health.handle((healthy, healthError) -> healthError == null && Boolean.TRUE.equals(healthy))
+                            .thenAccept(healthy -> runOnUiThread(() -> showLoadError(throwable, healthy)));
                     return null;
                 });
     }
 
+    private void showLoadError(Throwable throwable, boolean apiHealthy) {
+        showLoading(false);
+        // No va a haber más datos: el error se muestra sin esperar al tope del splash
+        splashGate.markReady(ReadinessGate.Condition.DATA);
+
+        // Con cache visible el error de red no debe vaciar la lista
+        if (!placesList.isEmpty()) {
+            String message = apiHealthy ? "📴 No se pudo actualizar, mostrando destinos guardados" :
+                    "📴 Sin conexión, mostrando destinos guardados";
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        if (!apiHealthy) {
+            Log.w(TAG, "API no disponible");
+            Toast.makeText(this, "⚠️ Servicio temporalmente no disponible. " +
+                    "Verifica tu conexión a internet.", Toast.LENGTH_LONG).show();
+            showEmptyState();
+            return;
+        }
+
+        String errorMessage = "Error cargando destinos";
+        if (throwable.getMessage() != null) {
+            errorMessage += ": " + throwable.getMessage();
+        }
+
+        Toast.makeText(this, "❌ " + errorMessage, Toast.LENGTH_LONG).show();
+        showEmptyState();
+    }
+
+    // Primeros destinos decodificados mientras el resto de la respuesta sigue llegando
+    private void showFirstPlaces(List<Place> firstPlaces) {
+        runOnUiThread(() -> {
+            if (!placesList.isEmpty()) {
+                return;
+            }
+            placesList.addAll(firstPlaces);
+            applyCurrentFilter();
+            showContentWithData();
+            splashGate.markReady(ReadinessGate.Condition.DATA);
+            Log.d(TAG, "Primeros destinos mostrados: " + firstPlaces.size());
+        });
+    }
+
+    private void applyCurrentFilter() {
+        String query = searchEditText != null ? searchEditText.getText().toString().trim() : "";
+        if (query.isEmpty()) {
+            if (placesRepository.hasUserLocation()) {
+                Collections.sort(placesList, DistanceUpdater.BY_DISTANCE);
+            }
+            filteredPlacesList.clear();
+            filteredPlacesList.addAll(placesList);
+            placesAdapter.updatePlaces(filteredPlacesList);
+        } else {
+            filterPlaces(query);
+        }
+    }
+
+    // Debounce: cada tecla reprograma la búsqueda; borrar el texto se aplica al instante
+    private void scheduleSearch(String query) {
+        if (pendingSearch != null) {
+            searchHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+
+        if (query.isEmpty()) {
+            filterPlaces(query);
+            return;
+        }
+
+        pendingSearch = () -> {
+            pendingSearch = null;
+            filterPlaces(query);
+        };
+        searchHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
     private void filterPlaces(String query) {
         Log.d(TAG, "Filtrando destinos con query: '" + query + "'");
 
+        // Cualquier resultado pendiente de una búsqueda anterior queda obsoleto
+        final int generation = ++searchGeneration;
+        if (searchInProgress != null) {
+            searchInProgress.cancel(false);
+            searchInProgress = null;
+        }
+
         if (query.trim().isEmpty()) {
             // Mostrar todos los lugares
             filteredPlacesList.clear();
@@ -450,12 +612,20 @@ public class UpdatedMainActivity extends AppCompatActivity {
             Log.d(TAG, "Mostrando todos los destinos: " + filteredPlacesList.size());
         } else {
             // Usar repositorio para búsqueda
-            placesRepository.searchPlaces(query)
+            CompletableFuture<List<Place>> search = placesRepository.searchPlaces(query);
+            searchInProgress = search;
+            search
                     .thenAccept(searchResults -> {
                         runOnUiThread(() -> {
+                            // Llegó tarde: ya se escribió otra búsqueda
+                            if (generation != searchGeneration) {
+                                Log.d(TAG, "Resultados descartados para '" + query + "'");
+                                return;
+                            }
+                            searchInProgress = null;
                             filteredPlacesList.clear();
                             filteredPlacesList.addAll(searchResults);
-                            placesAdapter.notifyDataSetChanged();
+                            placesAdapter.updatePlaces(filteredPlacesList);
 
                             Log.d(TAG, "Resultados de búsqueda: " + searchResults.size());
 
@@ -466,6 +636,11 @@ public class UpdatedMainActivity extends AppCompatActivity {
                     })
                     .exceptionally(throwable -> {
                         runOnUiThread(() -> {
+                            // Cancelada o reemplazada por una búsqueda más nueva
+                            if (generation != searchGeneration) {
+                                return;
+                            }
+                            searchInProgress = null;
                             Log.e(TAG, "Error en búsqueda", throwable);
                             Toast.makeText(this, "Error en búsqueda", Toast.LENGTH_SHORT).show();
                         });
@@ -474,10 +649,51 @@ public class UpdatedMainActivity extends AppCompatActivity {
             return;
         }
 
-        placesAdapter.notifyDataSetChanged();
+        placesAdapter.updatePlaces(filteredPlacesList);
         updateContentVisibility();
     }
 
+    // ===== UBICACIÓN =====
+
+    private void startLocationUpdates() {
+        if (locationTracker.start() || locationPermissionRequested) {
+            return;
+        }
+        locationPermissionRequested = true;
+        ActivityCompat.requestPermissions(this,
+                new String[]{Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION},
+                LOCATION_PERMISSION_REQUEST_CODE);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
+                                           @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+
+        if (requestCode == LOCATION_PERMISSION_REQUEST_CODE && LocationTracker.hasPermission(this)) {
+            locationTracker.start();
+        }
+    }
+
+    // El diff del adapter re-enlaza solo las filas cuyo tramo de distancia cambió (payload)
+    // y mueve las que cambian de orden
+    private void onLocationChanged(Location location) {
+        Set<String> changed = placesRepository.updateDistances(location.getLatitude(), location.getLongitude());
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Log.d(TAG, "Distancias actualizadas: " + changed.size() + " lugares");
+
+        // Con búsqueda activa se respeta el orden de los resultados
+        if (searchEditText.getText().toString().trim().isEmpty()) {
+            Collections.sort(placesList, DistanceUpdater.BY_DISTANCE);
+            filteredPlacesList.clear();
+            filteredPlacesList.addAll(placesList);
+        }
+        placesAdapter.updatePlaces(filteredPlacesList);
+    }
+
     private void showLoading(boolean show) {
         if (loadingProgressBar != null) {
             loadingProgressBar.setVisibility(show ? View.VISIBLE : View.GONE);
@@ -500,6 +716,14 @@ public class UpdatedMainActivity extends AppCompatActivity {
         if (loadingProgressBar != null) {
             loadingProgressBar.setVisibility(View.GONE);
         }
+        reportFirstDataIfVisible();
+    }
+
+    // Fin del arranque: hay destinos en la lista y el splash ya no los tapa
+    private void reportFirstDataIfVisible() {
+        if (!placesList.isEmpty() && mainContentContainer.getVisibility() == View.VISIBLE) {
+            startup.onFirstDataShown(this);
+        }
     }
 
     private void showEmptyState() {
@@ -528,22 +752,31 @@ public class UpdatedMainActivity extends AppCompatActivity {
         Log.d(TAG, "UpdatedMainActivity resumed");
 
         // Verificar si el estado de autenticación cambió
-        boolean currentLoginState = authRepository.isLoggedIn();
-        if (currentLoginState != isLoggedIn) {
+        boolean currentLoginState = authRepository != null && authRepository.isLoggedIn();
+        if (authRepository != null && currentLoginState != isLoggedIn) {
             isLoggedIn = currentLoginState;
             checkAuthenticationStatus();
         }
+
+        startLocationUpdates();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
         Log.d(TAG, "UpdatedMainActivity paused");
+
+        // Sin pantalla visible no se despierta el GPS
+        locationTracker.stop();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        searchHandler.removeCallbacksAndMessages(null);
+        if (splashGate != null) {
+            splashGate.cancel();
+        }
         Log.d(TAG, "UpdatedMainActivity destroyed");
     }
 }
\ No newline at end of file
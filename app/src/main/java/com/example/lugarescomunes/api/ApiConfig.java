@@ -1,13 +1,20 @@
 package com.example.lugarescomunes.api;
 
+import android.content.Context;
 import android.util.Log;
+import com.example.lugarescomunes.BuildConfig;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.brotli.BrotliInterceptor;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
@@ -16,19 +23,72 @@ public class ApiConfig {
     private static final String TAG = "ApiConfig";
     private static final String BASE_URL = "http://20.57.32.45:8080/api/";
 
+    private static final String HTTP_CACHE_DIR = "http_cache";
+    private static final long HTTP_CACHE_SIZE = 10L * 1024 * 1024; // 10 MB
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
     private static Retrofit retrofitInstance;
     private static LugaresApiService apiService;
-    private static String authToken = null;
+    private static OkHttpClient httpClient;
+    private static Cache httpCache;
+    // Lo lee el interceptor en cada petición: cambiarlo no requiere recrear el cliente
+    private static volatile String authToken = null;
+
+    // Pool de conexiones y dispatcher únicos durante toda la vida del proceso
+    private static final ConnectionPool connectionPool =
+            new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+    private static final Dispatcher dispatcher = new Dispatcher();
+    private static final NetworkMetrics networkMetrics = new NetworkMetrics();
+
+    // Logging HTTP: por defecto según el tipo de build, modificable en tiempo de ejecución
+    private static final NetworkLogger networkLogger = new NetworkLogger(
+            NetworkLogger.parseLevel(BuildConfig.NETWORK_LOG_LEVEL),
+            BuildConfig.NETWORK_LOG_SAMPLE_RATE);
+
+    // Validadores ETag / Last-Modified compartidos por todas las instancias del cliente
+    private static final ConditionalRequestInterceptor conditionalRequestInterceptor =
+            new ConditionalRequestInterceptor(BASE_URL);
+
+    // Compresión de peticiones marcadas y bytes en red vs decodificados por endpoint
+    private static final CompressionInterceptor compressionInterceptor = new CompressionInterceptor();
+
+    // Renovación del JWT (anticipada y ante 401) sin recrear el cliente
+    private static final TokenAuthenticator tokenAuthenticator = new TokenAuthenticator();
+
+    // Inicializar con contexto (desde LugaresApplication) para habilitar el cache en disco
+    public static synchronized void init(Context context) {
+        if (httpCache != null) {
+            return;
+        }
+        File cacheDir = new File(context.getApplicationContext().getCacheDir(), HTTP_CACHE_DIR);
+        httpCache = new Cache(cacheDir, HTTP_CACHE_SIZE);
+        Log.i(TAG, "Cache HTTP en disco: " + cacheDir + " (" + HTTP_CACHE_SIZE / (1024 * 1024) + " MB)");
+
+        // Si ya se creó un cliente sin cache, reconstruirlo reutilizando pool y dispatcher
+        if (httpClient != null) {
+            httpClient = null;
+            retrofitInstance = null;
+            apiService = null;
+        }
+    }
+
+    // Cliente HTTP único y de larga vida
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = createHttpClient();
+        }
+        return httpClient;
+    }
 
     // Crear cliente HTTP con interceptor para JWT y headers correctos
     private static OkHttpClient createHttpClient() {
-        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor(message -> {
-            Log.d(TAG, "HTTP: " + message);
-        });
-        loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-
-        return new OkHttpClient.Builder()
-                .addInterceptor(loggingInterceptor)
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .eventListener(networkMetrics)
+                .addInterceptor(networkLogger)
+                .addInterceptor(conditionalRequestInterceptor)
                 .addInterceptor(new Interceptor() {
                     @Override
                     public Response intercept(Chain chain) throws IOException {
@@ -38,30 +98,35 @@ public class ApiConfig {
                                 .header("Accept", "application/json")
                                 .header("User-Agent", "LugaresComunes-Android/1.0");
 
-                        // Agregar token JWT si está disponible
-                        if (authToken != null && !authToken.isEmpty()) {
-                            builder.header("Authorization", "Bearer " + authToken);
-                            Log.d(TAG, "Adding JWT token to request");
+                        // Agregar token JWT si está disponible; si ya venció, el 401 lo
+                        // renueva en TokenAuthenticator sin bloquear aquí las demás peticiones
+                        String token = authToken;
+                        if (token != null && !token.isEmpty()) {
+                            builder.header("Authorization", "Bearer " + token);
                         }
 
-                        Request request = builder.build();
-
-                        Log.d(TAG, "Request URL: " + request.url());
-                        Log.d(TAG, "Request Method: " + request.method());
-
-                        Response response = chain.proceed(request);
-
-                        Log.d(TAG, "Response Code: " + response.code());
-                        Log.d(TAG, "Response Message: " + response.message());
-
-                        return response;
+                        // URL, método y código los registra NetworkLogger (nivel BASIC o superior)
+                        return chain.proceed(builder.build());
                     }
                 })
+                .addInterceptor(compressionInterceptor)
+                // Anuncia "br,gzip" y descomprime la respuesta antes de llegar a Gson
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .addNetworkInterceptor(compressionInterceptor.wireCounter())
+                // 401: renovar el token y repetir la petición una vez
+                .authenticator(tokenAuthenticator)
                 .connectTimeout(30, TimeUnit.SECONDS)
                 .readTimeout(30, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
-                .retryOnConnectionFailure(true)
-                .build();
+                .retryOnConnectionFailure(true);
+
+        if (httpCache != null) {
+            builder.cache(httpCache);
+        } else {
+            Log.w(TAG, "Cliente HTTP creado sin cache en disco (ApiConfig.init no llamado)");
+        }
+
+        return builder.build();
     }
 
     // Obtener instancia de Retrofit
@@ -70,7 +135,7 @@ public class ApiConfig {
             Log.i(TAG, "Creando nueva instancia de Retrofit con URL: " + BASE_URL);
             retrofitInstance = new Retrofit.Builder()
                     .baseUrl(BASE_URL)
-                    .client(createHttpClient())
+                    .client(getHttpClient())
                     .addConverterFactory(GsonConverterFactory.create())
                     .build();
         }
@@ -88,20 +153,49 @@ public class ApiConfig {
 
     // Establecer token de autenticación
     public static void setAuthToken(String token) {
+        String previous = authToken;
         authToken = token;
         Log.i(TAG, "Token de autenticación establecido: " + (token != null ? "***" + token.substring(Math.max(0, token.length() - 10)) : "null"));
 
-        // Recrear instancias para usar el nuevo token
-        retrofitInstance = null;
-        apiService = null;
+        // El interceptor lee el token en cada petición: se conserva el cliente y su pool
+        if (token == null || !token.equals(previous)) {
+            conditionalRequestInterceptor.clear();
+            if (previous != null) {
+                evictUserResponses();
+            }
+            tokenAuthenticator.onTokenChanged(token);
+        }
+    }
+
+    // Token renovado del mismo usuario: las respuestas cacheadas siguen siendo válidas
+    static void onTokenRefreshed(String token) {
+        authToken = token;
+        tokenAuthenticator.onTokenChanged(token);
     }
 
     // Limpiar token (logout)
     public static void clearAuthToken() {
         Log.i(TAG, "Token de autenticación limpiado");
         authToken = null;
-        retrofitInstance = null;
-        apiService = null;
+        conditionalRequestInterceptor.clear();
+        evictUserResponses();
+        tokenAuthenticator.onTokenChanged(null);
+    }
+
+    // Las respuestas cacheadas pueden depender del usuario anterior (en background: toca disco)
+    private static void evictUserResponses() {
+        Cache cache = httpCache;
+        if (cache == null) {
+            return;
+        }
+        dispatcher.executorService().execute(() -> {
+            try {
+                cache.evictAll();
+                Log.d(TAG, "Cache HTTP limpiado");
+            } catch (IOException e) {
+                Log.w(TAG, "No se pudo limpiar el cache HTTP", e);
+            }
+        });
     }
 
     // Verificar si hay token
@@ -120,6 +214,36 @@ public class ApiConfig {
         return authToken;
     }
 
+    public static TokenAuthenticator getTokenAuthenticator() {
+        return tokenAuthenticator;
+    }
+
+    public static NetworkMetrics getNetworkMetrics() {
+        return networkMetrics;
+    }
+
+    public static NetworkLogger getNetworkLogger() {
+        return networkLogger;
+    }
+
+    // Cambiar el nivel de logging HTTP sin recrear el cliente
+    public static void setNetworkLogLevel(HttpLoggingInterceptor.Level level) {
+        networkLogger.setLevel(level);
+    }
+
+    // Registrar solo 1 de cada N peticiones (1 = todas)
+    public static void setNetworkLogSampleRate(int sampleRate) {
+        networkLogger.setSampleRate(sampleRate);
+    }
+
+    public static CompressionInterceptor getCompression() {
+        return compressionInterceptor;
+    }
+
+    public static ConditionalRequestInterceptor getConditionalRequests() {
+        return conditionalRequestInterceptor;
+    }
+
     // Método para verificar conectividad
     public static void logConnectionInfo() {
         Log.i(TAG, "=== API Configuration ===");
@@ -127,6 +251,18 @@ public class ApiConfig {
         Log.i(TAG, "Has Auth Token: " + hasAuthToken());
         Log.i(TAG, "Retrofit Instance: " + (retrofitInstance != null ? "Created" : "Null"));
         Log.i(TAG, "API Service: " + (apiService != null ? "Created" : "Null"));
+        Log.i(TAG, "HTTP Logging: " + networkLogger.getLevel() + " (1/" + networkLogger.getSampleRate() + ")");
+        Log.i(TAG, "Network: " + networkMetrics);
+        Cache cache = httpCache;
+        if (cache != null) {
+            Log.i(TAG, "HTTP Cache: requests=" + cache.requestCount() + ", network=" + cache.networkCount() +
+                    ", hits=" + cache.hitCount());
+        }
+        Log.i(TAG, "Connection pool: " + connectionPool.connectionCount() + " conexiones (" +
+                connectionPool.idleConnectionCount() + " libres)");
+        Log.i(TAG, "Conditional GETs: " + conditionalRequestInterceptor.getConditionalRequestCount() +
+                " (304: " + conditionalRequestInterceptor.getNotModifiedCount() + ")");
+        compressionInterceptor.logStats();
         Log.i(TAG, "========================");
     }
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+package com.example.lugarescomunes.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.ForwardingSource;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Source;
+import retrofit2.Invocation;
+
+// Compresión de cuerpos de petición (opt-in por endpoint) y contadores por endpoint de
+// bytes en la red frente a bytes decodificados. La negociación y descompresión de las
+// respuestas (br, gzip) la hace BrotliInterceptor, que va justo detrás de este interceptor.
+// Si un endpoint responde 400/415 a un cuerpo gzip, se repite la petición una vez sin comprimir
+// y ese endpoint deja de comprimirse mientras viva el proceso.
+public class CompressionInterceptor implements Interceptor {
+
+    private static final String TAG = "Compression";
+
+    // Marca en @Headers para los endpoints cuyo backend acepta cuerpos gzip
+    public static final String COMPRESS_REQUEST_HEADER = "X-Compress-Request";
+
+    // Por debajo de este tamaño la cabecera gzip no compensa
+    private static final long MIN_COMPRESS_BYTES = 1024;
+
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    // Endpoints cuyo backend no decodificó el cuerpo gzip
+    private final Set<String> gzipRejected = ConcurrentHashMap.newKeySet();
+
+    // Se registra con addNetworkInterceptor: ve el cuerpo tal como viaja por la red
+    private final Interceptor wireCounter = chain -> {
+        Request request = chain.request();
+        EndpointStats endpoint = statsFor(request);
+        RequestBody body = request.body();
+        if (body != null) {
+            long length = body.contentLength();
+            if (length > 0) {
+                endpoint.requestWireBytes.addAndGet(length);
+            }
+        }
+
+        Response response = chain.proceed(request);
+        if (response.body() == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .body(countingBody(response.body(), endpoint.responseWireBytes))
+                .build();
+    };
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        EndpointStats endpoint = statsFor(request);
+        endpoint.calls.incrementAndGet();
+
+        if (request.header(COMPRESS_REQUEST_HEADER) != null) {
+            return countResponse(proceedCompressed(chain, request, endpoint), endpoint);
+        }
+
+        if (request.body() != null) {
+            long length = request.body().contentLength();
+            if (length > 0) {
+                endpoint.requestDecodedBytes.addAndGet(length);
+            }
+        }
+        return countResponse(chain.proceed(request), endpoint);
+    }
+
+    private Response proceedCompressed(Chain chain, Request request, EndpointStats endpoint) throws IOException {
+        Request.Builder builder = request.newBuilder().removeHeader(COMPRESS_REQUEST_HEADER);
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null) {
+            return chain.proceed(builder.build());
+        }
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        ByteString plainBytes = buffer.readByteString();
+        endpoint.requestDecodedBytes.addAndGet(plainBytes.size());
+        Request plain = builder
+                .method(request.method(), RequestBody.create(plainBytes, body.contentType()))
+                .build();
+
+        if (plainBytes.size() < MIN_COMPRESS_BYTES || gzipRejected.contains(endpoint.name)) {
+            return chain.proceed(plain);
+        }
+
+        Buffer compressed = new Buffer();
+        try (BufferedSink gzip = Okio.buffer(new GzipSink(compressed))) {
+            gzip.write(plainBytes);
+        }
+        Log.d(TAG, endpoint.name + ": cuerpo comprimido " + plainBytes.size() + " -> " + compressed.size() + " bytes");
+
+        Request gzipped = plain.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), RequestBody.create(compressed.readByteString(), body.contentType()))
+                .build();
+        Response response = chain.proceed(gzipped);
+        if (response.code() != 400 && response.code() != 415) {
+            return response;
+        }
+
+        // Repetir una vez sin comprimir. Un 400 que se repite igual sin gzip es un error del
+        // propio cuerpo y no dice nada de la compresión; un 415 siempre se la atribuye.
+        int gzipCode = response.code();
+        response.close();
+        Response retried = chain.proceed(plain);
+        if (gzipCode == 415 || retried.code() != gzipCode) {
+            gzipRejected.add(endpoint.name);
+            Log.w(TAG, endpoint.name + ": el servidor rechazó el cuerpo gzip (" + gzipCode +
+                    "), se enviará sin comprimir");
+        }
+        return retried;
+    }
+
+    // Las respuestas servidas desde el cache HTTP no pasan por la red: no se cuentan
+    private static Response countResponse(Response response, EndpointStats endpoint) {
+        if (response.body() == null || response.networkResponse() == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .body(countingBody(response.body(), endpoint.responseDecodedBytes))
+                .build();
+    }
+
+    private static ResponseBody countingBody(ResponseBody body, AtomicLong counter) {
+        Source counting = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    counter.addAndGet(read);
+                }
+                return read;
+            }
+        };
+        BufferedSource source = Okio.buffer(counting);
+        MediaType contentType = body.contentType();
+        long contentLength = body.contentLength();
+        return ResponseBody.create(source, contentType, contentLength);
+    }
+
+    // Endpoint = método de LugaresApiService; sin Retrofit, la ruta de la URL
+    private EndpointStats statsFor(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        String name;
+        if (invocation != null) {
+            Method method = invocation.method();
+            name = method.getName();
+        } else {
+            name = request.method() + " " + request.url().encodedPath();
+        }
+        EndpointStats endpoint = stats.get(name);
+        if (endpoint == null) {
+            endpoint = stats.computeIfAbsent(name, EndpointStats::new);
+        }
+        return endpoint;
+    }
+
+    public Interceptor wireCounter() {
+        return wireCounter;
+    }
+
+    public Map<String, EndpointStats> getStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(stats));
+    }
+
+    public boolean isGzipRejected(String endpointName) {
+        return gzipRejected.contains(endpointName);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    public void logStats() {
+        for (EndpointStats endpoint : getStats().values()) {
+            Log.i(TAG, endpoint.toString());
+        }
+    }
+
+    public static class EndpointStats {
+        private final String name;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong requestDecodedBytes = new AtomicLong();
+        private final AtomicLong requestWireBytes = new AtomicLong();
+        private final AtomicLong responseWireBytes = new AtomicLong();
+        private final AtomicLong responseDecodedBytes = new AtomicLong();
+
+        EndpointStats(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCallCount() {
+            return calls.get();
+        }
+
+        public long getRequestDecodedBytes() {
+            return requestDecodedBytes.get();
+        }
+
+        public long getRequestWireBytes() {
+            return requestWireBytes.get();
+        }
+
+        public long getResponseWireBytes() {
+            return responseWireBytes.get();
+        }
+
+        public long getResponseDecodedBytes() {
+            return responseDecodedBytes.get();
+        }
+
+        // Bytes en la red / bytes decodificados (1.0 = sin compresión)
+        public double getResponseRatio() {
+            long decoded = responseDecodedBytes.get();
+            return decoded == 0 ? 1.0 : (double) responseWireBytes.get() / decoded;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s{calls=%d, request=%d/%d, response=%d/%d (%.2f)}",
+                    name, calls.get(), requestWireBytes.get(), requestDecodedBytes.get(),
+                    responseWireBytes.get(), responseDecodedBytes.get(), getResponseRatio());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.lugarescomunes.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Guarda ETag / Last-Modified por endpoint de lista y envía peticiones condicionales.
+// Un 304 llega tal cual al repositorio, que debe responder con su propio cache.
+public class ConditionalRequestInterceptor implements Interceptor {
+
+    private static final String TAG = "ConditionalRequests";
+
+    // Rutas (relativas a BASE_URL) que devuelven listas y aceptan validadores.
+    // Solo las que tienen un repositorio que sabe responder un 304 con su copia local
+    // (PlacesRepository y RoutesRepository); agregar una ruta exige manejar el 304 allí.
+    private static final String[] EXACT_PATHS = {"routes/destinations"};
+    private static final String[] PREFIX_PATHS = {"routes/to/"};
+
+    private final String basePath;
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+    private final AtomicLong conditionalRequests = new AtomicLong();
+    private final AtomicLong notModifiedResponses = new AtomicLong();
+
+    public ConditionalRequestInterceptor(String baseUrl) {
+        HttpUrl base = HttpUrl.get(baseUrl);
+        this.basePath = base.encodedPath();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+
+        if (!"GET".equals(request.method()) || !isConditionalEndpoint(request.url())) {
+            return chain.proceed(request);
+        }
+
+        String key = request.url().toString();
+        Validators stored = validators.get(key);
+
+        if (stored != null) {
+            Request.Builder builder = request.newBuilder();
+            if (stored.etag != null) {
+                builder.header("If-None-Match", stored.etag);
+            }
+            if (stored.lastModified != null) {
+                builder.header("If-Modified-Since", stored.lastModified);
+            }
+            request = builder.build();
+            conditionalRequests.incrementAndGet();
+        }
+
+        Response response = chain.proceed(request);
+
+        if (response.code() == 304) {
+            notModifiedResponses.incrementAndGet();
+            Log.d(TAG, "304 Not Modified: " + request.url().encodedPath());
+        } else if (response.isSuccessful()) {
+            String etag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+            if (etag != null || lastModified != null) {
+                validators.put(key, new Validators(etag, lastModified));
+            } else {
+                validators.remove(key);
+            }
+        }
+
+        return response;
+    }
+
+    // El repositorio no tiene copia local: la próxima petición debe traer el cuerpo completo
+    public void forget(HttpUrl url) {
+        if (url != null) {
+            validators.remove(url.toString());
+        }
+    }
+
+    // Los validadores pueden depender del usuario, se descartan al cambiar el token
+    public void clear() {
+        validators.clear();
+        Log.d(TAG, "Validadores descartados");
+    }
+
+    public long getConditionalRequestCount() {
+        return conditionalRequests.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedResponses.get();
+    }
+
+    private boolean isConditionalEndpoint(HttpUrl url) {
+        String path = url.encodedPath();
+        if (!path.startsWith(basePath)) {
+            return false;
+        }
+        String relative = path.substring(basePath.length());
+
+        for (String exact : EXACT_PATHS) {
+            if (exact.equals(relative)) {
+                return true;
+            }
+        }
+        for (String prefix : PREFIX_PATHS) {
+            if (relative.startsWith(prefix) && relative.length() > prefix.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Validators {
+        final String etag;
+        final String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -2,11 +2,19 @@ package com.example.lugarescomunes.api;
 
 import com.example.lugarescomunes.models.api.*;
 import java.util.List;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.*;
 
+// Las respuestas se negocian comprimidas (br, gzip); los cuerpos marcados con
+// X-Compress-Request se envían en gzip: ver CompressionInterceptor.
+// Solo routes/destinations y routes/to/{id} llevan validadores y pueden responder
+// 304 Not Modified: ver ConditionalRequestInterceptor.
+// Las escrituras que pasan por OutboxRepository llevan Idempotency-Key (se reintentan).
 public interface LugaresApiService {
 
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     // ===== AUTENTICACIÓN =====
 
     @POST("auth/login")
@@ -18,6 +26,10 @@ public interface LugaresApiService {
     @GET("auth/me")
     Call<ApiResponse<UserResponse>> getCurrentUser();
 
+    // Recibe el token actual (aunque esté por vencer) y responde uno nuevo: ver TokenAuthenticator
+    @POST("auth/refresh")
+    Call<ApiResponse<AuthResponse>> refreshToken(@Header("Authorization") String authorization);
+
     @GET("auth/validate-email")
     Call<ApiResponse<EmailValidationResponse>> validateEmail(@Query("email") String email);
 
@@ -56,6 +68,7 @@ public interface LugaresApiService {
 
     // ===== LUGARES (ENDPOINTS ADMIN) =====
 
+    @Headers(CompressionInterceptor.COMPRESS_REQUEST_HEADER + ": gzip")
     @POST("places")
     Call<ApiResponse<PlaceResponse>> createPlace(@Body CreatePlaceRequest request);
 
@@ -72,6 +85,12 @@ public interface LugaresApiService {
     @GET("routes/destinations")
     Call<ApiResponse<List<PlaceResponse>>> getRouteDestinations();
 
+    // Mismo endpoint sin convertir: se decodifica en streaming con PlaceStreamParser.
+    // Ejecutar fuera del hilo principal (el cuerpo se lee mientras llega).
+    @Streaming
+    @GET("routes/destinations")
+    Call<ResponseBody> streamRouteDestinations();
+
     @GET("routes/to/{placeId}")
     Call<ApiResponse<List<RouteResponse>>> getRoutesToPlace(@Path("placeId") String placeId);
 
@@ -94,15 +113,18 @@ public interface LugaresApiService {
     // ===== RUTAS (ENDPOINTS PROTEGIDOS) =====
 
     @POST("routes/{routeId}/rating")
-    Call<ApiResponse<RatingResponse>> rateRoute(@Path("routeId") String routeId, @Body RateRouteRequest request);
+    Call<ApiResponse<RatingResponse>> rateRoute(@Header(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                                @Path("routeId") String routeId, @Body RateRouteRequest request);
 
     @GET("routes/{routeId}/my-rating")
     Call<ApiResponse<RatingResponse>> getMyRating(@Path("routeId") String routeId);
 
     // ===== PROPUESTAS DE RUTAS (ENDPOINTS PROTEGIDOS) =====
 
+    @Headers(CompressionInterceptor.COMPRESS_REQUEST_HEADER + ": gzip")
     @POST("routes/proposals")
-    Call<ApiResponse<RouteProposalResponse>> submitRouteProposal(@Body RouteProposalRequest request);
+    Call<ApiResponse<RouteProposalResponse>> submitRouteProposal(@Header(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                                                 @Body RouteProposalRequest request);
 
     @GET("routes/proposals/my")
     Call<ApiResponse<List<RouteProposalResponse>>> getMyProposals();
@@ -110,10 +132,12 @@ public interface LugaresApiService {
     // ===== NAVEGACIÓN (ENDPOINTS PROTEGIDOS) =====
 
     @POST("navigation/start")
-    Call<ApiResponse<NavigationResponse>> startNavigation(@Body StartNavigationRequest request);
+    Call<ApiResponse<NavigationResponse>> startNavigation(@Header(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                                          @Body StartNavigationRequest request);
 
     @POST("navigation/complete")
-    Call<ApiResponse<NavigationResponse>> completeNavigation(@Body CompleteNavigationRequest request);
+    Call<ApiResponse<NavigationResponse>> completeNavigation(@Header(IDEMPOTENCY_KEY_HEADER) String idempotencyKey,
+                                                             @Body CompleteNavigationRequest request);
 
     @GET("navigation/history")
     Call<ApiResponse<List<NavigationHistoryResponse>>> getNavigationHistory();
@@ -0,0 +1,97 @@
+package com.example.lugarescomunes.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.logging.HttpLoggingInterceptor;
+
+// Logging HTTP configurable (NONE, BASIC, HEADERS, BODY) con muestreo 1 de cada N peticiones.
+// Con NONE o fuera de la muestra la petición pasa directo, sin copiar ni convertir el cuerpo.
+public class NetworkLogger implements Interceptor {
+
+    private static final String TAG = "NetworkLogger";
+
+    private volatile HttpLoggingInterceptor.Level level;
+    private volatile int sampleRate;
+    private final AtomicLong requestCounter = new AtomicLong();
+    private final AtomicLong loggedRequests = new AtomicLong();
+
+    // Un delegado por nivel: el nivel de HttpLoggingInterceptor es global a la instancia
+    private final Map<HttpLoggingInterceptor.Level, HttpLoggingInterceptor> delegates =
+            new EnumMap<>(HttpLoggingInterceptor.Level.class);
+
+    public NetworkLogger(HttpLoggingInterceptor.Level level, int sampleRate) {
+        this.level = level != null ? level : HttpLoggingInterceptor.Level.NONE;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    // Nivel desde texto (BuildConfig), NONE si no se reconoce
+    public static HttpLoggingInterceptor.Level parseLevel(String value) {
+        if (value == null) {
+            return HttpLoggingInterceptor.Level.NONE;
+        }
+        try {
+            return HttpLoggingInterceptor.Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Nivel de logging desconocido: " + value);
+            return HttpLoggingInterceptor.Level.NONE;
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HttpLoggingInterceptor.Level current = level;
+        if (current == HttpLoggingInterceptor.Level.NONE || !isSampled()) {
+            return chain.proceed(chain.request());
+        }
+
+        loggedRequests.incrementAndGet();
+        return delegateFor(current).intercept(chain);
+    }
+
+    private boolean isSampled() {
+        int rate = sampleRate;
+        return rate <= 1 || requestCounter.getAndIncrement() % rate == 0;
+    }
+
+    private synchronized HttpLoggingInterceptor delegateFor(HttpLoggingInterceptor.Level current) {
+        HttpLoggingInterceptor delegate = delegates.get(current);
+        if (delegate == null) {
+            delegate = new HttpLoggingInterceptor(message -> Log.d(TAG, "HTTP: " + message));
+            delegate.setLevel(current);
+            // Nunca escribir el JWT en el log
+            delegate.redactHeader("Authorization");
+            delegates.put(current, delegate);
+        }
+        return delegate;
+    }
+
+    public HttpLoggingInterceptor.Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(HttpLoggingInterceptor.Level level) {
+        this.level = level != null ? level : HttpLoggingInterceptor.Level.NONE;
+        Log.i(TAG, "Nivel de logging HTTP: " + this.level);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    // 1 = registrar todas las peticiones, N = registrar 1 de cada N
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+        Log.i(TAG, "Muestreo de logging HTTP: 1/" + this.sampleRate);
+    }
+
+    public long getLoggedRequestCount() {
+        return loggedRequests.get();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.lugarescomunes.api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Response;
+
+// Contadores de cache HTTP y reutilización de conexiones (un solo listener para todo el cliente)
+public class NetworkMetrics extends EventListener {
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheConditionalHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong callsFailed = new AtomicLong();
+
+    @Override
+    public void callStart(Call call) {
+        calls.incrementAndGet();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        callsFailed.incrementAndGet();
+    }
+
+    @Override
+    public void cacheHit(Call call, Response response) {
+        cacheHits.incrementAndGet();
+    }
+
+    @Override
+    public void cacheConditionalHit(Call call, Response cachedResponse) {
+        cacheConditionalHits.incrementAndGet();
+    }
+
+    @Override
+    public void cacheMiss(Call call) {
+        cacheMisses.incrementAndGet();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectionsOpened.incrementAndGet();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        connectionsAcquired.incrementAndGet();
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getFailedCallCount() {
+        return callsFailed.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public long getCacheConditionalHitCount() {
+        return cacheConditionalHits.get();
+    }
+
+    public long getCacheMissCount() {
+        return cacheMisses.get();
+    }
+
+    // Respuestas servidas sin descargar el cuerpo (cache directo o 304 validado por OkHttp)
+    public double getCacheHitRatio() {
+        long hits = cacheHits.get() + cacheConditionalHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public long getConnectionsAcquired() {
+        return connectionsAcquired.get();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    // Fracción de llamadas que usaron una conexión ya abierta del pool
+    public double getConnectionReuseRatio() {
+        long acquired = connectionsAcquired.get();
+        if (acquired == 0) {
+            return 0.0;
+        }
+        long reused = Math.max(0, acquired - connectionsOpened.get());
+        return (double) reused / acquired;
+    }
+
+    public void reset() {
+        calls.set(0);
+        callsFailed.set(0);
+        cacheHits.set(0);
+        cacheConditionalHits.set(0);
+        cacheMisses.set(0);
+        connectionsAcquired.set(0);
+        connectionsOpened.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "NetworkMetrics{calls=%d, failed=%d, cacheHitRatio=%.2f (hit=%d, conditional=%d, miss=%d), " +
+                        "connectionReuse=%.2f (acquired=%d, opened=%d)}",
+                calls.get(), callsFailed.get(), getCacheHitRatio(), cacheHits.get(),
+                cacheConditionalHits.get(), cacheMisses.get(), getConnectionReuseRatio(),
+                connectionsAcquired.get(), connectionsOpened.get());
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.lugarescomunes.api;
+
+import com.example.lugarescomunes.Place;
+import com.example.lugarescomunes.PlaceType;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Decodifica ApiResponse<List<PlaceResponse>> directamente a Place leyendo el JSON en streaming:
+// sin árbol intermedio, sin lista de PlaceResponse y con coordenadas como double.
+public final class PlaceStreamParser {
+
+    // Recibe los primeros lugares antes de terminar de leer el arreglo (se llama desde el hilo de lectura).
+    // Solo si "success": true llegó antes que "data": si el orden es otro no hay entrega anticipada,
+    // así una respuesta fallida nunca llega a la UI; el resultado completo sale igual al terminar.
+    public interface Listener {
+        void onFirstPlaces(List<Place> firstPlaces);
+    }
+
+    public static final class Result {
+        private final boolean success;
+        private final String message;
+        private final List<Place> places;
+
+        Result(boolean success, String message, List<Place> places) {
+            this.success = success;
+            this.message = message;
+            this.places = places;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public List<Place> getPlaces() {
+            return places;
+        }
+    }
+
+    private PlaceStreamParser() {
+    }
+
+    public static Result parse(Reader reader, int firstBatchSize, Listener listener) throws IOException {
+        boolean success = false;
+        boolean successRead = false;
+        String message = null;
+        List<Place> places = new ArrayList<>();
+
+        try (JsonReader json = new JsonReader(reader)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "success":
+                        if (json.peek() == JsonToken.BOOLEAN) {
+                            success = json.nextBoolean();
+                            successRead = true;
+                        } else {
+                            json.skipValue();
+                        }
+                        break;
+                    case "message":
+                        message = nextStringOrNull(json);
+                        break;
+                    case "data":
+                        readPlaces(json, places, firstBatchSize, successRead && success ? listener : null);
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        }
+
+        return new Result(success, message, places);
+    }
+
+    private static void readPlaces(JsonReader json, List<Place> places, int firstBatchSize,
+                                   Listener listener) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return;
+        }
+
+        boolean firstBatchDelivered = listener == null || firstBatchSize <= 0;
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            places.add(readPlace(json));
+
+            if (!firstBatchDelivered && places.size() == firstBatchSize) {
+                firstBatchDelivered = true;
+                listener.onFirstPlaces(Collections.unmodifiableList(new ArrayList<>(places)));
+            }
+        }
+        json.endArray();
+
+        // Listas más cortas que el lote también se entregan por adelantado
+        if (!firstBatchDelivered && !places.isEmpty()) {
+            listener.onFirstPlaces(Collections.unmodifiableList(new ArrayList<>(places)));
+        }
+    }
+
+    private static Place readPlace(JsonReader json) throws IOException {
+        Place place = new Place();
+        String placeType = null;
+        // Sin el campo se asume disponible, igual que convertPlaceResponseToPlace
+        boolean available = true;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    place.setId(json.nextString());
+                    break;
+                case "name":
+                    place.setName(json.nextString());
+                    break;
+                case "category":
+                    place.setCategory(json.nextString());
+                    break;
+                case "description":
+                    place.setDescription(json.nextString());
+                    break;
+                case "what3words":
+                    place.setWhat3words(json.nextString());
+                    break;
+                case "latitude":
+                    place.setLatitude(json.nextDouble());
+                    break;
+                case "longitude":
+                    place.setLongitude(json.nextDouble());
+                    break;
+                case "isAvailable":
+                    available = json.nextBoolean();
+                    break;
+                case "placeType":
+                    placeType = json.nextString();
+                    break;
+                case "capacity":
+                    place.setCapacity(json.nextInt());
+                    break;
+                case "schedule":
+                    place.setSchedule(json.nextString());
+                    break;
+                case "imageUrl":
+                    place.setImageUrl(json.nextString());
+                    break;
+                case "buildingName":
+                    place.setBuildingName(json.nextString());
+                    break;
+                case "floorNumber":
+                    place.setFloorNumber(json.nextInt());
+                    break;
+                case "roomCode":
+                    place.setRoomCode(json.nextString());
+                    break;
+                case "equipment":
+                    place.setEquipment(readStrings(json));
+                    break;
+                case "accessibilityFeatures":
+                    place.setAccessibilityFeatures(readStrings(json));
+                    break;
+                case "createdAt":
+                    place.setCreatedAt(json.nextString());
+                    break;
+                case "updatedAt":
+                    place.setUpdatedAt(json.nextString());
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+
+        place.setAvailable(available);
+        place.setType(parsePlaceType(placeType));
+        place.setDistanceInMeters(0);
+        place.setFavorite(false);
+        return place;
+    }
+
+    private static PlaceType parsePlaceType(String placeType) {
+        if (placeType == null) {
+            return PlaceType.SERVICE;
+        }
+        try {
+            return PlaceType.valueOf(placeType.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return PlaceType.SERVICE;
+        }
+    }
+
+    private static List<String> readStrings(JsonReader json) throws IOException {
+        List<String> values = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            String value = nextStringOrNull(json);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        json.endArray();
+        return values;
+    }
+
+    private static String nextStringOrNull(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+}
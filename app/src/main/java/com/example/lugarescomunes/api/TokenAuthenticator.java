@@ -0,0 +1,234 @@
+package com.example.lugarescomunes.api;
+
+import android.util.Log;
+
+import com.example.lugarescomunes.models.api.ApiResponse;
+import com.example.lugarescomunes.models.api.AuthResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+import okio.ByteString;
+
+// Ciclo de vida del JWT sin recrear el cliente:
+// - Lee el vencimiento ("exp") del token y lo renueva en segundo plano antes de que venza.
+// - Si la renovación anticipada falla (sin red, error del servidor) se reintenta con backoff.
+// - Una respuesta 401 renueva el token y repite la petición una vez (Authenticator de OkHttp).
+//   Es el único lugar donde una petición espera a la renovación; el interceptor nunca bloquea.
+// La renovación es de un solo vuelo: si varias peticiones reciben 401 a la vez, la primera
+// renueva y las demás esperan y se repiten con el token nuevo (no hay N renovaciones).
+public class TokenAuthenticator implements Authenticator {
+
+    private static final String TAG = "TokenAuthenticator";
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String REFRESH_PATH = "/auth/refresh";
+
+    // Renovar este tiempo antes del vencimiento
+    private static final long REFRESH_AHEAD_MS = TimeUnit.MINUTES.toMillis(2);
+    // Backoff de la renovación anticipada fallida
+    private static final long RETRY_BASE_MS = TimeUnit.SECONDS.toMillis(15);
+    private static final long RETRY_MAX_MS = TimeUnit.MINUTES.toMillis(5);
+
+    // Avisos hacia quien persiste la sesión (AuthRepository)
+    public interface Listener {
+        void onTokenRefreshed(String token);
+
+        void onSessionExpired();
+    }
+
+    private final Object refreshLock = new Object();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> scheduledRefresh;
+    private volatile Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Programa la renovación anticipada del token nuevo (o la cancela con null)
+    synchronized void onTokenChanged(String token) {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
+        long expiresAt = expiresAt(token);
+        if (expiresAt <= 0) {
+            return;
+        }
+        long delay = Math.max(0, expiresAt - REFRESH_AHEAD_MS - System.currentTimeMillis());
+        scheduleRefresh(token, delay, 0);
+        Log.d(TAG, "Token vence en " + ((expiresAt - System.currentTimeMillis()) / 1000) +
+                "s, renovación en " + (delay / 1000) + "s");
+    }
+
+    private synchronized void scheduleRefresh(String token, long delay, int attempt) {
+        scheduledRefresh = scheduler.schedule(() -> {
+            Log.d(TAG, "Renovación anticipada del token (intento " + (attempt + 1) + ")");
+            if (refresh(token) == null) {
+                retryRefresh(token, attempt + 1);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Sin red o error del servidor: el token sigue siendo el mismo, volver a intentarlo más tarde.
+    // Si entretanto cambió (login, logout, renovación por 401, sesión expirada) no hay nada que hacer.
+    private synchronized void retryRefresh(String token, int attempt) {
+        if (!token.equals(ApiConfig.getAuthToken())) {
+            return;
+        }
+        long delay = retryDelay(attempt);
+        Log.d(TAG, "Renovación anticipada fallida, reintento en " + (delay / 1000) + "s");
+        scheduleRefresh(token, delay, attempt);
+    }
+
+    static long retryDelay(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 10);
+        return Math.min(RETRY_BASE_MS << shift, RETRY_MAX_MS);
+    }
+
+    @Override
+    public Request authenticate(Route route, Response response) {
+        Request request = response.request();
+        // La propia renovación, o ya se repitió una vez tras un 401: no insistir.
+        // Solo cuentan los 401 previos; una redirección intermedia no agota el reintento.
+        if (isRefreshRequest(request) || unauthorizedCount(response) > 1) {
+            return null;
+        }
+        String sent = bearerToken(request);
+        if (sent == null) {
+            return null;
+        }
+
+        String fresh = refresh(sent);
+        if (fresh == null) {
+            return null;
+        }
+        Log.d(TAG, "Repitiendo " + request.method() + " " + request.url().encodedPath() + " con token renovado");
+        return request.newBuilder()
+                .header(AUTHORIZATION_HEADER, BEARER_PREFIX + fresh)
+                .build();
+    }
+
+    // Un solo vuelo: quien entra después de una renovación exitosa encuentra el token nuevo
+    private String refresh(String staleToken) {
+        synchronized (refreshLock) {
+            String current = ApiConfig.getAuthToken();
+            if (current == null) {
+                // Se cerró sesión mientras se esperaba
+                return null;
+            }
+            if (!current.equals(staleToken)) {
+                return current;
+            }
+            return requestNewToken(current);
+        }
+    }
+
+    private String requestNewToken(String token) {
+        try {
+            retrofit2.Response<ApiResponse<AuthResponse>> response = ApiConfig.getApiService()
+                    .refreshToken(BEARER_PREFIX + token)
+                    .execute();
+
+            ApiResponse<AuthResponse> body = response.body();
+            if (response.isSuccessful() && body != null && body.isSuccess() &&
+                    body.getData() != null && body.getData().getToken() != null) {
+                String fresh = body.getData().getToken();
+                ApiConfig.onTokenRefreshed(fresh);
+                Log.i(TAG, "Token renovado");
+
+                Listener current = listener;
+                if (current != null) {
+                    current.onTokenRefreshed(fresh);
+                }
+                return fresh;
+            }
+
+            if (response.code() == 401 || response.code() == 403) {
+                // El servidor ya no acepta la sesión: no tiene sentido seguir reintentando
+                Log.w(TAG, "Renovación rechazada (" + response.code() + "), sesión expirada");
+                Listener current = listener;
+                if (current != null) {
+                    current.onSessionExpired();
+                } else {
+                    ApiConfig.clearAuthToken();
+                }
+                return null;
+            }
+
+            Log.w(TAG, "Renovación fallida - Código: " + response.code());
+            return null;
+        } catch (IOException e) {
+            // Sin red se conserva el token: la próxima petición lo intenta de nuevo
+            Log.w(TAG, "Error de red renovando token", e);
+            return null;
+        }
+    }
+
+    // Respuestas 401 en la cadena de esta petición, incluida la actual
+    static int unauthorizedCount(Response response) {
+        int count = 0;
+        for (Response current = response; current != null; current = current.priorResponse()) {
+            if (current.code() == 401) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isRefreshRequest(Request request) {
+        return request.url().encodedPath().endsWith(REFRESH_PATH);
+    }
+
+    private static String bearerToken(Request request) {
+        String header = request.header(AUTHORIZATION_HEADER);
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        return header.substring(BEARER_PREFIX.length());
+    }
+
+    // Vencimiento del JWT en milisegundos (epoch), o -1 si no se puede leer
+    static long expiresAt(String token) {
+        if (token == null) {
+            return -1;
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) {
+            return -1;
+        }
+        try {
+            // okio acepta el alfabeto URL-safe y el relleno opcional del JWT
+            ByteString payload = ByteString.decodeBase64(parts[1]);
+            if (payload == null) {
+                return -1;
+            }
+            JsonObject claims = JsonParser.parseString(payload.string(StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonElement exp = claims.get("exp");
+            if (exp == null || !exp.isJsonPrimitive()) {
+                return -1;
+            }
+            return TimeUnit.SECONDS.toMillis(exp.getAsLong());
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No se pudo leer el vencimiento del token", e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.lugarescomunes.location;
+
+import com.example.lugarescomunes.Place;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Recalcula Place.distanceInMeters por tramos (buckets) y solo donde el tramo pudo cambiar.
+// Cada lugar guarda su holgura: cuántos metros le faltan para salir de su tramo. Como la
+// distancia no puede variar más que lo recorrido, mientras el recorrido acumulado desde el
+// último cálculo sea menor que esa holgura el lugar se salta sin tocar trigonometría.
+public class DistanceUpdater {
+
+    // Sin coordenadas se ordenan al final
+    public static final Comparator<Place> BY_DISTANCE = (a, b) -> Integer.compare(sortKey(a), sortKey(b));
+
+    private final Map<String, Snapshot> snapshots = new HashMap<>();
+    private double odometerMeters = 0;
+    private boolean hasLast = false;
+    private double lastLatitude;
+    private double lastLongitude;
+
+    private static class Snapshot {
+        final double odometerAt;
+        final double slackMeters;
+
+        Snapshot(double odometerAt, double slackMeters) {
+            this.odometerAt = odometerAt;
+            this.slackMeters = slackMeters;
+        }
+    }
+
+    // Devuelve los ids de los lugares cuyo tramo mostrado cambió
+    public synchronized Set<String> update(List<Place> places, double latitude, double longitude) {
+        if (hasLast) {
+            odometerMeters += PlaceSpatialIndex.distanceMeters(lastLatitude, lastLongitude, latitude, longitude);
+        }
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        hasLast = true;
+
+        Set<String> changed = new HashSet<>();
+        for (Place place : places) {
+            if (place.getId() == null ||
+                    !PlaceSpatialIndex.hasCoordinates(place.getLatitude(), place.getLongitude())) {
+                continue;
+            }
+
+            Snapshot snapshot = snapshots.get(place.getId());
+            if (snapshot != null && odometerMeters - snapshot.odometerAt < snapshot.slackMeters) {
+                continue;
+            }
+
+            double distance = PlaceSpatialIndex.distanceMeters(latitude, longitude,
+                    place.getLatitude(), place.getLongitude());
+            int bucket = bucketOf(distance);
+            snapshots.put(place.getId(), new Snapshot(odometerMeters, slackOf(distance)));
+
+            if (snapshot == null || place.getDistanceInMeters() != bucket) {
+                place.setDistanceInMeters(bucket);
+                changed.add(place.getId());
+            }
+        }
+        return changed;
+    }
+
+    // Los lugares pudieron cambiar de coordenadas: recalcular todo en la próxima actualización
+    public synchronized void reset() {
+        snapshots.clear();
+    }
+
+    public synchronized boolean hasLocation() {
+        return hasLast;
+    }
+
+    // Distancia mostrada: 10 m hasta 100 m, 50 m hasta 1 km, 100 m después
+    public static int bucketOf(double meters) {
+        double step = stepFor(meters);
+        return (int) (Math.round(meters / step) * step);
+    }
+
+    private static double stepFor(double meters) {
+        if (meters < 100) {
+            return 10;
+        }
+        if (meters < 1000) {
+            return 50;
+        }
+        return 100;
+    }
+
+    // Metros que puede variar la distancia sin cambiar de tramo (ni de tamaño de tramo)
+    private static double slackOf(double meters) {
+        double step = stepFor(meters);
+        double center = Math.round(meters / step) * step;
+        double slack = step / 2 - Math.abs(meters - center);
+        slack = Math.min(slack, Math.abs(meters - 100));
+        slack = Math.min(slack, Math.abs(meters - 1000));
+        return Math.max(0, slack);
+    }
+
+    private static int sortKey(Place place) {
+        return PlaceSpatialIndex.hasCoordinates(place.getLatitude(), place.getLongitude()) ?
+                place.getDistanceInMeters() : Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.lugarescomunes.location;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.BatteryManager;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+// Suscripción a FusedLocationProviderClient con umbral de movimiento y modo según la batería.
+// Las ubicaciones llegan en el hilo principal; las que no superan el umbral se descartan.
+public class LocationTracker {
+
+    private static final String TAG = "LocationTracker";
+
+    // Batería normal: GPS, cada 5 s como máximo y solo si se movió 10 m
+    private static final long NORMAL_INTERVAL_MS = 5_000;
+    private static final long NORMAL_MIN_INTERVAL_MS = 2_000;
+    private static final float NORMAL_MIN_DISTANCE_M = 10f;
+
+    // Batería baja o ahorro de energía: red/wifi, 30 s, 25 m y entregas agrupadas
+    private static final long SAVING_INTERVAL_MS = 30_000;
+    private static final long SAVING_MIN_INTERVAL_MS = 15_000;
+    private static final float SAVING_MIN_DISTANCE_M = 25f;
+    private static final long SAVING_MAX_DELAY_MS = 60_000;
+
+    private static final int LOW_BATTERY_PERCENT = 20;
+
+    public interface Listener {
+        void onLocationChanged(Location location);
+    }
+
+    private final Context context;
+    private final FusedLocationProviderClient fusedLocationClient;
+    private final Listener listener;
+
+    private boolean running = false;
+    private boolean savingMode = false;
+    private Location lastDelivered;
+
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            Location location = result.getLastLocation();
+            if (location != null) {
+                deliver(location);
+            }
+        }
+    };
+
+    private final BroadcastReceiver powerReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            boolean saving = isSavingPower();
+            if (running && saving != savingMode) {
+                Log.i(TAG, "Cambio de modo de ubicación: " + (saving ? "ahorro" : "normal"));
+                requestUpdates(saving);
+            }
+        }
+    };
+
+    public LocationTracker(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(this.context);
+        this.listener = listener;
+    }
+
+    public static boolean hasPermission(Context context) {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED ||
+                ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                        == PackageManager.PERMISSION_GRANTED;
+    }
+
+    // Devuelve false si falta el permiso de ubicación
+    public boolean start() {
+        if (running) {
+            return true;
+        }
+        if (!hasPermission(context)) {
+            Log.w(TAG, "Sin permiso de ubicación");
+            return false;
+        }
+
+        running = true;
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        context.registerReceiver(powerReceiver, filter);
+
+        requestUpdates(isSavingPower());
+
+        // Pintar distancias con la última ubicación conocida mientras llega la primera
+        try {
+            fusedLocationClient.getLastLocation().addOnSuccessListener(location -> {
+                if (running && location != null && lastDelivered == null) {
+                    deliver(location);
+                }
+            });
+        } catch (SecurityException e) {
+            Log.w(TAG, "Permiso de ubicación revocado", e);
+        }
+        return true;
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        fusedLocationClient.removeLocationUpdates(locationCallback);
+        try {
+            context.unregisterReceiver(powerReceiver);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Receiver de batería no registrado");
+        }
+        Log.d(TAG, "Actualizaciones de ubicación detenidas");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void requestUpdates(boolean saving) {
+        savingMode = saving;
+        LocationRequest request = saving ?
+                new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, SAVING_INTERVAL_MS)
+                        .setMinUpdateIntervalMillis(SAVING_MIN_INTERVAL_MS)
+                        .setMinUpdateDistanceMeters(SAVING_MIN_DISTANCE_M)
+                        .setMaxUpdateDelayMillis(SAVING_MAX_DELAY_MS)
+                        .build() :
+                new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, NORMAL_INTERVAL_MS)
+                        .setMinUpdateIntervalMillis(NORMAL_MIN_INTERVAL_MS)
+                        .setMinUpdateDistanceMeters(NORMAL_MIN_DISTANCE_M)
+                        .build();
+
+        try {
+            // Reemplaza la suscripción anterior del mismo callback
+            fusedLocationClient.requestLocationUpdates(request, locationCallback, Looper.getMainLooper());
+            Log.i(TAG, "Actualizaciones de ubicación en modo " + (saving ? "ahorro" : "normal"));
+        } catch (SecurityException e) {
+            Log.w(TAG, "Permiso de ubicación revocado", e);
+            running = false;
+        }
+    }
+
+    private void deliver(Location location) {
+        // El proveedor trata el umbral como sugerencia: aplicarlo también aquí
+        float threshold = savingMode ? SAVING_MIN_DISTANCE_M : NORMAL_MIN_DISTANCE_M;
+        if (lastDelivered != null && lastDelivered.distanceTo(location) < threshold) {
+            return;
+        }
+        lastDelivered = location;
+        listener.onLocationChanged(location);
+    }
+
+    private boolean isSavingPower() {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return true;
+        }
+
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
+                status == BatteryManager.BATTERY_STATUS_FULL;
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (charging || level < 0 || scale <= 0) {
+            return false;
+        }
+        return level * 100 / scale <= LOW_BATTERY_PERCENT;
+    }
+}
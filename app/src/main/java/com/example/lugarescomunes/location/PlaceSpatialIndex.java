@@ -0,0 +1,331 @@
+package com.example.lugarescomunes.location;
+
+import com.example.lugarescomunes.Place;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Índice espacial en memoria (grilla uniforme) sobre las coordenadas de los lugares.
+// Inmutable: se reconstruye cada vez que cambia el cache y se puede consultar desde cualquier hilo.
+public final class PlaceSpatialIndex {
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000.0;
+    private static final double METERS_PER_DEGREE_LAT = 111_320.0;
+
+    // Celdas de ~100 m: el campus entero ocupa unas pocas decenas
+    private static final double DEFAULT_CELL_METERS = 100.0;
+    // Lugares a más de esto de la mediana (coordenadas erróneas o sedes remotas) no entran en
+    // la grilla: se revisan aparte en cada consulta y no la estiran
+    private static final double OUTLIER_METERS = 50_000.0;
+    // Tope de celdas por eje: si los lugares están muy dispersos crecen las celdas, no su número
+    private static final int MAX_AXIS_CELLS = 1024;
+
+    public static final PlaceSpatialIndex EMPTY = new PlaceSpatialIndex(new ArrayList<>(), DEFAULT_CELL_METERS);
+
+    private final Place[] places;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double cellMeters;
+    private final double latStep;
+    private final double lngStep;
+    private final double originLat;
+    private final double originLng;
+    private final int rows;
+    private final int cols;
+    // Clave = fila * cols + columna; valor = índices en places
+    private final Map<Long, int[]> cells = new HashMap<>();
+    // Índices de los lugares fuera de la grilla
+    private final int[] outliers;
+
+    public static class Match {
+        private final Place place;
+        private final double distanceMeters;
+
+        Match(Place place, double distanceMeters) {
+            this.place = place;
+            this.distanceMeters = distanceMeters;
+        }
+
+        public Place getPlace() {
+            return place;
+        }
+
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+    }
+
+    public static PlaceSpatialIndex build(List<Place> places) {
+        if (places == null || places.isEmpty()) {
+            return EMPTY;
+        }
+        return new PlaceSpatialIndex(places, DEFAULT_CELL_METERS);
+    }
+
+    private PlaceSpatialIndex(List<Place> source, double cellMeters) {
+        // Lugares sin coordenadas (0,0) no se indexan
+        List<Place> located = new ArrayList<>(source.size());
+        for (Place place : source) {
+            if (place != null && hasCoordinates(place.getLatitude(), place.getLongitude())) {
+                located.add(place);
+            }
+        }
+
+        int size = located.size();
+        this.places = located.toArray(new Place[0]);
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = places[i].getLatitude();
+            longitudes[i] = places[i].getLongitude();
+        }
+
+        // Centro de la grilla: la mediana no se mueve por unos pocos lugares lejanos
+        double centerLat = size > 0 ? median(latitudes) : 0;
+        double centerLng = size > 0 ? median(longitudes) : 0;
+
+        boolean[] outlier = new boolean[size];
+        List<Integer> outlierIndices = new ArrayList<>();
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (distanceMeters(centerLat, centerLng, latitudes[i], longitudes[i]) > OUTLIER_METERS) {
+                outlier[i] = true;
+                outlierIndices.add(i);
+                continue;
+            }
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLng = Math.min(minLng, longitudes[i]);
+            maxLng = Math.max(maxLng, longitudes[i]);
+        }
+        this.outliers = new int[outlierIndices.size()];
+        for (int i = 0; i < outliers.length; i++) {
+            outliers[i] = outlierIndices.get(i);
+        }
+
+        if (minLat > maxLat) {
+            minLat = maxLat = centerLat;
+            minLng = maxLng = centerLng;
+        }
+
+        double midLat = (minLat + maxLat) / 2;
+        double lngMetersPerDegree = METERS_PER_DEGREE_LAT * Math.max(0.01, Math.cos(Math.toRadians(midLat)));
+        double spanMeters = Math.max((maxLat - minLat) * METERS_PER_DEGREE_LAT, (maxLng - minLng) * lngMetersPerDegree);
+        this.cellMeters = Math.max(cellMeters, spanMeters / (MAX_AXIS_CELLS - 1));
+        this.latStep = this.cellMeters / METERS_PER_DEGREE_LAT;
+        this.lngStep = this.cellMeters / lngMetersPerDegree;
+        this.originLat = minLat;
+        this.originLng = minLng;
+        this.rows = Math.min(MAX_AXIS_CELLS, (int) Math.floor((maxLat - minLat) / latStep) + 1);
+        this.cols = Math.min(MAX_AXIS_CELLS, (int) Math.floor((maxLng - minLng) / lngStep) + 1);
+
+        Map<Long, List<Integer>> grouped = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (outlier[i]) {
+                continue;
+            }
+            long key = cellKey(clamp(rowOf(latitudes[i]), rows), clamp(colOf(longitudes[i]), cols));
+            List<Integer> members = grouped.get(key);
+            if (members == null) {
+                members = new ArrayList<>();
+                grouped.put(key, members);
+            }
+            members.add(i);
+        }
+        // Celdas como int[] para no desempaquetar en cada consulta
+        for (Map.Entry<Long, List<Integer>> entry : grouped.entrySet()) {
+            List<Integer> members = entry.getValue();
+            int[] indices = new int[members.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = members.get(i);
+            }
+            cells.put(entry.getKey(), indices);
+        }
+    }
+
+    public int size() {
+        return places.length;
+    }
+
+    public boolean isEmpty() {
+        return places.length == 0;
+    }
+
+    // Lugares a menos de radiusMeters, ordenados del más cercano al más lejano
+    public List<Match> withinRadius(double latitude, double longitude, double radiusMeters) {
+        List<Match> matches = new ArrayList<>();
+        if (isEmpty() || radiusMeters < 0) {
+            return matches;
+        }
+
+        double latSpan = radiusMeters / METERS_PER_DEGREE_LAT;
+        double lngSpan = radiusMeters / (METERS_PER_DEGREE_LAT *
+                Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+
+        int fromRow = Math.max(0, rowOf(latitude - latSpan));
+        int toRow = Math.min(rows - 1, rowOf(latitude + latSpan));
+        int fromCol = Math.max(0, colOf(longitude - lngSpan));
+        int toCol = Math.min(cols - 1, colOf(longitude + lngSpan));
+
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int col = fromCol; col <= toCol; col++) {
+                int[] members = cells.get(cellKey(row, col));
+                if (members != null) {
+                    addWithin(members, latitude, longitude, radiusMeters, matches);
+                }
+            }
+        }
+        addWithin(outliers, latitude, longitude, radiusMeters, matches);
+
+        Collections.sort(matches, (a, b) -> Double.compare(a.distanceMeters, b.distanceMeters));
+        return matches;
+    }
+
+    // Los k lugares más cercanos, ordenados por distancia
+    public List<Match> nearest(double latitude, double longitude, int k) {
+        List<Match> result = new ArrayList<>();
+        if (isEmpty() || k <= 0) {
+            return result;
+        }
+
+        // Se piden todos (o más): no hay nada que podar, alcanza con ordenar
+        if (k >= places.length) {
+            for (int i = 0; i < places.length; i++) {
+                result.add(new Match(places[i], distanceMeters(latitude, longitude, latitudes[i], longitudes[i])));
+            }
+            Collections.sort(result, (a, b) -> Double.compare(a.distanceMeters, b.distanceMeters));
+            return result;
+        }
+
+        // Max-heap con los k mejores candidatos vistos hasta ahora
+        PriorityQueue<Match> best = new PriorityQueue<>(k,
+                (a, b) -> Double.compare(b.distanceMeters, a.distanceMeters));
+        visitAll(outliers, latitude, longitude, k, best);
+        int gridSize = places.length - outliers.length;
+
+        int centerRow = rowOf(latitude);
+        int centerCol = colOf(longitude);
+        // Tras recorrer los anillos 0..r-1, todo lo no visitado está a más de (r - 1) celdas
+        double lngCellMeters = lngStep * METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians(latitude));
+        double ringMeters = Math.min(cellMeters, lngCellMeters);
+        // Si la consulta cae fuera de la grilla, los anillos anteriores están vacíos
+        int firstRing = Math.max(0, Math.max(
+                Math.max(-centerRow, centerRow - (rows - 1)),
+                Math.max(-centerCol, centerCol - (cols - 1))));
+        int lastRing = Math.max(
+                Math.max(centerRow, rows - 1 - centerRow),
+                Math.max(centerCol, cols - 1 - centerCol));
+
+        // Se corta al asegurar los k mejores o al haber visto todos los lugares de la grilla
+        int visited = 0;
+        for (int ring = firstRing; ring <= lastRing && visited < gridSize; ring++) {
+            if (best.size() == k && best.peek().distanceMeters <= (ring - 1) * ringMeters) {
+                break;
+            }
+            visited += visitRing(centerRow, centerCol, ring, latitude, longitude, k, best);
+        }
+
+        result.addAll(best);
+        Collections.sort(result, (a, b) -> Double.compare(a.distanceMeters, b.distanceMeters));
+        return result;
+    }
+
+    // Devuelve cuántos lugares había en el anillo
+    private int visitRing(int centerRow, int centerCol, int ring, double latitude, double longitude,
+                          int k, PriorityQueue<Match> best) {
+        int visited = 0;
+        int fromRow = Math.max(0, centerRow - ring);
+        int toRow = Math.min(rows - 1, centerRow + ring);
+        int fromCol = Math.max(0, centerCol - ring);
+        int toCol = Math.min(cols - 1, centerCol + ring);
+
+        for (int row = fromRow; row <= toRow; row++) {
+            if (row == centerRow - ring || row == centerRow + ring) {
+                for (int col = fromCol; col <= toCol; col++) {
+                    visited += visitCell(row, col, latitude, longitude, k, best);
+                }
+            } else {
+                // En filas intermedias solo las dos columnas del borde pertenecen al anillo
+                if (centerCol - ring >= 0) {
+                    visited += visitCell(row, centerCol - ring, latitude, longitude, k, best);
+                }
+                if (centerCol + ring < cols) {
+                    visited += visitCell(row, centerCol + ring, latitude, longitude, k, best);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private int visitCell(int row, int col, double latitude, double longitude, int k, PriorityQueue<Match> best) {
+        int[] members = cells.get(cellKey(row, col));
+        if (members == null) {
+            return 0;
+        }
+        visitAll(members, latitude, longitude, k, best);
+        return members.length;
+    }
+
+    private void addWithin(int[] indices, double latitude, double longitude, double radiusMeters, List<Match> matches) {
+        for (int i : indices) {
+            double distance = distanceMeters(latitude, longitude, latitudes[i], longitudes[i]);
+            if (distance <= radiusMeters) {
+                matches.add(new Match(places[i], distance));
+            }
+        }
+    }
+
+    private void visitAll(int[] indices, double latitude, double longitude, int k, PriorityQueue<Match> best) {
+        for (int i : indices) {
+            double distance = distanceMeters(latitude, longitude, latitudes[i], longitudes[i]);
+            if (best.size() < k) {
+                best.add(new Match(places[i], distance));
+            } else if (distance < best.peek().distanceMeters) {
+                best.poll();
+                best.add(new Match(places[i], distance));
+            }
+        }
+    }
+
+    private int rowOf(double latitude) {
+        return (int) Math.floor((latitude - originLat) / latStep);
+    }
+
+    private int colOf(double longitude) {
+        return (int) Math.floor((longitude - originLng) / lngStep);
+    }
+
+    private long cellKey(int row, int col) {
+        return (long) row * cols + col;
+    }
+
+    private static int clamp(int index, int count) {
+        return Math.max(0, Math.min(count - 1, index));
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static boolean hasCoordinates(double latitude, double longitude) {
+        return !(latitude == 0.0 && longitude == 0.0);
+    }
+
+    // Distancia haversine en metros
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.lugarescomunes.map;
+
+import com.example.lugarescomunes.Place;
+
+import java.util.Collections;
+import java.util.List;
+
+// Un marcador en el mapa: un lugar solo o un grupo de lugares cercanos.
+// La clave identifica al marcador entre recálculos: si no cambia, el marcador se conserva.
+public final class PlaceCluster {
+
+    private final String key;
+    private final double latitude;
+    private final double longitude;
+    private final List<Place> places;
+
+    PlaceCluster(String key, double latitude, double longitude, List<Place> places) {
+        this.key = key;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.places = Collections.unmodifiableList(places);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int size() {
+        return places.size();
+    }
+
+    public boolean isSingle() {
+        return places.size() == 1;
+    }
+
+    // Solo tiene sentido si isSingle()
+    public Place getPlace() {
+        return places.get(0);
+    }
+
+    public List<Place> getPlaces() {
+        return places;
+    }
+}
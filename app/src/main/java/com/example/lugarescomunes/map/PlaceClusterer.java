@@ -0,0 +1,171 @@
+package com.example.lugarescomunes.map;
+
+import com.example.lugarescomunes.Place;
+import com.example.lugarescomunes.location.PlaceSpatialIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Agrupamiento de lugares para el mapa, por grilla en coordenadas Mercator.
+// Inmutable: se construye fuera del hilo principal cada vez que cambian los lugares y se consulta
+// en cada "camera idle" desde un hilo de fondo. Solo se agrupan los lugares dentro del área
+// pedida; la grilla está fija al mundo (no al viewport), así que al desplazar el mapa los grupos
+// que siguen visibles conservan su clave y su marcador.
+public final class PlaceClusterer {
+
+    // Tamaño de un tile de Google Maps a zoom 0, en dp
+    private static final double TILE_SIZE_DP = 256.0;
+    // Lado de cada celda de agrupamiento en pantalla
+    private static final double CELL_SIZE_DP = 64.0;
+    // Desde este zoom cada lugar tiene su propio marcador
+    public static final int MAX_CLUSTER_ZOOM = 19;
+
+    public static final PlaceClusterer EMPTY = new PlaceClusterer(new ArrayList<>());
+
+    // Ordenados por x (longitud) para ubicar con búsqueda binaria la franja visible
+    private final Place[] places;
+    private final double[] xs;
+    private final double[] ys;
+
+    public static PlaceClusterer build(List<Place> places) {
+        if (places == null || places.isEmpty()) {
+            return EMPTY;
+        }
+        return new PlaceClusterer(places);
+    }
+
+    private PlaceClusterer(List<Place> source) {
+        List<Place> located = new ArrayList<>(source.size());
+        for (Place place : source) {
+            if (place != null && PlaceSpatialIndex.hasCoordinates(place.getLatitude(), place.getLongitude())) {
+                located.add(place);
+            }
+        }
+
+        Place[] sorted = located.toArray(new Place[0]);
+        Arrays.sort(sorted, (a, b) -> Double.compare(worldX(a.getLongitude()), worldX(b.getLongitude())));
+
+        this.places = sorted;
+        this.xs = new double[sorted.length];
+        this.ys = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            xs[i] = worldX(sorted[i].getLongitude());
+            ys[i] = worldY(sorted[i].getLatitude());
+        }
+    }
+
+    public int size() {
+        return places.length;
+    }
+
+    public boolean isEmpty() {
+        return places.length == 0;
+    }
+
+    // Marcadores para el área indicada (en grados) a este zoom.
+    // El campus no cruza el antimeridiano: west siempre es menor que east.
+    public List<PlaceCluster> clusters(double south, double west, double north, double east, float zoom) {
+        List<PlaceCluster> result = new ArrayList<>();
+        if (isEmpty()) {
+            return result;
+        }
+
+        double minX = worldX(west);
+        double maxX = worldX(east);
+        double minY = worldY(north);
+        double maxY = worldY(south);
+
+        int from = lowerBound(minX);
+        int level = Math.max(0, (int) Math.floor(zoom));
+
+        if (level >= MAX_CLUSTER_ZOOM) {
+            for (int i = from; i < places.length && xs[i] <= maxX; i++) {
+                if (ys[i] >= minY && ys[i] <= maxY) {
+                    result.add(single(places[i]));
+                }
+            }
+            return result;
+        }
+
+        // Zoom entero: la grilla no cambia con cada paso del pinch
+        double cell = CELL_SIZE_DP / (TILE_SIZE_DP * Math.pow(2, level));
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int i = from; i < places.length && xs[i] <= maxX; i++) {
+            if (ys[i] < minY || ys[i] > maxY) {
+                continue;
+            }
+            long cellX = (long) Math.floor(xs[i] / cell);
+            long cellY = (long) Math.floor(ys[i] / cell);
+            Long key = (cellX << 32) | (cellY & 0xffffffffL);
+            List<Integer> members = cells.get(key);
+            if (members == null) {
+                members = new ArrayList<>();
+                cells.put(key, members);
+            }
+            members.add(i);
+        }
+
+        for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+            List<Integer> members = entry.getValue();
+            if (members.size() == 1) {
+                result.add(single(places[members.get(0)]));
+                continue;
+            }
+
+            double latitudeSum = 0;
+            double longitudeSum = 0;
+            List<Place> grouped = new ArrayList<>(members.size());
+            for (int index : members) {
+                Place place = places[index];
+                latitudeSum += place.getLatitude();
+                longitudeSum += place.getLongitude();
+                grouped.add(place);
+            }
+            long cellX = entry.getKey() >> 32;
+            long cellY = entry.getKey() & 0xffffffffL;
+            // El tamaño va en la clave: si cambia, el ícono con el número también
+            String key = "c:" + level + ":" + cellX + ":" + cellY + ":" + grouped.size();
+            result.add(new PlaceCluster(key, latitudeSum / grouped.size(), longitudeSum / grouped.size(), grouped));
+        }
+        return result;
+    }
+
+    // Clave del marcador de un lugar solo
+    public static String keyFor(String placeId) {
+        return "p:" + placeId;
+    }
+
+    private static PlaceCluster single(Place place) {
+        List<Place> members = new ArrayList<>(1);
+        members.add(place);
+        return new PlaceCluster(keyFor(place.getId()), place.getLatitude(), place.getLongitude(), members);
+    }
+
+    // Primer índice con xs[i] >= x
+    private int lowerBound(double x) {
+        int low = 0;
+        int high = xs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (xs[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Coordenadas de mundo Mercator en [0, 1]
+    private static double worldX(double longitude) {
+        return (longitude + 180.0) / 360.0;
+    }
+
+    private static double worldY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85.0, Math.min(85.0, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.lugarescomunes.models;
+
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Recorrido de una ruta en arreglos primitivos: coordenadas en 1e-7 grados codificadas como
+// diferencias con el punto anterior, e instrucciones/landmarks como índices a una tabla de
+// textos sin repetidos. Cientos de puntos ocupan unos pocos int[] en vez de miles de objetos
+// (BigDecimal, String, RoutePointResponse).
+//
+// Inmutable. El códec binario (encode/decode) reproduce exactamente la misma polilínea.
+public final class CompactPolyline {
+
+    private static final double E7 = 1e7;
+    // Cada CHECKPOINT_INTERVAL puntos se guarda el valor absoluto: acceso aleatorio en O(32)
+    private static final int CHECKPOINT_SHIFT = 5;
+    private static final int CHECKPOINT_INTERVAL = 1 << CHECKPOINT_SHIFT;
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    private static final int NO_STRING = -1;
+
+    public static final CompactPolyline EMPTY = new CompactPolyline(new int[0], new int[0], new int[0], new int[0],
+            new int[0], new int[0], null, new String[0]);
+
+    // Recorre los puntos sin crear objetos por punto
+    public interface PointVisitor {
+        void visit(int index, double latitude, double longitude);
+    }
+
+    private final int size;
+    private final int[] latDeltas;
+    private final int[] lngDeltas;
+    private final int[] latCheckpoints;
+    private final int[] lngCheckpoints;
+    private final int[] stepOrders;
+    private final int[] instructions;
+    private final int[] landmarks;
+    private final int[] secondsFromPrevious;
+    private final String[] pointIds;
+    private final String[] strings;
+
+    private CompactPolyline(int[] latDeltas, int[] lngDeltas, int[] stepOrders, int[] instructions,
+                            int[] landmarks, int[] secondsFromPrevious, String[] pointIds, String[] strings) {
+        this.size = latDeltas.length;
+        this.latDeltas = latDeltas;
+        this.lngDeltas = lngDeltas;
+        this.stepOrders = stepOrders;
+        this.instructions = instructions;
+        this.landmarks = landmarks;
+        this.secondsFromPrevious = secondsFromPrevious;
+        this.pointIds = pointIds;
+        this.strings = strings;
+
+        int checkpoints = (size + CHECKPOINT_INTERVAL - 1) >> CHECKPOINT_SHIFT;
+        this.latCheckpoints = new int[checkpoints];
+        this.lngCheckpoints = new int[checkpoints];
+        int lat = 0;
+        int lng = 0;
+        for (int i = 0; i < size; i++) {
+            lat += latDeltas[i];
+            lng += lngDeltas[i];
+            if ((i & (CHECKPOINT_INTERVAL - 1)) == 0) {
+                latCheckpoints[i >> CHECKPOINT_SHIFT] = lat;
+                lngCheckpoints[i >> CHECKPOINT_SHIFT] = lng;
+            }
+        }
+    }
+
+    // Los puntos se ordenan por stepOrder (los que no lo tienen conservan su posición relativa al final)
+    public static CompactPolyline fromPoints(List<RoutePointResponse> source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+
+        // Un punto sin coordenadas no se puede ubicar: como (0,0) mandaría el recorrido al golfo de Guinea
+        List<RoutePointResponse> points = new ArrayList<>(source.size());
+        for (RoutePointResponse point : source) {
+            if (point != null && point.getLatitude() != null && point.getLongitude() != null) {
+                points.add(point);
+            }
+        }
+        if (points.isEmpty()) {
+            return EMPTY;
+        }
+        Collections.sort(points, (a, b) -> Integer.compare(
+                a.getStepOrder() != null ? a.getStepOrder() : Integer.MAX_VALUE,
+                b.getStepOrder() != null ? b.getStepOrder() : Integer.MAX_VALUE));
+
+        int size = points.size();
+        int[] latDeltas = new int[size];
+        int[] lngDeltas = new int[size];
+        int[] stepOrders = new int[size];
+        int[] instructions = new int[size];
+        int[] landmarks = new int[size];
+        int[] seconds = new int[size];
+        String[] pointIds = null;
+        Map<String, Integer> indices = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+
+        int previousLat = 0;
+        int previousLng = 0;
+        for (int i = 0; i < size; i++) {
+            RoutePointResponse point = points.get(i);
+            int lat = toE7(point.getLatitude());
+            int lng = toE7(point.getLongitude());
+            latDeltas[i] = lat - previousLat;
+            lngDeltas[i] = lng - previousLng;
+            previousLat = lat;
+            previousLng = lng;
+
+            stepOrders[i] = point.getStepOrder() != null ? point.getStepOrder() : NO_VALUE;
+            seconds[i] = point.getEstimatedTimeFromPreviousSeconds() != null ?
+                    point.getEstimatedTimeFromPreviousSeconds() : NO_VALUE;
+            instructions[i] = intern(point.getInstruction(), indices, strings);
+            landmarks[i] = intern(point.getLandmark(), indices, strings);
+
+            if (point.getId() != null) {
+                if (pointIds == null) {
+                    pointIds = new String[size];
+                }
+                pointIds[i] = point.getId();
+            }
+        }
+
+        return new CompactPolyline(latDeltas, lngDeltas, stepOrders, instructions, landmarks, seconds,
+                pointIds, strings.toArray(new String[0]));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getLatitude(int index) {
+        return absolute(latDeltas, latCheckpoints, index) / E7;
+    }
+
+    public double getLongitude(int index) {
+        return absolute(lngDeltas, lngCheckpoints, index) / E7;
+    }
+
+    public Integer getStepOrder(int index) {
+        return valueOrNull(stepOrders[index]);
+    }
+
+    public String getInstruction(int index) {
+        return string(instructions[index]);
+    }
+
+    public String getLandmark(int index) {
+        return string(landmarks[index]);
+    }
+
+    public Integer getSecondsFromPrevious(int index) {
+        return valueOrNull(secondsFromPrevious[index]);
+    }
+
+    public String getPointId(int index) {
+        return pointIds != null ? pointIds[index] : null;
+    }
+
+    // Recorrido secuencial: una suma por punto, sin volver a los checkpoints
+    public void forEachPoint(PointVisitor visitor) {
+        int lat = 0;
+        int lng = 0;
+        for (int i = 0; i < size; i++) {
+            lat += latDeltas[i];
+            lng += lngDeltas[i];
+            visitor.visit(i, lat / E7, lng / E7);
+        }
+    }
+
+    // Copia las coordenadas en arreglos del llamador (por ejemplo reutilizados entre frames)
+    public void copyCoordinates(double[] latitudes, double[] longitudes) {
+        int lat = 0;
+        int lng = 0;
+        for (int i = 0; i < size; i++) {
+            lat += latDeltas[i];
+            lng += lngDeltas[i];
+            latitudes[i] = lat / E7;
+            longitudes[i] = lng / E7;
+        }
+    }
+
+    // El SDK de mapas solo acepta LatLng: se crean recién al dibujar, nunca se guardan
+    public List<LatLng> toLatLngs() {
+        List<LatLng> latLngs = new ArrayList<>(size);
+        forEachPoint((index, latitude, longitude) -> latLngs.add(new LatLng(latitude, longitude)));
+        return latLngs;
+    }
+
+    // Para código que todavía trabaja con el modelo de la API
+    public List<RoutePointResponse> toRoutePoints() {
+        List<RoutePointResponse> points = new ArrayList<>(size);
+        forEachPoint((index, latitude, longitude) -> {
+            RoutePointResponse point = new RoutePointResponse();
+            point.setId(getPointId(index));
+            point.setLatitude(BigDecimal.valueOf(latitude));
+            point.setLongitude(BigDecimal.valueOf(longitude));
+            point.setStepOrder(getStepOrder(index));
+            point.setInstruction(getInstruction(index));
+            point.setLandmark(getLandmark(index));
+            point.setEstimatedTimeFromPreviousSeconds(getSecondsFromPrevious(index));
+            points.add(point);
+        });
+        return points;
+    }
+
+    // Heap aproximado de esta representación
+    public long estimateBytes() {
+        long bytes = 16 + 11 * 4 + 9 * 16L + (6L * size + 2L * latCheckpoints.length) * 4;
+        for (String value : strings) {
+            bytes += 40 + 2L * value.length();
+        }
+        if (pointIds != null) {
+            bytes += 4L * size;
+            for (String id : pointIds) {
+                bytes += id != null ? 40 + 2L * id.length() : 0;
+            }
+        }
+        return bytes;
+    }
+
+    private static int absolute(int[] deltas, int[] checkpoints, int index) {
+        if (index < 0 || index >= deltas.length) {
+            throw new IndexOutOfBoundsException("Punto " + index + " de " + deltas.length);
+        }
+        int checkpoint = index >> CHECKPOINT_SHIFT;
+        int value = checkpoints[checkpoint];
+        for (int i = (checkpoint << CHECKPOINT_SHIFT) + 1; i <= index; i++) {
+            value += deltas[i];
+        }
+        return value;
+    }
+
+    private String string(int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static Integer valueOrNull(int value) {
+        return value == NO_VALUE ? null : value;
+    }
+
+    private static int toE7(BigDecimal value) {
+        return (int) Math.round(value.doubleValue() * E7);
+    }
+
+    private static int intern(String value, Map<String, Integer> indices, List<String> strings) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = strings.size();
+            indices.put(value, index);
+            strings.add(value);
+        }
+        return index;
+    }
+
+    // ===== CÓDEC BINARIO =====
+    //
+    // varint cantidad de puntos, tabla de textos (varint n, n x (varint largo, UTF-8)),
+    // y luego una columna por campo: deltas de lat/lng en zigzag-varint y enteros opcionales
+    // como varint (0 = ausente, si no zigzag + 1). Los ids van al final solo si existen.
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + size * 6);
+        writeVarint(out, size);
+        writeVarint(out, strings.length);
+        for (String value : strings) {
+            writeString(out, value);
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, zigzag(latDeltas[i]));
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, zigzag(lngDeltas[i]));
+        }
+        writeOptionalColumn(out, stepOrders);
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, instructions[i] + 1);
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, landmarks[i] + 1);
+        }
+        writeOptionalColumn(out, secondsFromPrevious);
+        out.write(pointIds != null ? 1 : 0);
+        if (pointIds != null) {
+            for (String id : pointIds) {
+                if (id == null) {
+                    writeVarint(out, 0);
+                } else {
+                    writeVarint(out, 1);
+                    writeString(out, id);
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // Lee desde la posición actual del buffer (puede ser un archivo mapeado) y la avanza
+    public static CompactPolyline decode(ByteBuffer in) {
+        int size = readVarint(in);
+        String[] strings = new String[readVarint(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+        int[] latDeltas = new int[size];
+        int[] lngDeltas = new int[size];
+        for (int i = 0; i < size; i++) {
+            latDeltas[i] = unzigzag(readVarint(in));
+        }
+        for (int i = 0; i < size; i++) {
+            lngDeltas[i] = unzigzag(readVarint(in));
+        }
+        int[] stepOrders = readOptionalColumn(in, size);
+        int[] instructions = new int[size];
+        int[] landmarks = new int[size];
+        for (int i = 0; i < size; i++) {
+            instructions[i] = readVarint(in) - 1;
+        }
+        for (int i = 0; i < size; i++) {
+            landmarks[i] = readVarint(in) - 1;
+        }
+        int[] seconds = readOptionalColumn(in, size);
+        String[] pointIds = null;
+        if (in.get() != 0) {
+            pointIds = new String[size];
+            for (int i = 0; i < size; i++) {
+                pointIds[i] = readVarint(in) == 0 ? null : readString(in);
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        return new CompactPolyline(latDeltas, lngDeltas, stepOrders, instructions, landmarks, seconds,
+                pointIds, strings);
+    }
+
+    private static void writeOptionalColumn(ByteArrayOutputStream out, int[] values) {
+        for (int value : values) {
+            writeVarint(out, value == NO_VALUE ? 0 : zigzag(value) + 1);
+        }
+    }
+
+    private static int[] readOptionalColumn(ByteBuffer in, int size) {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            int raw = readVarint(in);
+            values[i] = raw == 0 ? NO_VALUE : unzigzag(raw - 1);
+        }
+        return values;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Zigzag: deltas negativos chicos también ocupan pocos bytes
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.lugarescomunes.navigation;
+
+import com.example.lugarescomunes.models.CompactPolyline;
+
+// Navegación paso a paso sobre el recorrido de una ruta, sin red.
+// Cada ubicación se proyecta sobre el tramo más cercano de la polilínea, pero solo se revisan
+// los tramos alrededor del último match (una ventana de metros acotada), así el costo por fix
+// no depende del largo de la ruta. La búsqueda completa solo ocurre al empezar y al volver
+// a la ruta después de salirse.
+public class NavigationEngine {
+
+    public enum State {
+        WAITING, ON_ROUTE, OFF_ROUTE, ARRIVED
+    }
+
+    private static final double METERS_PER_DEGREE_LAT = 111_320.0;
+
+    // Más lejos que esto (o que la precisión del fix) cuenta como fuera de ruta
+    private static final double OFF_ROUTE_METERS = 30;
+    // Fixes seguidos fuera de ruta antes de avisar: un rebote del GPS no alcanza
+    private static final int OFF_ROUTE_FIXES = 3;
+    private static final double ARRIVAL_METERS = 15;
+    // Una instrucción se considera pasada cuando se avanzó este margen más allá de su punto
+    private static final double INSTRUCTION_PASSED_METERS = 5;
+
+    // Ventana de búsqueda alrededor del último match
+    private static final double WINDOW_BACK_METERS = 20;
+    private static final double WINDOW_FORWARD_METERS = 120;
+    private static final int WINDOW_MAX_SEGMENTS = 64;
+    // Un tramo anterior al actual tiene que estar claramente más cerca para retroceder
+    private static final double BACKTRACK_PENALTY_METERS = 5;
+
+    public static class Update {
+        private final State state;
+        private final double snappedLatitude;
+        private final double snappedLongitude;
+        private final double distanceFromRoute;
+        private final double travelledMeters;
+        private final double remainingMeters;
+        private final double totalMeters;
+        private final String instruction;
+        private final String landmark;
+        private final Integer stepOrder;
+        private final double distanceToInstruction;
+
+        Update(State state, double snappedLatitude, double snappedLongitude, double distanceFromRoute,
+               double travelledMeters, double totalMeters, String instruction, String landmark,
+               Integer stepOrder, double distanceToInstruction) {
+            this.state = state;
+            this.snappedLatitude = snappedLatitude;
+            this.snappedLongitude = snappedLongitude;
+            this.distanceFromRoute = distanceFromRoute;
+            this.travelledMeters = travelledMeters;
+            this.remainingMeters = Math.max(0, totalMeters - travelledMeters);
+            this.totalMeters = totalMeters;
+            this.instruction = instruction;
+            this.landmark = landmark;
+            this.stepOrder = stepOrder;
+            this.distanceToInstruction = distanceToInstruction;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public double getSnappedLatitude() {
+            return snappedLatitude;
+        }
+
+        public double getSnappedLongitude() {
+            return snappedLongitude;
+        }
+
+        public double getDistanceFromRoute() {
+            return distanceFromRoute;
+        }
+
+        public double getTravelledMeters() {
+            return travelledMeters;
+        }
+
+        public double getRemainingMeters() {
+            return remainingMeters;
+        }
+
+        // 0..1 sobre el largo total de la ruta
+        public double getProgress() {
+            return totalMeters <= 0 ? 1.0 : Math.min(1.0, travelledMeters / totalMeters);
+        }
+
+        // Próxima instrucción; null si ya no quedan
+        public String getInstruction() {
+            return instruction;
+        }
+
+        public String getLandmark() {
+            return landmark;
+        }
+
+        public Integer getStepOrder() {
+            return stepOrder;
+        }
+
+        public double getDistanceToInstruction() {
+            return distanceToInstruction;
+        }
+    }
+
+    private final CompactPolyline polyline;
+    private final int pointCount;
+    private final int segmentCount;
+    // Coordenadas planas en metros alrededor del primer punto (el campus es chico)
+    private final double originLat;
+    private final double originLng;
+    private final double metersPerDegreeLng;
+    private final double[] xs;
+    private final double[] ys;
+    // Metros recorridos sobre la ruta hasta cada punto
+    private final double[] cumulative;
+    private final double totalMeters;
+    // Índices de los puntos que tienen instrucción, en orden
+    private final int[] instructionPoints;
+
+    private State state = State.WAITING;
+    private int segment = -1;
+    private double travelled = 0;
+    private int nextInstruction = 0;
+    private int offRouteFixes = 0;
+    private int segmentsExamined = 0;
+    private Update lastUpdate;
+
+    // Resultado de la última proyección sobre un tramo (evita crear objetos por tramo)
+    private double projectedT;
+
+    public NavigationEngine(CompactPolyline polyline) {
+        if (polyline == null || polyline.isEmpty()) {
+            throw new IllegalArgumentException("La ruta no tiene puntos");
+        }
+        this.polyline = polyline;
+        this.pointCount = polyline.size();
+        this.segmentCount = Math.max(0, pointCount - 1);
+
+        double[] latitudes = new double[pointCount];
+        double[] longitudes = new double[pointCount];
+        polyline.copyCoordinates(latitudes, longitudes);
+
+        this.originLat = latitudes[0];
+        this.originLng = longitudes[0];
+        this.metersPerDegreeLng = METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians(originLat));
+        this.xs = new double[pointCount];
+        this.ys = new double[pointCount];
+        this.cumulative = new double[pointCount];
+
+        int instructions = 0;
+        for (int i = 0; i < pointCount; i++) {
+            xs[i] = (longitudes[i] - originLng) * metersPerDegreeLng;
+            ys[i] = (latitudes[i] - originLat) * METERS_PER_DEGREE_LAT;
+            if (i > 0) {
+                cumulative[i] = cumulative[i - 1] + Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+            }
+            if (polyline.getInstruction(i) != null) {
+                instructions++;
+            }
+        }
+        this.totalMeters = cumulative[pointCount - 1];
+
+        this.instructionPoints = new int[instructions];
+        int next = 0;
+        for (int i = 0; i < pointCount; i++) {
+            if (polyline.getInstruction(i) != null) {
+                instructionPoints[next++] = i;
+            }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public double getTotalMeters() {
+        return totalMeters;
+    }
+
+    public Update getLastUpdate() {
+        return lastUpdate;
+    }
+
+    // Tramos revisados en el último update (para verificar que la ventana se mantiene acotada)
+    public int getSegmentsExamined() {
+        return segmentsExamined;
+    }
+
+    public Update update(double latitude, double longitude, float accuracyMeters) {
+        if (state == State.ARRIVED) {
+            return lastUpdate;
+        }
+
+        double px = (longitude - originLng) * metersPerDegreeLng;
+        double py = (latitude - originLat) * METERS_PER_DEGREE_LAT;
+        double offRouteThreshold = Math.max(OFF_ROUTE_METERS, accuracyMeters);
+
+        double distanceFromRoute;
+        double matchedX;
+        double matchedY;
+        if (segmentCount == 0) {
+            // Ruta de un solo punto: solo queda llegar
+            segmentsExamined = 0;
+            matchedX = xs[0];
+            matchedY = ys[0];
+            distanceFromRoute = Math.hypot(px - xs[0], py - ys[0]);
+        } else {
+            boolean firstMatch = segment < 0;
+            boolean fullSearch = firstMatch || state == State.OFF_ROUTE;
+            int from = fullSearch ? 0 : windowStart();
+            int to = fullSearch ? segmentCount - 1 : windowEnd();
+
+            int bestSegment = -1;
+            double bestScore = Double.MAX_VALUE;
+            double bestDistance = Double.MAX_VALUE;
+            double bestT = 0;
+            for (int i = from; i <= to; i++) {
+                double distance = distanceToSegment(i, px, py);
+                double score = !fullSearch && i < segment ? distance + BACKTRACK_PENALTY_METERS : distance;
+                // Al empezar, un tramo posterior tiene que estar claramente más cerca: en una ruta
+                // circular el inicio y el final coinciden y hay que arrancar por el principio
+                double margin = firstMatch ? BACKTRACK_PENALTY_METERS : 0;
+                if (score < bestScore - margin) {
+                    bestScore = score;
+                    bestDistance = distance;
+                    bestSegment = i;
+                    bestT = projectedT;
+                }
+            }
+            segmentsExamined = to - from + 1;
+
+            matchedX = xs[bestSegment] + bestT * (xs[bestSegment + 1] - xs[bestSegment]);
+            matchedY = ys[bestSegment] + bestT * (ys[bestSegment + 1] - ys[bestSegment]);
+            distanceFromRoute = bestDistance;
+
+            if (bestDistance <= offRouteThreshold) {
+                offRouteFixes = 0;
+                segment = bestSegment;
+                travelled = cumulative[bestSegment] + bestT * (cumulative[bestSegment + 1] - cumulative[bestSegment]);
+                if (fullSearch) {
+                    // Volvió a la ruta en cualquier parte: reubicar el puntero de instrucciones
+                    nextInstruction = firstInstructionAfter(travelled);
+                }
+                state = State.ON_ROUTE;
+            } else if (++offRouteFixes >= OFF_ROUTE_FIXES) {
+                state = State.OFF_ROUTE;
+            }
+        }
+
+        // Solo se llega después de recorrer la ruta hasta (casi) el último tramo: en una ruta
+        // circular el primer fix también está cerca del final
+        boolean onLastSegment = segmentCount == 0 ||
+                (segment >= 0 && travelled >= cumulative[segmentCount - 1] - ARRIVAL_METERS);
+        double distanceToEnd = Math.hypot(px - xs[pointCount - 1], py - ys[pointCount - 1]);
+        if (onLastSegment && (distanceToEnd <= ARRIVAL_METERS ||
+                (state == State.ON_ROUTE && totalMeters - travelled <= ARRIVAL_METERS))) {
+            state = State.ARRIVED;
+            travelled = totalMeters;
+        } else if (state == State.WAITING && segmentCount == 0) {
+            state = State.ON_ROUTE;
+        }
+
+        advanceInstructions();
+
+        String instruction = null;
+        String landmark = null;
+        Integer stepOrder = null;
+        double distanceToInstruction = 0;
+        if (nextInstruction < instructionPoints.length && state != State.ARRIVED) {
+            int point = instructionPoints[nextInstruction];
+            instruction = polyline.getInstruction(point);
+            landmark = polyline.getLandmark(point);
+            stepOrder = polyline.getStepOrder(point);
+            distanceToInstruction = Math.max(0, cumulative[point] - travelled);
+        }
+
+        lastUpdate = new Update(state,
+                originLat + matchedY / METERS_PER_DEGREE_LAT,
+                originLng + matchedX / metersPerDegreeLng,
+                distanceFromRoute, travelled, totalMeters,
+                instruction, landmark, stepOrder, distanceToInstruction);
+        return lastUpdate;
+    }
+
+    // Primer tramo de la ventana: hasta WINDOW_BACK_METERS antes de la posición actual
+    private int windowStart() {
+        int start = segment;
+        while (start > 0 && segment - start < WINDOW_MAX_SEGMENTS &&
+                travelled - cumulative[start] < WINDOW_BACK_METERS) {
+            start--;
+        }
+        return start;
+    }
+
+    // Último tramo de la ventana: hasta WINDOW_FORWARD_METERS más adelante
+    private int windowEnd() {
+        int end = segment;
+        while (end < segmentCount - 1 && end - segment < WINDOW_MAX_SEGMENTS &&
+                cumulative[end + 1] - travelled < WINDOW_FORWARD_METERS) {
+            end++;
+        }
+        return end;
+    }
+
+    private void advanceInstructions() {
+        while (nextInstruction < instructionPoints.length &&
+                cumulative[instructionPoints[nextInstruction]] + INSTRUCTION_PASSED_METERS <= travelled) {
+            nextInstruction++;
+        }
+    }
+
+    // Búsqueda binaria: solo se usa al reubicarse, no en cada fix
+    private int firstInstructionAfter(double meters) {
+        int low = 0;
+        int high = instructionPoints.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[instructionPoints[mid]] + INSTRUCTION_PASSED_METERS <= meters) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Distancia del punto al tramo i; deja en projectedT la posición relativa (0..1) del pie
+    private double distanceToSegment(int i, double px, double py) {
+        double ax = xs[i];
+        double ay = ys[i];
+        double dx = xs[i + 1] - ax;
+        double dy = ys[i + 1] - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        projectedT = t;
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+}
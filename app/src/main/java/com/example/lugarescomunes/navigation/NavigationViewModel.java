@@ -0,0 +1,44 @@
+package com.example.lugarescomunes.navigation;
+
+import androidx.lifecycle.ViewModel;
+
+// Estado de una navegación que sobrevive a la rotación y a otros cambios de configuración:
+// el motor con su progreso y la sesión abierta en el outbox. Sin esto, la Activity recreada
+// perdía el avance y abría una segunda sesión que nunca se completaba.
+public class NavigationViewModel extends ViewModel {
+
+    private NavigationEngine engine;
+    // Id local de la sesión: se abre con el primer fix y se cierra al llegar o al finalizar
+    private String sessionId;
+    private long startedAt;
+    private boolean finished = false;
+
+    public NavigationEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(NavigationEngine engine) {
+        this.engine = engine;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void startSession(String sessionId, long startedAt) {
+        this.sessionId = sessionId;
+        this.startedAt = startedAt;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished() {
+        this.finished = true;
+    }
+}
@@ -1,11 +1,12 @@
 package com.example.lugarescomunes.repository;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 import com.example.lugarescomunes.api.ApiConfig;
 import com.example.lugarescomunes.api.LugaresApiService;
+import com.example.lugarescomunes.api.TokenAuthenticator;
 import com.example.lugarescomunes.models.api.*;
+import com.example.lugarescomunes.repository.local.SessionStore;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -16,24 +17,38 @@ import retrofit2.Response;
 public class AuthRepository {
 
     private static final String TAG = "AuthRepository";
-    private static final String PREFS_NAME = "LugaresComunes";
-    private static final String KEY_TOKEN = "auth_token";
-    private static final String KEY_USER_ID = "user_id";
-    private static final String KEY_USER_EMAIL = "user_email";
-    private static final String KEY_USER_NAME = "user_name";
-    private static final String KEY_USER_TYPE = "user_type";
-    private static final String KEY_IS_LOGGED_IN = "is_logged_in";
 
     private static AuthRepository instance;
     private LugaresApiService apiService;
-    private SharedPreferences sharedPreferences;
-    private boolean isLoggedIn = false;
-    private UserResponse currentUser = null;
+    // Sesión en DataStore: se lee y se escribe fuera del hilo principal
+    private final SessionStore sessionStore;
+    private final CompletableFuture<AuthRepository> sessionLoaded;
+    private volatile boolean isLoggedIn = false;
+    private volatile UserResponse currentUser = null;
 
     private AuthRepository(Context context) {
         apiService = ApiConfig.getApiService();
-        sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        loadUserSession();
+        sessionStore = SessionStore.getInstance(context);
+        sessionLoaded = sessionStore.load().thenApply(session -> {
+            loadUserSession(session);
+            return this;
+        });
+        ApiConfig.getTokenAuthenticator().setListener(new TokenAuthenticator.Listener() {
+            @Override
+            public void onTokenRefreshed(String token) {
+                // El token renovado se guarda para el próximo inicio
+                UserResponse user = currentUser;
+                if (user != null) {
+                    sessionStore.save(token, user);
+                }
+            }
+
+            @Override
+            public void onSessionExpired() {
+                Log.w(TAG, "El servidor rechazó la renovación del token, cerrando sesión");
+                clearUserSession();
+            }
+        });
         Log.i(TAG, "AuthRepository inicializado");
     }
 
@@ -44,39 +59,30 @@ public class AuthRepository {
         return instance;
     }
 
-    // Cargar sesión de usuario desde SharedPreferences
-    private void loadUserSession() {
-        isLoggedIn = sharedPreferences.getBoolean(KEY_IS_LOGGED_IN, false);
-        if (isLoggedIn) {
-            String token = sharedPreferences.getString(KEY_TOKEN, null);
-            if (token != null) {
-                ApiConfig.setAuthToken(token);
-
-                // Recrear objeto de usuario
-                currentUser = new UserResponse();
-                currentUser.setId(sharedPreferences.getString(KEY_USER_ID, ""));
-                currentUser.setEmail(sharedPreferences.getString(KEY_USER_EMAIL, ""));
-                currentUser.setFullName(sharedPreferences.getString(KEY_USER_NAME, ""));
-                currentUser.setUserType(sharedPreferences.getString(KEY_USER_TYPE, "VISITOR"));
-
-                Log.i(TAG, "Sesión de usuario cargada: " + currentUser.getEmail());
-            } else {
-                // Si no hay token, limpiar estado
-                clearUserSession();
-            }
+    // Completa cuando la sesión guardada ya está en memoria (isLoggedIn y el token son confiables)
+    public CompletableFuture<AuthRepository> whenSessionLoaded() {
+        return sessionLoaded;
+    }
+
+    // Aplicar la sesión leída de disco
+    private void loadUserSession(SessionStore.Session session) {
+        if (session == null) {
+            return;
+        }
+        // Un login o logout posterior ya dejó el estado al día
+        if (sessionStore.getSnapshot() != session) {
+            return;
         }
+        ApiConfig.setAuthToken(session.getToken());
+        currentUser = session.getUser();
+        isLoggedIn = true;
+
+        Log.i(TAG, "Sesión de usuario cargada: " + currentUser.getEmail());
     }
 
-    // Guardar sesión de usuario
+    // Guardar sesión de usuario (todas las claves en una sola escritura)
     private void saveUserSession(String token, UserResponse user) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(KEY_IS_LOGGED_IN, true);
-        editor.putString(KEY_TOKEN, token);
-        editor.putString(KEY_USER_ID, user.getId());
-        editor.putString(KEY_USER_EMAIL, user.getEmail());
-        editor.putString(KEY_USER_NAME, user.getFullName());
-        editor.putString(KEY_USER_TYPE, user.getUserType());
-        editor.apply();
+        sessionStore.save(token, user);
 
         isLoggedIn = true;
         currentUser = user;
@@ -87,14 +93,7 @@ public class AuthRepository {
 
     // Limpiar sesión de usuario
     private void clearUserSession() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.remove(KEY_IS_LOGGED_IN);
-        editor.remove(KEY_TOKEN);
-        editor.remove(KEY_USER_ID);
-        editor.remove(KEY_USER_EMAIL);
-        editor.remove(KEY_USER_NAME);
-        editor.remove(KEY_USER_TYPE);
-        editor.apply();
+        sessionStore.clear();
 
         isLoggedIn = false;
         currentUser = null;
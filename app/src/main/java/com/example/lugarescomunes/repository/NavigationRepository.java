@@ -0,0 +1,64 @@
+package com.example.lugarescomunes.repository;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.lugarescomunes.models.api.CompleteNavigationRequest;
+import com.example.lugarescomunes.models.api.StartNavigationRequest;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// Sesiones de navegación en el servidor (inicio y fin); el seguimiento en sí es local.
+// Ambas escrituras pasan por OutboxRepository: navegar sin señal no pierde la sesión.
+public class NavigationRepository {
+
+    private static final String TAG = "NavigationRepository";
+    private static NavigationRepository instance;
+    private final OutboxRepository outbox;
+
+    private NavigationRepository(Context context) {
+        this.outbox = OutboxRepository.getInstance(context);
+        Log.i(TAG, "NavigationRepository inicializado");
+    }
+
+    public static synchronized NavigationRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new NavigationRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Registrar el inicio de una navegación. Devuelve un id de sesión local: el del servidor
+    // se conoce recién cuando la cola envía el inicio, y se resuelve al enviar el cierre.
+    public String startNavigation(String routeId, double latitude, double longitude) {
+        if (routeId == null || routeId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Parámetros inválidos");
+        }
+
+        String localSessionId = UUID.randomUUID().toString();
+        StartNavigationRequest request = new StartNavigationRequest(routeId,
+                BigDecimal.valueOf(latitude), BigDecimal.valueOf(longitude));
+        outbox.enqueue(OutboxRepository.TYPE_START_NAVIGATION, localSessionId, request, null);
+
+        Log.i(TAG, "Navegación iniciada en ruta " + routeId + " (sesión local " + localSessionId + ")");
+        return localSessionId;
+    }
+
+    // Cerrar la sesión con la posición final, el tiempo real y si se llegó al destino
+    public void completeNavigation(String localSessionId, double latitude, double longitude,
+                                   Integer actualTimeMinutes, boolean wasSuccessful) {
+        if (localSessionId == null || localSessionId.trim().isEmpty()) {
+            Log.w(TAG, "Cierre de navegación sin sesión");
+            return;
+        }
+
+        // El id del servidor se completa al enviar (ver OutboxRepository)
+        CompleteNavigationRequest request = new CompleteNavigationRequest(localSessionId,
+                BigDecimal.valueOf(latitude), BigDecimal.valueOf(longitude));
+        request.setActualTimeMinutes(actualTimeMinutes);
+        request.setWasSuccessful(wasSuccessful);
+        outbox.enqueue(OutboxRepository.TYPE_COMPLETE_NAVIGATION, localSessionId, request, null);
+
+        Log.i(TAG, "Navegación completada: " + localSessionId + " (exitosa: " + wasSuccessful + ")");
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.lugarescomunes.repository;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.lugarescomunes.api.ApiConfig;
+import com.example.lugarescomunes.api.LugaresApiService;
+import com.example.lugarescomunes.models.api.ApiResponse;
+import com.example.lugarescomunes.models.api.CompleteNavigationRequest;
+import com.example.lugarescomunes.models.api.NavigationResponse;
+import com.example.lugarescomunes.models.api.RateRouteRequest;
+import com.example.lugarescomunes.models.api.RouteProposalRequest;
+import com.example.lugarescomunes.models.api.StartNavigationRequest;
+import com.example.lugarescomunes.repository.local.OutboxStore;
+import com.example.lugarescomunes.work.OutboxWorker;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Escrituras hacia la API que no pueden perderse (navegación, calificaciones, propuestas).
+// Se guardan primero en disco y OutboxWorker las envía por lotes cuando hay red; cada una
+// lleva su Idempotency-Key, así un reintento después de un timeout no la duplica en el servidor.
+public class OutboxRepository {
+
+    private static final String TAG = "OutboxRepository";
+    private static OutboxRepository instance;
+
+    public static final String TYPE_START_NAVIGATION = "navigation.start";
+    public static final String TYPE_COMPLETE_NAVIGATION = "navigation.complete";
+    public static final String TYPE_RATE_ROUTE = "route.rating";
+    public static final String TYPE_SUBMIT_PROPOSAL = "route.proposal";
+
+    // Escrituras por consulta a la base mientras se vacía la cola
+    private static final int BATCH_SIZE = 25;
+    // Reintentos: 30 s, 1 min, 2 min... hasta 1 h, con jitter para no sincronizar a todos los clientes
+    private static final long BACKOFF_BASE_MS = 30_000;
+    private static final long BACKOFF_MAX_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_ATTEMPTS = 8;
+    // Sin red los intentos no se gastan: la escritura espera hasta este límite de antigüedad
+    private static final long UNREACHABLE_RETENTION_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long SESSION_ID_RETENTION_MS = TimeUnit.DAYS.toMillis(7);
+
+    enum Outcome {
+        SENT,        // aceptada (o ya recibida antes, según su Idempotency-Key)
+        RETRY,       // error transitorio del servidor: reintentar con backoff, hasta MAX_ATTEMPTS
+        UNREACHABLE, // sin red o la respuesta no vino de la API (p. ej. portal cautivo)
+        WAIT,        // depende de otra escritura que todavía no salió
+        DROP         // rechazada por el servidor o ilegible: reintentar no la arreglaría
+    }
+
+    private final Context appContext;
+    private final OutboxStore store;
+    private final Gson gson = new Gson();
+    // Un solo hilo: las escrituras entran a la cola en el mismo orden en que se pidieron
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-write");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private OutboxRepository(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.store = OutboxStore.getInstance(appContext);
+        Log.i(TAG, "OutboxRepository inicializado");
+    }
+
+    public static synchronized OutboxRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new OutboxRepository(context);
+        }
+        return instance;
+    }
+
+    // Encola sin bloquear al llamador; el envío lo programa OutboxWorker
+    public CompletableFuture<Void> enqueue(String type, String reference, Object body, String coalesceKey) {
+        String payload = gson.toJson(body);
+        String idempotencyKey = UUID.randomUUID().toString();
+        return CompletableFuture.runAsync(() -> {
+            store.add(type, reference, payload, idempotencyKey, coalesceKey);
+            Log.d(TAG, "Encolado " + type + (reference != null ? " (" + reference + ")" : ""));
+            OutboxWorker.schedule(appContext);
+        }, writeExecutor).exceptionally(throwable -> {
+            Log.e(TAG, "No se pudo encolar " + type, throwable);
+            return null;
+        });
+    }
+
+    // Envía todo lo que esté listo. Corre en el hilo del worker (llamadas síncronas).
+    // Devuelve en cuántos ms vuelve a haber algo para enviar, o -1 si la cola quedó vacía.
+    // Sincronizado: el envío normal y el de reintentos pueden coincidir
+    public synchronized long flush() {
+        LugaresApiService apiService = ApiConfig.getApiService();
+        int sent = 0;
+        int retried = 0;
+        int dropped = 0;
+        long pauseUntil = 0;
+
+        store.pruneSessionIds(System.currentTimeMillis() - SESSION_ID_RETENTION_MS);
+
+        List<OutboxStore.Entry> batch;
+        while (!(batch = store.due(System.currentTimeMillis(), BATCH_SIZE)).isEmpty()) {
+            boolean networkDown = false;
+            for (OutboxStore.Entry entry : batch) {
+                Outcome outcome;
+                try {
+                    outcome = send(apiService, entry);
+                } catch (IOException | RuntimeException e) {
+                    // También la respuesta que el converter no pudo leer: un portal cautivo
+                    // contesta 200 con HTML, y descartar la escritura por eso la perdería
+                    Log.w(TAG, "Sin respuesta de la API enviando " + entry.getType(), e);
+                    outcome = Outcome.UNREACHABLE;
+                }
+
+                switch (outcome) {
+                    case SENT:
+                        store.remove(entry.getId());
+                        sent++;
+                        break;
+                    case WAIT:
+                        store.reschedule(entry.getId(), entry.getAttempts(),
+                                System.currentTimeMillis() + BACKOFF_BASE_MS);
+                        break;
+                    case RETRY:
+                        int attempts = entry.getAttempts() + 1;
+                        if (attempts >= MAX_ATTEMPTS) {
+                            Log.w(TAG, "Se descarta " + entry.getType() + " después de " + attempts + " intentos");
+                            store.remove(entry.getId());
+                            dropped++;
+                        } else {
+                            long retryAt = System.currentTimeMillis() + backoffDelay(attempts);
+                            store.reschedule(entry.getId(), attempts, retryAt);
+                            retried++;
+                        }
+                        break;
+                    case UNREACHABLE:
+                        networkDown = true;
+                        if (System.currentTimeMillis() - entry.getCreatedAt() > UNREACHABLE_RETENTION_MS) {
+                            Log.w(TAG, "Se descarta " + entry.getType() + ": sin poder enviarse en "
+                                    + TimeUnit.MILLISECONDS.toDays(UNREACHABLE_RETENTION_MS) + " días");
+                            store.remove(entry.getId());
+                            dropped++;
+                        } else {
+                            // Mismo número de intentos: el backoff no crece por estar sin red
+                            long retryAt = System.currentTimeMillis() + backoffDelay(entry.getAttempts() + 1);
+                            store.reschedule(entry.getId(), entry.getAttempts(), retryAt);
+                            pauseUntil = Math.max(pauseUntil, retryAt);
+                            retried++;
+                        }
+                        break;
+                    case DROP:
+                        store.remove(entry.getId());
+                        dropped++;
+                        break;
+                }
+
+                if (networkDown) {
+                    break;
+                }
+            }
+            // Sin red no tiene sentido seguir con el resto del lote
+            if (networkDown) {
+                break;
+            }
+        }
+
+        long next = store.nextAttemptAt();
+        Log.i(TAG, "Cola enviada: " + sent + " enviadas, " + retried + " a reintentar, " +
+                dropped + " descartadas, " + store.size() + " pendientes");
+        if (next < 0) {
+            return -1;
+        }
+        return Math.max(0, Math.max(next, pauseUntil) - System.currentTimeMillis());
+    }
+
+    private Outcome send(LugaresApiService apiService, OutboxStore.Entry entry) throws IOException {
+        String key = entry.getIdempotencyKey();
+        switch (entry.getType()) {
+            case TYPE_START_NAVIGATION: {
+                StartNavigationRequest request = readPayload(entry, StartNavigationRequest.class);
+                if (request == null) {
+                    return Outcome.DROP;
+                }
+                Response<ApiResponse<NavigationResponse>> response =
+                        apiService.startNavigation(key, request).execute();
+                String serverId = serverSessionId(response);
+                if (serverId != null) {
+                    store.putSessionId(entry.getReference(), serverId);
+                }
+                Outcome outcome = classify(entry.getType(), response.code());
+                if (outcome == Outcome.SENT && serverId == null && response.code() == 409) {
+                    // Repetición sin el id de la sesión: sin él el cierre no se podría enviar
+                    Log.w(TAG, "409 sin id de sesión para " + entry.getReference() + ", se reintentará");
+                    return Outcome.RETRY;
+                }
+                return outcome;
+            }
+            case TYPE_COMPLETE_NAVIGATION: {
+                String serverId = store.getSessionId(entry.getReference());
+                if (serverId == null) {
+                    // El inicio sigue en la cola: esperar. Si se descartó, esta sesión no existe en el servidor.
+                    if (store.hasPending(TYPE_START_NAVIGATION, entry.getReference())) {
+                        return Outcome.WAIT;
+                    }
+                    Log.w(TAG, "Sesión sin id del servidor, se descarta su cierre: " + entry.getReference());
+                    return Outcome.DROP;
+                }
+                CompleteNavigationRequest request = readPayload(entry, CompleteNavigationRequest.class);
+                if (request == null) {
+                    return Outcome.DROP;
+                }
+                request.setNavigationSessionId(serverId);
+                Response<ApiResponse<NavigationResponse>> response =
+                        apiService.completeNavigation(key, request).execute();
+                Outcome outcome = classify(entry.getType(), response.code());
+                if (outcome == Outcome.SENT) {
+                    store.removeSessionId(entry.getReference());
+                }
+                return outcome;
+            }
+            case TYPE_RATE_ROUTE: {
+                RateRouteRequest request = readPayload(entry, RateRouteRequest.class);
+                if (request == null) {
+                    return Outcome.DROP;
+                }
+                return classify(entry.getType(), apiService.rateRoute(key, entry.getReference(), request).execute().code());
+            }
+            case TYPE_SUBMIT_PROPOSAL: {
+                RouteProposalRequest request = readPayload(entry, RouteProposalRequest.class);
+                if (request == null) {
+                    return Outcome.DROP;
+                }
+                return classify(entry.getType(), apiService.submitRouteProposal(key, request).execute().code());
+            }
+            default:
+                Log.w(TAG, "Tipo desconocido en la cola: " + entry.getType());
+                return Outcome.DROP;
+        }
+    }
+
+    // Payload guardado en la cola, o null si no se puede leer (p. ej. de una versión anterior):
+    // es el único caso sin arreglo, reintentar daría siempre lo mismo
+    private <T> T readPayload(OutboxStore.Entry entry, Class<T> type) {
+        try {
+            return gson.fromJson(entry.getPayload(), type);
+        } catch (JsonParseException e) {
+            Log.e(TAG, "Escritura ilegible en la cola: " + entry.getType(), e);
+            return null;
+        }
+    }
+
+    // Id de la sesión en el servidor: del cuerpo de un 2xx o, en un 409 (inicio ya recibido
+    // con esta Idempotency-Key), del cuerpo de error con la sesión original
+    private String serverSessionId(Response<ApiResponse<NavigationResponse>> response) {
+        ApiResponse<NavigationResponse> body = response.body();
+        if (response.code() == 409) {
+            body = parseErrorBody(response.errorBody());
+        }
+        if (body == null || body.getData() == null) {
+            return null;
+        }
+        return body.getData().getId();
+    }
+
+    private ApiResponse<NavigationResponse> parseErrorBody(ResponseBody errorBody) {
+        if (errorBody == null) {
+            return null;
+        }
+        Type type = new TypeToken<ApiResponse<NavigationResponse>>() {}.getType();
+        try {
+            return gson.fromJson(errorBody.charStream(), type);
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Cuerpo de 409 ilegible", e);
+            return null;
+        } finally {
+            errorBody.close();
+        }
+    }
+
+    static Outcome classify(String type, int code) {
+        // 409: el servidor ya procesó esta Idempotency-Key
+        if ((code >= 200 && code < 300) || code == 409) {
+            Log.d(TAG, type + " enviado (" + code + ")");
+            return Outcome.SENT;
+        }
+        // 401: el token venció; al volver a iniciar sesión se puede enviar
+        if (code == 401 || code == 408 || code == 429 || code >= 500) {
+            Log.w(TAG, type + " falló con " + code + ", se reintentará");
+            return Outcome.RETRY;
+        }
+        Log.w(TAG, type + " rechazado por el servidor (" + code + "), se descarta");
+        return Outcome.DROP;
+    }
+
+    // Exponencial con jitter: entre la mitad y el total del retraso
+    static long backoffDelay(int attempts) {
+        long delay = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempts - 1, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.lugarescomunes.repository;
+
+import com.example.lugarescomunes.Place;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Diferencia entre el catálogo guardado y el recibido del servidor
+public class PlacesDiff {
+
+    private final List<Place> places;
+    private final List<Place> added;
+    private final List<Place> changed;
+    private final List<Place> removed;
+
+    private PlacesDiff(List<Place> places, List<Place> added, List<Place> changed, List<Place> removed) {
+        this.places = Collections.unmodifiableList(places);
+        this.added = Collections.unmodifiableList(added);
+        this.changed = Collections.unmodifiableList(changed);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    public static PlacesDiff between(List<Place> oldPlaces, List<Place> newPlaces) {
+        Map<String, Place> oldById = new HashMap<>();
+        for (Place place : oldPlaces) {
+            oldById.put(place.getId(), place);
+        }
+
+        List<Place> added = new ArrayList<>();
+        List<Place> changed = new ArrayList<>();
+        for (Place place : newPlaces) {
+            Place previous = oldById.remove(place.getId());
+            if (previous == null) {
+                added.add(place);
+            } else if (!sameContent(previous, place)) {
+                changed.add(place);
+            }
+        }
+
+        List<Place> removed = new ArrayList<>(oldById.values());
+        return new PlacesDiff(new ArrayList<>(newPlaces), added, changed, removed);
+    }
+
+    // Compara los campos que se muestran o persisten (el id ya coincide)
+    public static boolean sameContent(Place a, Place b) {
+        return Objects.equals(a.getName(), b.getName()) &&
+                Objects.equals(a.getCategory(), b.getCategory()) &&
+                Objects.equals(a.getDescription(), b.getDescription()) &&
+                Objects.equals(a.getWhat3words(), b.getWhat3words()) &&
+                a.getLatitude() == b.getLatitude() &&
+                a.getLongitude() == b.getLongitude() &&
+                a.isAvailable() == b.isAvailable() &&
+                a.getType() == b.getType() &&
+                a.getCapacity() == b.getCapacity() &&
+                Objects.equals(a.getSchedule(), b.getSchedule()) &&
+                Objects.equals(a.getImageUrl(), b.getImageUrl()) &&
+                Objects.equals(a.getUpdatedAt(), b.getUpdatedAt());
+    }
+
+    public List<Place> getPlaces() {
+        return places;
+    }
+
+    public List<Place> getAdded() {
+        return added;
+    }
+
+    public List<Place> getChanged() {
+        return changed;
+    }
+
+    public List<Place> getRemoved() {
+        return removed;
+    }
+
+    public boolean hasChanges() {
+        return !added.isEmpty() || !changed.isEmpty() || !removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PlacesDiff{" +
+                "total=" + places.size() +
+                ", added=" + added.size() +
+                ", changed=" + changed.size() +
+                ", removed=" + removed.size() +
+                '}';
+    }
+}
@@ -1,30 +1,69 @@
 package com.example.lugarescomunes.repository;
 
+import android.content.Context;
 import android.util.Log;
 import com.example.lugarescomunes.api.ApiConfig;
 import com.example.lugarescomunes.api.LugaresApiService;
+import com.example.lugarescomunes.api.PlaceStreamParser;
+import com.example.lugarescomunes.location.DistanceUpdater;
+import com.example.lugarescomunes.location.PlaceSpatialIndex;
 import com.example.lugarescomunes.Place;
 import com.example.lugarescomunes.PlaceType;
 import com.example.lugarescomunes.models.api.ApiResponse;
 import com.example.lugarescomunes.models.api.PlaceResponse;
+import com.example.lugarescomunes.search.PlaceSearchIndex;
+import com.example.lugarescomunes.repository.local.PlacesLocalDataSource;
+import com.google.gson.stream.MalformedJsonException;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class PlacesRepository {
 
     private static final String TAG = "PlacesRepository";
     private static PlacesRepository instance;
     private LugaresApiService apiService;
+    private PlacesLocalDataSource localDataSource;
 
-    // Cache
-    private List<Place> cachedPlaces = new ArrayList<>();
-    private long lastCacheUpdate = 0;
+    // Cache: una lista inmutable por clave que se reemplaza entera; leer no toma locks.
+    // Las escrituras (red, disco, limpiar) se serializan con synchronized (this).
     private static final long CACHE_DURATION = 5 * 60 * 1000; // 5 minutos
+    private static final String PLACES_KEY = "places";
+    private final TtlCache<String, List<Place>> placesCache = new TtlCache<>(CACHE_DURATION);
+    // Lugares que se entregan a la UI antes de terminar de leer la respuesta
+    private static final int FIRST_BATCH_SIZE = 20;
+
+    // Índice espacial sobre el cache: "cerca de mí" y distancias sin ir a la red
+    private volatile PlaceSpatialIndex spatialIndex = PlaceSpatialIndex.EMPTY;
+    private final DistanceUpdater distanceUpdater = new DistanceUpdater();
+
+    // Índice de búsqueda (términos + trigramas) sobre el cache
+    private volatile PlaceSearchIndex searchIndex = PlaceSearchIndex.EMPTY;
+    private volatile boolean hasUserLocation = false;
+    private volatile double userLatitude;
+    private volatile double userLongitude;
+
+    // Descargas de /routes/destinations concurrentes se agrupan en una sola llamada
+    private static final String DESTINATIONS_KEY = "routes/destinations";
+    private final SingleFlight<String, List<Place>> placesFlight =
+            new SingleFlight<>("destinos", ArrayList::new);
+
+    private final ExecutorService networkExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "places-network");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private PlacesRepository() {
         this.apiService = ApiConfig.getApiService();
@@ -38,61 +77,183 @@ public class PlacesRepository {
         return instance;
     }
 
+    // Con contexto se habilita el almacenamiento persistente en disco
+    public static synchronized PlacesRepository getInstance(Context context) {
+        PlacesRepository repository = getInstance();
+        if (repository.localDataSource == null && context != null) {
+            repository.localDataSource = PlacesLocalDataSource.getInstance(context);
+            Log.i(TAG, "Almacenamiento local de lugares habilitado");
+        }
+        return repository;
+    }
+
     // ✅ NUEVO: Obtener destinos disponibles desde /routes/destinations
     public CompletableFuture<List<Place>> getAllPlaces() {
-        CompletableFuture<List<Place>> future = new CompletableFuture<>();
+        return getAllPlaces(null);
+    }
 
+    // Si hay que ir a la red, firstPlacesListener recibe los primeros lugares antes de terminar
+    public CompletableFuture<List<Place>> getAllPlaces(PlaceStreamParser.Listener firstPlacesListener) {
         if (apiService == null) {
             Log.e(TAG, "API Service no disponible");
+            CompletableFuture<List<Place>> future = new CompletableFuture<>();
             future.completeExceptionally(new RuntimeException("API Service no disponible"));
             return future;
         }
 
         // Verificar cache válido
-        if (isCacheValid()) {
-            Log.d(TAG, "Retornando datos desde cache: " + cachedPlaces.size() + " lugares");
-            future.complete(new ArrayList<>(cachedPlaces));
-            return future;
+        List<Place> cached = placesCache.get(PLACES_KEY);
+        if (cached != null && !cached.isEmpty()) {
+            Log.d(TAG, "Retornando datos desde cache: " + cached.size() + " lugares");
+            return CompletableFuture.completedFuture(new ArrayList<>(cached));
         }
 
-        Log.i(TAG, "Cargando destinos desde /routes/destinations");
+        return fetchPlacesFromNetwork(firstPlacesListener);
+    }
 
-        Call<ApiResponse<List<PlaceResponse>>> call = apiService.getRouteDestinations();
-        call.enqueue(new Callback<ApiResponse<List<PlaceResponse>>>() {
-            @Override
-            public void onResponse(Call<ApiResponse<List<PlaceResponse>>> call, Response<ApiResponse<List<PlaceResponse>>> response) {
-                try {
-                    if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
-                        List<PlaceResponse> placeResponses = response.body().getData();
-                        List<Place> places = convertPlaceResponsesToPlaces(placeResponses);
+    // Stale-while-revalidate: lugares guardados (memoria o disco) sin esperar a la red.
+    // Puede completarse con una lista vacía si nunca se sincronizó.
+    public CompletableFuture<List<Place>> loadCachedPlaces() {
+        List<Place> cached = currentPlaces();
+        if (!cached.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>(cached));
+        }
 
-                        Log.i(TAG, "Destinos cargados exitosamente: " + places.size());
-                        updateCache(places);
-                        future.complete(places);
-                    } else {
-                        String errorMsg = "Error en respuesta: " + response.code();
-                        if (response.body() != null && response.body().getMessage() != null) {
-                            errorMsg += " - " + response.body().getMessage();
+        if (localDataSource == null) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        return localDataSource.loadPlaces()
+                .thenCombine(localDataSource.getLastSyncTime(), (places, lastSync) -> {
+                    synchronized (this) {
+                        // La red pudo haber llenado el cache mientras leíamos el disco
+                        if (currentPlaces().isEmpty() && !places.isEmpty()) {
+                            applyDistances(places);
+                            placesCache.put(PLACES_KEY, snapshotOf(places), CACHE_DURATION, lastSync);
+                            spatialIndex = PlaceSpatialIndex.build(places);
+                            searchIndex = PlaceSearchIndex.build(places, searchIndex);
                         }
-                        Log.w(TAG, errorMsg);
-                        future.completeExceptionally(new RuntimeException(errorMsg));
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error procesando respuesta de destinos", e);
-                    future.completeExceptionally(e);
-                }
-            }
+                    Log.d(TAG, "Lugares restaurados desde disco: " + places.size());
+                    return places;
+                })
+                .exceptionally(throwable -> {
+                    Log.w(TAG, "No se pudo leer el cache en disco", throwable);
+                    return new ArrayList<>();
+                });
+    }
 
-            @Override
-            public void onFailure(Call<ApiResponse<List<PlaceResponse>>> call, Throwable t) {
-                Log.e(TAG, "Error en llamada a /routes/destinations", t);
-                future.completeExceptionally(new RuntimeException("Error de conexión", t));
+    // Revalidar contra el servidor ignorando el TTL y devolver qué cambió
+    public CompletableFuture<PlacesDiff> refreshPlaces() {
+        return refreshPlaces(null);
+    }
+
+    // Igual que refreshPlaces(), entregando los primeros lugares mientras se lee el resto
+    public CompletableFuture<PlacesDiff> refreshPlaces(PlaceStreamParser.Listener firstPlacesListener) {
+        List<Place> previous = currentPlaces();
+
+        if (apiService == null) {
+            CompletableFuture<PlacesDiff> future = new CompletableFuture<>();
+            future.completeExceptionally(new RuntimeException("API Service no disponible"));
+            return future;
+        }
+
+        return fetchPlacesFromNetwork(firstPlacesListener)
+                .thenApply(places -> {
+                    PlacesDiff diff = PlacesDiff.between(previous, places);
+                    Log.i(TAG, "Revalidación de destinos: " + diff);
+                    return diff;
+                });
+    }
+
+    // Una sola descarga a la vez: quien llega mientras otra está en curso recibe su resultado
+    // (sin los primeros lugares anticipados, que solo recibe quien la inició)
+    private CompletableFuture<List<Place>> fetchPlacesFromNetwork(PlaceStreamParser.Listener firstPlacesListener) {
+        return placesFlight.run(DESTINATIONS_KEY, () -> startPlacesDownload(firstPlacesListener));
+    }
+
+    public void logFetchStats() {
+        Log.i(TAG, "Descargas de destinos: " + placesFlight);
+    }
+
+    private CompletableFuture<List<Place>> startPlacesDownload(PlaceStreamParser.Listener firstPlacesListener) {
+        CompletableFuture<List<Place>> future = new CompletableFuture<>();
+
+        Log.i(TAG, "Cargando destinos desde /routes/destinations");
+
+        Call<ResponseBody> call = apiService.streamRouteDestinations();
+
+        // Sin copia local un 304 no serviría de nada: pedir el cuerpo completo
+        if (currentPlaces().isEmpty()) {
+            ApiConfig.getConditionalRequests().forget(call.request().url());
+        }
+
+        // El cuerpo se decodifica mientras llega, así que la llamada corre fuera del hilo principal
+        networkExecutor.execute(() -> {
+            try {
+                List<Place> places = executeStreamingCall(call, firstPlacesListener, true);
+                future.complete(places);
+            } catch (IOException e) {
+                Log.e(TAG, "Error en llamada a /routes/destinations", e);
+                future.completeExceptionally(new RuntimeException("Error de conexión", e));
+            } catch (Exception e) {
+                Log.e(TAG, "Error procesando respuesta de destinos", e);
+                future.completeExceptionally(e);
             }
         });
 
         return future;
     }
 
+    private List<Place> executeStreamingCall(Call<ResponseBody> call, PlaceStreamParser.Listener firstPlacesListener,
+                                             boolean allowRetry) throws IOException {
+        Response<ResponseBody> response = call.execute();
+
+        if (response.code() == 304) {
+            if (currentPlaces().isEmpty() && allowRetry) {
+                // El cache se limpió mientras tanto: repetir sin validadores
+                ApiConfig.getConditionalRequests().forget(call.request().url());
+                return executeStreamingCall(call.clone(), firstPlacesListener, false);
+            }
+            touchCache();
+            Log.i(TAG, "Destinos sin cambios (304), cache renovado");
+            return new ArrayList<>(currentPlaces());
+        }
+
+        if (!response.isSuccessful() || response.body() == null) {
+            if (response.errorBody() != null) {
+                response.errorBody().close();
+            }
+            String errorMsg = "Error en respuesta: " + response.code();
+            Log.w(TAG, errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+
+        PlaceStreamParser.Result result;
+        try (ResponseBody body = response.body()) {
+            result = PlaceStreamParser.parse(body.charStream(), FIRST_BATCH_SIZE, firstPlacesListener);
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            // El cuerpo llegó pero no es el JSON esperado (p. ej. HTML de un portal cautivo): no es
+            // un problema de conexión. Un corte a mitad del cuerpo OkHttp lo reporta como IOException.
+            Log.w(TAG, "Respuesta de destinos con formato inválido", e);
+            throw new RuntimeException("Respuesta inválida del servidor", e);
+        }
+
+        if (!result.isSuccess()) {
+            String errorMsg = "Error en respuesta: " + response.code();
+            if (result.getMessage() != null) {
+                errorMsg += " - " + result.getMessage();
+            }
+            Log.w(TAG, errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+
+        List<Place> places = result.getPlaces();
+        Log.i(TAG, "Destinos cargados exitosamente: " + places.size());
+        updateCache(places);
+        return places;
+    }
+
     // Buscar lugares por texto
     public CompletableFuture<List<Place>> searchPlaces(String query) {
         CompletableFuture<List<Place>> future = new CompletableFuture<>();
@@ -101,8 +262,9 @@ public class PlacesRepository {
             return getAllPlaces();
         }
 
-        // Búsqueda local primero si tenemos cache
-        if (isCacheValid()) {
+        // Búsqueda local primero si tenemos cache; un índice vencido sigue sirviendo mientras
+        // la pantalla revalida, así escribir no dispara descargas
+        if (isCacheValid() || !searchIndex.isEmpty()) {
             List<Place> filtered = searchPlacesLocally(query);
             future.complete(filtered);
             return future;
@@ -166,63 +328,143 @@ public class PlacesRepository {
 
     // Cache management
     private boolean isCacheValid() {
-        boolean valid = !cachedPlaces.isEmpty() &&
-                (System.currentTimeMillis() - lastCacheUpdate) < CACHE_DURATION;
-        Log.d(TAG, "Cache válido: " + valid + " (tamaño: " + cachedPlaces.size() + ")");
+        List<Place> cached = placesCache.get(PLACES_KEY);
+        boolean valid = cached != null && !cached.isEmpty();
+        Log.d(TAG, "Cache válido: " + valid + " (tamaño: " + (cached != null ? cached.size() : 0) + ")");
         return valid;
     }
 
-    private void updateCache(List<Place> places) {
-        cachedPlaces.clear();
-        cachedPlaces.addAll(places);
-        lastCacheUpdate = System.currentTimeMillis();
-        Log.d(TAG, "Cache actualizado con " + places.size() + " lugares");
+    // Último snapshot publicado, vencido o no; nunca null
+    private List<Place> currentPlaces() {
+        List<Place> cached = placesCache.getStale(PLACES_KEY);
+        return cached != null ? cached : Collections.emptyList();
     }
 
-    // Búsqueda local
-    private List<Place> searchPlacesLocally(String query) {
-        return searchPlacesLocally(query, cachedPlaces);
+    private static List<Place> snapshotOf(List<Place> places) {
+        return Collections.unmodifiableList(new ArrayList<>(places));
     }
 
-    private List<Place> searchPlacesLocally(String query, List<Place> places) {
-        if (query == null || query.trim().isEmpty()) {
-            return new ArrayList<>(places);
+    // 304: los datos guardados siguen vigentes, se renueva el TTL
+    private void touchCache() {
+        placesCache.touch(PLACES_KEY);
+    }
+
+    private void updateCache(List<Place> places) {
+        synchronized (this) {
+            // Conservar favoritos marcados localmente
+            preserveLocalState(places);
+            applyDistances(places);
+            placesCache.put(PLACES_KEY, snapshotOf(places));
+            spatialIndex = PlaceSpatialIndex.build(places);
+            // Solo se vuelven a normalizar los lugares nuevos o modificados
+            searchIndex = PlaceSearchIndex.build(places, searchIndex);
         }
+        Log.d(TAG, "Cache actualizado con " + places.size() + " lugares");
 
-        List<Place> filtered = new ArrayList<>();
-        String queryLower = query.toLowerCase();
+        if (localDataSource != null) {
+            localDataSource.savePlaces(places)
+                    .exceptionally(throwable -> {
+                        Log.w(TAG, "No se pudo guardar el cache en disco", throwable);
+                        return null;
+                    });
+        }
+    }
 
+    private void preserveLocalState(List<Place> places) {
+        HashSet<String> favoriteIds = new HashSet<>();
+        for (Place place : currentPlaces()) {
+            if (place.isFavorite()) {
+                favoriteIds.add(place.getId());
+            }
+        }
+        if (favoriteIds.isEmpty()) {
+            return;
+        }
         for (Place place : places) {
-            if (place.getName().toLowerCase().contains(queryLower) ||
-                    place.getCategory().toLowerCase().contains(queryLower) ||
-                    (place.getDescription() != null && place.getDescription().toLowerCase().contains(queryLower)) ||
-                    (place.getWhat3words() != null && place.getWhat3words().toLowerCase().contains(queryLower))) {
-                filtered.add(place);
+            if (favoriteIds.contains(place.getId())) {
+                place.setFavorite(true);
             }
         }
+    }
+
+    // ===== CONSULTAS ESPACIALES (LOCALES) =====
 
-        Log.d(TAG, "Búsqueda local para '" + query + "' encontró " + filtered.size() + " lugares");
-        return filtered;
+    // Equivalente local de /places/nearby: responde desde el cache (memoria o disco), sin red
+    public CompletableFuture<List<Place>> getNearbyPlaces(double latitude, double longitude, double radiusKm) {
+        if (!spatialIndex.isEmpty()) {
+            return CompletableFuture.completedFuture(findNearbyPlaces(latitude, longitude, radiusKm * 1000));
+        }
+        return loadCachedPlaces()
+                .thenApply(places -> findNearbyPlaces(latitude, longitude, radiusKm * 1000));
     }
 
-    // Conversión de PlaceResponse a Place
-    private List<Place> convertPlaceResponsesToPlaces(List<PlaceResponse> placeResponses) {
-        List<Place> places = new ArrayList<>();
+    // Lugares a menos de radiusMeters, del más cercano al más lejano, con la distancia ya asignada
+    public List<Place> findNearbyPlaces(double latitude, double longitude, double radiusMeters) {
+        return toPlaces(spatialIndex.withinRadius(latitude, longitude, radiusMeters));
+    }
 
-        if (placeResponses == null) {
-            return places;
+    // Los k lugares más cercanos, con la distancia ya asignada
+    public List<Place> findNearestPlaces(double latitude, double longitude, int count) {
+        return toPlaces(spatialIndex.nearest(latitude, longitude, count));
+    }
+
+    // Copias: la distancia es respecto al punto consultado, no a la ubicación del usuario,
+    // y no debe pisar la que muestra la lista sobre los lugares del cache
+    private List<Place> toPlaces(List<PlaceSpatialIndex.Match> matches) {
+        List<Place> places = new ArrayList<>(matches.size());
+        for (PlaceSpatialIndex.Match match : matches) {
+            Place place = new Place(match.getPlace());
+            place.setDistanceInMeters(DistanceUpdater.bucketOf(match.getDistanceMeters()));
+            places.add(place);
         }
+        return places;
+    }
 
-        for (PlaceResponse response : placeResponses) {
-            Place place = convertPlaceResponseToPlace(response);
-            if (place != null) {
-                places.add(place);
-            }
+    // Recalcula distanceInMeters para la nueva ubicación, solo en los lugares cuyo tramo pudo
+    // cambiar. Devuelve los ids que cambiaron; los lugares que lleguen después ya vienen calculados.
+    public Set<String> updateDistances(double latitude, double longitude) {
+        userLatitude = latitude;
+        userLongitude = longitude;
+        hasUserLocation = true;
+        synchronized (this) {
+            return distanceUpdater.update(currentPlaces(), latitude, longitude);
         }
+    }
 
-        return places;
+    public boolean hasUserLocation() {
+        return hasUserLocation;
+    }
+
+    // Lista nueva (red o disco): las coordenadas pudieron cambiar, se calcula todo de nuevo
+    private void applyDistances(List<Place> places) {
+        distanceUpdater.reset();
+        if (hasUserLocation) {
+            distanceUpdater.update(places, userLatitude, userLongitude);
+        }
+    }
+
+    // Búsqueda local con el índice: ordenada por relevancia y tolerante a tildes y errores de tipeo
+    private List<Place> searchPlacesLocally(String query) {
+        List<Place> results = searchIndex.search(query);
+        Log.d(TAG, "Búsqueda local para '" + query + "' encontró " + results.size() + " lugares");
+        return results;
     }
 
+    private List<Place> searchPlacesLocally(String query, List<Place> places) {
+        if (query == null || query.trim().isEmpty()) {
+            return new ArrayList<>(places);
+        }
+        // Normalmente places es el cache recién actualizado y el índice ya lo cubre
+        PlaceSearchIndex index = searchIndex;
+        if (index.size() != places.size()) {
+            index = PlaceSearchIndex.build(places, index);
+        }
+        List<Place> results = index.search(query);
+        Log.d(TAG, "Búsqueda local para '" + query + "' encontró " + results.size() + " lugares");
+        return results;
+    }
+
+    // Conversión de PlaceResponse a Place (la lista completa se decodifica con PlaceStreamParser)
     private Place convertPlaceResponseToPlace(PlaceResponse response) {
         if (response == null) {
             return null;
@@ -242,6 +484,15 @@ public class PlacesRepository {
         place.setWhat3words(response.getWhat3words());
         place.setCapacity(response.getCapacity() != null ? response.getCapacity() : 0);
         place.setSchedule(response.getSchedule());
+        place.setImageUrl(response.getImageUrl());
+        place.setBuildingName(response.getBuildingName());
+        place.setFloorNumber(response.getFloorNumber());
+        place.setRoomCode(response.getRoomCode());
+        place.setEquipment(response.getEquipment() != null ? new ArrayList<>(response.getEquipment()) : null);
+        place.setAccessibilityFeatures(response.getAccessibilityFeatures() != null ?
+                new ArrayList<>(response.getAccessibilityFeatures()) : null);
+        place.setCreatedAt(response.getCreatedAt());
+        place.setUpdatedAt(response.getUpdatedAt());
 
         // Convertir tipo de lugar
         if (response.getPlaceType() != null) {
@@ -264,8 +515,14 @@ public class PlacesRepository {
 
     // Limpiar cache (útil para refrescar datos)
     public void clearCache() {
-        cachedPlaces.clear();
-        lastCacheUpdate = 0;
+        synchronized (this) {
+            placesCache.clear();
+            spatialIndex = PlaceSpatialIndex.EMPTY;
+            searchIndex = PlaceSearchIndex.EMPTY;
+        }
+        if (localDataSource != null) {
+            localDataSource.clear();
+        }
         Log.i(TAG, "Cache limpiado");
     }
 
@@ -1,17 +1,30 @@
 package com.example.lugarescomunes.repository;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.util.Log;
 import com.example.lugarescomunes.api.ApiConfig;
 import com.example.lugarescomunes.api.LugaresApiService;
+import com.example.lugarescomunes.models.CompactPolyline;
 import com.example.lugarescomunes.models.api.ApiResponse;
 import com.example.lugarescomunes.models.api.RouteResponse;
 import com.example.lugarescomunes.models.api.RouteDetailsResponse;
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+import com.example.lugarescomunes.models.api.PlaceResponse;
+import com.example.lugarescomunes.models.api.RateRouteRequest;
+import com.example.lugarescomunes.models.api.RouteProposalRequest;
+import com.example.lugarescomunes.models.api.UserResponse;
+import com.example.lugarescomunes.repository.local.OfflineRoutePackage;
+import com.example.lugarescomunes.repository.local.OfflineRoutesStore;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public class RoutesRepository {
@@ -19,11 +32,23 @@ public class RoutesRepository {
     private static final String TAG = "RoutesRepository";
     private static RoutesRepository instance;
     private LugaresApiService apiService;
+    // Paquetes offline por destino (rutas + puntos). LugaresApplication los habilita al arrancar
+    // con getInstance(Context); sin Context quedan en null
+    private OfflineRoutesStore offlineStore;
+    // Calificaciones y propuestas se envían por la cola persistente; mismo ciclo que offlineStore
+    private OutboxRepository outbox;
 
     // Cache para rutas por destino
     private static final long CACHE_DURATION = 2 * 60 * 1000; // 2 minutos
-    private final java.util.Map<String, List<RouteResponse>> routesCache = new java.util.HashMap<>();
-    private final java.util.Map<String, Long> cacheTimestamps = new java.util.HashMap<>();
+    // Listas inmutables con vencimiento por destino; se leen sin locks desde cualquier hilo.
+    // Acotado por bytes estimados: recorrer muchos destinos no hace crecer el heap sin límite.
+    private static final long MAX_CACHE_BYTES = 512 * 1024;
+    private final TtlCache<String, List<RouteResponse>> routesCache =
+            new TtlCache<>(CACHE_DURATION, MAX_CACHE_BYTES, (destinationId, routes) -> estimateBytes(routes));
+
+    // Pedidos concurrentes de rutas al mismo destino comparten una sola llamada
+    private final SingleFlight<String, List<RouteResponse>> routesFlight =
+            new SingleFlight<>("rutas", ArrayList::new);
 
     private RoutesRepository() {
         this.apiService = ApiConfig.getApiService();
@@ -37,6 +62,19 @@ public class RoutesRepository {
         return instance;
     }
 
+    // Con contexto se habilitan los paquetes offline en disco
+    public static synchronized RoutesRepository getInstance(Context context) {
+        RoutesRepository repository = getInstance();
+        if (repository.offlineStore == null && context != null) {
+            repository.offlineStore = OfflineRoutesStore.getInstance(context);
+            Log.i(TAG, "Paquetes offline de rutas habilitados");
+        }
+        if (repository.outbox == null && context != null) {
+            repository.outbox = OutboxRepository.getInstance(context);
+        }
+        return repository;
+    }
+
     // Obtener rutas hacia un destino específico
     public CompletableFuture<List<RouteResponse>> getRoutesToDestination(String destinationId) {
         CompletableFuture<List<RouteResponse>> future = new CompletableFuture<>();
@@ -48,21 +86,88 @@ public class RoutesRepository {
         }
 
         // Verificar cache
-        if (isRouteCacheValid(destinationId)) {
-            List<RouteResponse> cachedRoutes = routesCache.get(destinationId);
+        List<RouteResponse> cachedRoutes = routesCache.get(destinationId);
+        if (cachedRoutes != null) {
             Log.d(TAG, "Retornando rutas desde cache para destino: " + destinationId + " (cantidad: " + cachedRoutes.size() + ")");
             future.complete(new ArrayList<>(cachedRoutes));
             return future;
         }
 
+        return withOfflineFallback(destinationId,
+                routesFlight.run(destinationId, () -> fetchRoutesFromNetwork(destinationId)));
+    }
+
+    // Sin señal (sótanos, aulas interiores) se responde con el paquete offline si existe
+    private CompletableFuture<List<RouteResponse>> withOfflineFallback(String destinationId,
+                                                                      CompletableFuture<List<RouteResponse>> network) {
+        if (offlineStore == null) {
+            return network;
+        }
+        CompletableFuture<List<RouteResponse>> future = new CompletableFuture<>();
+        network.whenComplete((routes, throwable) -> {
+            if (throwable == null) {
+                future.complete(routes);
+                return;
+            }
+            offlineStore.load(destinationId).whenComplete((routePackage, error) -> {
+                if (routePackage != null && !routePackage.getRoutes().isEmpty()) {
+                    Log.i(TAG, "Sin conexión: rutas desde paquete offline para destino " + destinationId);
+                    future.complete(new ArrayList<>(routePackage.getRoutes()));
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        });
+        return future;
+    }
+
+    // Rutas guardadas para abrir la pantalla al instante; lista vacía si no hay paquete
+    public CompletableFuture<List<RouteResponse>> loadOfflineRoutes(String destinationId) {
+        if (offlineStore == null || destinationId == null) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        return offlineStore.load(destinationId)
+                .thenApply(routePackage -> {
+                    List<RouteResponse> routes = new ArrayList<>();
+                    if (routePackage != null) {
+                        routes.addAll(routePackage.getRoutes());
+                    }
+                    return routes;
+                })
+                .exceptionally(throwable -> {
+                    Log.w(TAG, "No se pudo leer el paquete offline de " + destinationId, throwable);
+                    return new ArrayList<>();
+                });
+    }
+
+    private CompletableFuture<List<RouteResponse>> fetchRoutesFromNetwork(String destinationId) {
+        CompletableFuture<List<RouteResponse>> future = new CompletableFuture<>();
+
         Log.i(TAG, "Cargando rutas desde API para destino: " + destinationId);
 
         Call<ApiResponse<List<RouteResponse>>> call = apiService.getRoutesToPlace(destinationId);
+
+        // Sin copia local un 304 no serviría de nada: pedir el cuerpo completo
+        if (!routesCache.containsKey(destinationId)) {
+            ApiConfig.getConditionalRequests().forget(call.request().url());
+        }
+
         call.enqueue(new Callback<ApiResponse<List<RouteResponse>>>() {
             @Override
             public void onResponse(Call<ApiResponse<List<RouteResponse>>> call, Response<ApiResponse<List<RouteResponse>>> response) {
                 try {
-                    if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
+                    List<RouteResponse> cachedRoutes = routesCache.getStale(destinationId);
+                    if (response.code() == 304) {
+                        if (cachedRoutes == null) {
+                            // El cache se limpió mientras tanto: repetir sin validadores
+                            ApiConfig.getConditionalRequests().forget(call.request().url());
+                            call.clone().enqueue(this);
+                            return;
+                        }
+                        routesCache.touch(destinationId);
+                        Log.i(TAG, "Rutas sin cambios (304) para destino " + destinationId + ", cache renovado");
+                        future.complete(new ArrayList<>(cachedRoutes));
+                    } else if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
                         List<RouteResponse> routes = response.body().getData();
 
                         if (routes == null) {
@@ -101,6 +206,43 @@ public class RoutesRepository {
 
     // Obtener detalles de una ruta específica
     public CompletableFuture<RouteResponse> getRouteDetails(String routeId) {
+        return getRouteDetails(routeId, null);
+    }
+
+    // Detalles de la API; sin conexión, la ruta guardada en el paquete offline de su destino
+    public CompletableFuture<RouteResponse> getRouteDetails(String routeId, String destinationId) {
+        CompletableFuture<RouteResponse> network = fetchRouteDetails(routeId);
+        if (offlineStore == null || routeId == null) {
+            return network;
+        }
+        CompletableFuture<RouteResponse> future = new CompletableFuture<>();
+        network.whenComplete((details, throwable) -> {
+            if (throwable == null) {
+                future.complete(details);
+                return;
+            }
+            offlineStore.loadForRoute(routeId, destinationId).whenComplete((routePackage, error) -> {
+                RouteResponse offlineRoute = null;
+                if (routePackage != null) {
+                    for (RouteResponse route : routePackage.getRoutes()) {
+                        if (routeId.equals(route.getId())) {
+                            offlineRoute = route;
+                            break;
+                        }
+                    }
+                }
+                if (offlineRoute != null) {
+                    Log.i(TAG, "Sin conexión: detalles de ruta " + routeId + " desde paquete offline");
+                    future.complete(offlineRoute);
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        });
+        return future;
+    }
+
+    private CompletableFuture<RouteResponse> fetchRouteDetails(String routeId) {
         CompletableFuture<RouteResponse> future = new CompletableFuture<>();
 
         if (apiService == null || routeId == null || routeId.trim().isEmpty()) {
@@ -142,6 +284,116 @@ public class RoutesRepository {
         return future;
     }
 
+    // Puntos de una ruta: primero del paquete offline (no depende de la señal), si no de la API
+    public CompletableFuture<List<RoutePointResponse>> getRoutePoints(String routeId) {
+        return getRoutePoints(routeId, null);
+    }
+
+    // Con el destino se puede reabrir desde disco un paquete que se soltó por presión de memoria
+    public CompletableFuture<List<RoutePointResponse>> getRoutePoints(String routeId, String destinationId) {
+        return offlinePolyline(routeId, destinationId).thenCompose(offlinePolyline -> {
+            if (offlinePolyline != null) {
+                Log.d(TAG, "Puntos de ruta " + routeId + " desde paquete offline: " + offlinePolyline.size());
+                return CompletableFuture.completedFuture(offlinePolyline.toRoutePoints());
+            }
+            return fetchRoutePoints(routeId);
+        });
+    }
+
+    // Recorrido de una ruta en su forma compacta, listo para dibujar o seguir en navegación
+    public CompletableFuture<CompactPolyline> getRoutePolyline(String routeId) {
+        return getRoutePolyline(routeId, null);
+    }
+
+    public CompletableFuture<CompactPolyline> getRoutePolyline(String routeId, String destinationId) {
+        return offlinePolyline(routeId, destinationId).thenCompose(offlinePolyline -> offlinePolyline != null
+                ? CompletableFuture.completedFuture(offlinePolyline)
+                : fetchRoutePoints(routeId).thenApply(CompactPolyline::fromPoints));
+    }
+
+    // Recorrido guardado offline, o null si no hay paquete con esa ruta (un error de disco no
+    // impide intentar con la API)
+    private CompletableFuture<CompactPolyline> offlinePolyline(String routeId, String destinationId) {
+        if (offlineStore == null || routeId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return offlineStore.loadForRoute(routeId, destinationId).handle((routePackage, error) -> {
+            CompactPolyline polyline = routePackage != null ? routePackage.getPolyline(routeId) : null;
+            return polyline != null && !polyline.isEmpty() ? polyline : null;
+        });
+    }
+
+    private CompletableFuture<List<RoutePointResponse>> fetchRoutePoints(String routeId) {
+        CompletableFuture<List<RoutePointResponse>> future = new CompletableFuture<>();
+
+        if (apiService == null || routeId == null || routeId.trim().isEmpty()) {
+            future.completeExceptionally(new RuntimeException("Parámetros inválidos"));
+            return future;
+        }
+
+        Call<ApiResponse<List<RoutePointResponse>>> call = apiService.getRoutePoints(routeId);
+        call.enqueue(new Callback<ApiResponse<List<RoutePointResponse>>>() {
+            @Override
+            public void onResponse(Call<ApiResponse<List<RoutePointResponse>>> call,
+                                   Response<ApiResponse<List<RoutePointResponse>>> response) {
+                if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
+                    List<RoutePointResponse> points = response.body().getData();
+                    future.complete(points != null ? points : new ArrayList<>());
+                } else {
+                    String errorMsg = "Error obteniendo puntos de ruta: " + response.code();
+                    Log.w(TAG, errorMsg);
+                    future.completeExceptionally(new RuntimeException(errorMsg));
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ApiResponse<List<RoutePointResponse>>> call, Throwable t) {
+                Log.e(TAG, "Error en llamada para obtener puntos de ruta: " + routeId, t);
+                future.completeExceptionally(new RuntimeException("Error de conexión obteniendo puntos", t));
+            }
+        });
+
+        return future;
+    }
+
+    // Descarga rutas y puntos de un destino y los guarda como paquete offline.
+    // Siempre desde la red: no tiene sentido regenerar el paquete a partir de sí mismo.
+    public CompletableFuture<Integer> downloadOfflinePackage(String destinationId) {
+        if (offlineStore == null) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Paquetes offline no habilitados"));
+            return future;
+        }
+
+        return routesFlight.run(destinationId, () -> fetchRoutesFromNetwork(destinationId))
+                .thenCompose(routes -> {
+                    Map<String, List<RoutePointResponse>> pointsByRoute = new HashMap<>();
+                    List<CompletableFuture<Void>> downloads = new ArrayList<>();
+                    for (RouteResponse route : routes) {
+                        if (route.getId() == null) {
+                            continue;
+                        }
+                        downloads.add(fetchRoutePoints(route.getId())
+                                .thenAccept(points -> {
+                                    synchronized (pointsByRoute) {
+                                        pointsByRoute.put(route.getId(), points);
+                                    }
+                                }));
+                    }
+                    // Si falla una sola ruta, el paquete no queda a medias: se reintenta todo
+                    return CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0]))
+                            .thenCompose(done -> {
+                                PlaceResponse destination = routes.isEmpty() ? null : routes.get(0).getToPlace();
+                                return offlineStore.save(destinationId, destination, routes, pointsByRoute);
+                            })
+                            .thenApply(saved -> routes.size());
+                });
+    }
+
+    public boolean hasOfflinePackage(String destinationId) {
+        return offlineStore != null && destinationId != null && offlineStore.exists(destinationId);
+    }
+
     // Buscar ruta más cercana al usuario
     public CompletableFuture<RouteResponse> getNearestRoute(double latitude, double longitude, String destinationId) {
         CompletableFuture<RouteResponse> future = new CompletableFuture<>();
@@ -184,38 +436,143 @@ public class RoutesRepository {
     }
 
     // Cache management
-    private boolean isRouteCacheValid(String destinationId) {
-        if (!routesCache.containsKey(destinationId) || !cacheTimestamps.containsKey(destinationId)) {
-            return false;
+    private void updateRouteCache(String destinationId, List<RouteResponse> routes) {
+        routesCache.put(destinationId, Collections.unmodifiableList(new ArrayList<>(routes)));
+        Log.d(TAG, "Cache de rutas actualizado para destino " + destinationId + " con " + routes.size() + " rutas");
+    }
+
+    public void logFetchStats() {
+        Log.i(TAG, "Descargas de rutas: " + routesFlight);
+        Log.i(TAG, "Cache de rutas: " + routesCache);
+    }
+
+    // Aciertos, fallos, desalojos y bytes en uso del cache de rutas
+    public String getCacheStats() {
+        return routesCache.toString();
+    }
+
+    // Presión de memoria (ComponentCallbacks2): con la UI oculta se conserva la mitad más
+    // usada; si el sistema ya está matando procesos en segundo plano se vacía todo
+    public void onTrimMemory(int level) {
+        long before = routesCache.getWeight();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            routesCache.trimToWeight(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            routesCache.trimToFraction(0.5);
+        } else {
+            return;
         }
+        Log.i(TAG, "onTrimMemory(" + level + "): cache de rutas " + before + " -> " +
+                routesCache.getWeight() + " bytes");
+    }
 
-        long cacheAge = System.currentTimeMillis() - cacheTimestamps.get(destinationId);
-        boolean valid = cacheAge < CACHE_DURATION;
+    // Estimación del heap que ocupa una lista de rutas (cabeceras de objeto + campos + texto)
+    static long estimateBytes(List<RouteResponse> routes) {
+        long bytes = 16 + 4L * routes.size();
+        for (RouteResponse route : routes) {
+            bytes += 16 + 21 * 4;
+            bytes += stringBytes(route.getId()) + stringBytes(route.getName()) +
+                    stringBytes(route.getDescription()) + stringBytes(route.getFromDescription()) +
+                    stringBytes(route.getDifficulty()) + stringBytes(route.getCreatedAt()) +
+                    stringBytes(route.getUpdatedAt()) + stringBytes(route.getRatingText()) +
+                    stringBytes(route.getDifficultyText()) + stringBytes(route.getFormattedDistance()) +
+                    stringBytes(route.getFormattedTime());
+            // Double/Integer/Boolean en caja
+            bytes += 11 * 16;
+            bytes += estimateBytes(route.getToPlace());
+            bytes += estimateBytes(route.getCreatedBy());
+        }
+        return bytes;
+    }
 
-        Log.d(TAG, "Cache de rutas para " + destinationId + " es válido: " + valid + " (edad: " + cacheAge + "ms)");
-        return valid;
+    private static long estimateBytes(PlaceResponse place) {
+        if (place == null) {
+            return 0;
+        }
+        long bytes = 16 + 21 * 4 + 10 * 16;
+        bytes += stringBytes(place.getId()) + stringBytes(place.getName()) +
+                stringBytes(place.getCategory()) + stringBytes(place.getDescription()) +
+                stringBytes(place.getWhat3words()) + stringBytes(place.getPlaceType()) +
+                stringBytes(place.getSchedule()) + stringBytes(place.getImageUrl()) +
+                stringBytes(place.getBuildingName()) + stringBytes(place.getRoomCode()) +
+                stringBytes(place.getCreatedAt()) + stringBytes(place.getUpdatedAt());
+        bytes += setBytes(place.getEquipment()) + setBytes(place.getAccessibilityFeatures());
+        return bytes;
     }
 
-    private void updateRouteCache(String destinationId, List<RouteResponse> routes) {
-        routesCache.put(destinationId, new ArrayList<>(routes));
-        cacheTimestamps.put(destinationId, System.currentTimeMillis());
-        Log.d(TAG, "Cache de rutas actualizado para destino " + destinationId + " con " + routes.size() + " rutas");
+    private static long estimateBytes(UserResponse user) {
+        if (user == null) {
+            return 0;
+        }
+        return 16 + 7 * 4 +
+                stringBytes(user.getId()) + stringBytes(user.getEmail()) + stringBytes(user.getFullName()) +
+                stringBytes(user.getStudentId()) + stringBytes(user.getUserType()) + stringBytes(user.getCreatedAt());
+    }
+
+    private static long setBytes(java.util.Set<String> values) {
+        if (values == null) {
+            return 0;
+        }
+        long bytes = 48 + 32L * values.size();
+        for (String value : values) {
+            bytes += stringBytes(value);
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
     }
 
     // Limpiar cache específico
     public void clearRouteCache(String destinationId) {
         routesCache.remove(destinationId);
-        cacheTimestamps.remove(destinationId);
         Log.i(TAG, "Cache de rutas limpiado para destino: " + destinationId);
     }
 
     // Limpiar todo el cache
     public void clearAllCache() {
         routesCache.clear();
-        cacheTimestamps.clear();
         Log.i(TAG, "Todo el cache de rutas limpiado");
     }
 
+    // Calificar una ruta (1-5). Si ya había una calificación pendiente para la ruta,
+    // solo se envía la última.
+    public CompletableFuture<Void> rateRoute(String routeId, int rating, String comment) {
+        if (outbox == null) {
+            return outboxMissing();
+        }
+        if (routeId == null || routeId.trim().isEmpty() || rating < 1 || rating > 5) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new RuntimeException("Parámetros inválidos"));
+            return future;
+        }
+        return outbox.enqueue(OutboxRepository.TYPE_RATE_ROUTE, routeId,
+                new RateRouteRequest(rating, comment), "rating:" + routeId);
+    }
+
+    public CompletableFuture<Void> submitRouteProposal(RouteProposalRequest request) {
+        if (outbox == null) {
+            return outboxMissing();
+        }
+        if (request == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new RuntimeException("Parámetros inválidos"));
+            return future;
+        }
+        return outbox.enqueue(OutboxRepository.TYPE_SUBMIT_PROPOSAL, request.getDestinationPlaceId(), request, null);
+    }
+
+    // Error de configuración, no del usuario: el repositorio se creó sin getInstance(Context)
+    private CompletableFuture<Void> outboxMissing() {
+        Log.e(TAG, "Cola de envíos no inicializada: falta RoutesRepository.getInstance(Context)");
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("Cola de envíos no inicializada"));
+        return future;
+    }
+
     // Health check
     public CompletableFuture<Boolean> checkRoutesApiHealth() {
         CompletableFuture<Boolean> future = new CompletableFuture<>();
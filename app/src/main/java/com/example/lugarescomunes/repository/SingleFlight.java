@@ -0,0 +1,123 @@
+package com.example.lugarescomunes.repository;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Agrupa pedidos idénticos concurrentes: mientras una carga para una clave está en curso,
+// los demás llamadores esperan ese mismo resultado en vez de abrir otra llamada.
+// Cada llamador recibe su propio future (y su copia del valor si se indicó copier), así que
+// cancelarlo o modificar el resultado no afecta a los demás.
+public class SingleFlight<K, V> {
+
+    private static final String TAG = "SingleFlight";
+
+    private final String name;
+    private final Function<V, V> copier;
+    private final Map<K, CompletableFuture<V>> inFlight = new HashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SingleFlight(String name) {
+        this(name, null);
+    }
+
+    public SingleFlight(String name, Function<V, V> copier) {
+        this.name = name;
+        this.copier = copier;
+    }
+
+    public CompletableFuture<V> run(K key, Supplier<CompletableFuture<V>> loader) {
+        requests.incrementAndGet();
+
+        CompletableFuture<V> shared;
+        boolean leader = false;
+        synchronized (inFlight) {
+            shared = inFlight.get(key);
+            if (shared == null) {
+                shared = new CompletableFuture<>();
+                inFlight.put(key, shared);
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            loads.incrementAndGet();
+            start(key, loader, shared);
+        } else {
+            coalesced.incrementAndGet();
+            Log.d(TAG, name + ": pedido agrupado con el que está en curso (" + key + ")");
+        }
+
+        return copier != null ? shared.thenApply(copier) : shared.thenApply(value -> value);
+    }
+
+    // El loader corre fuera del lock: si completa en el mismo hilo no se bloquea a nadie
+    private void start(K key, Supplier<CompletableFuture<V>> loader, CompletableFuture<V> shared) {
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+        } catch (Exception e) {
+            source = new CompletableFuture<>();
+            source.completeExceptionally(e);
+        }
+
+        source.whenComplete((value, throwable) -> {
+            // Primero liberar la clave: quien pida después del resultado dispara una carga nueva
+            synchronized (inFlight) {
+                if (inFlight.get(key) == shared) {
+                    inFlight.remove(key);
+                }
+            }
+            if (throwable != null) {
+                shared.completeExceptionally(throwable);
+            } else {
+                shared.complete(value);
+            }
+        });
+    }
+
+    public boolean isInFlight(K key) {
+        synchronized (inFlight) {
+            return inFlight.containsKey(key);
+        }
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    // Fracción de pedidos que no generaron una llamada propia
+    public double getCoalescedRatio() {
+        long total = requests.get();
+        return total == 0 ? 0.0 : (double) coalesced.get() / total;
+    }
+
+    public void reset() {
+        requests.set(0);
+        loads.set(0);
+        coalesced.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "SingleFlight{%s: requests=%d, loads=%d, coalesced=%d (%.2f)}",
+                name, requests.get(), loads.get(), coalesced.get(), getCoalescedRatio());
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.lugarescomunes.repository;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache en memoria con vencimiento por clave, seguro entre hilos sin locks para leer.
+// Cada clave guarda una entrada (valor + momento en que se guardó) que se reemplaza de forma
+// atómica: quien lee ve la entrada anterior o la nueva, nunca una mezcla.
+// Los valores deben tratarse como inmutables (por ejemplo listas no modificables).
+//
+// Opcionalmente acotado por peso (bytes estimados o cantidad de entradas): al pasarse del
+// límite se descartan las entradas usadas hace más tiempo (LRU aproximado por marca de acceso).
+public class TtlCache<K, V> {
+
+    // Peso de una entrada; con (key, value) -> 1 el límite es de cantidad de entradas
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final long defaultTtlMillis;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+
+    // Reloj lógico para el orden de acceso: más barato y estricto que currentTimeMillis
+    private final AtomicLong accessClock = new AtomicLong();
+    private final AtomicLong totalWeight = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public static final class Entry<V> {
+        private final V value;
+        private final long storedAt;
+        private final long ttlMillis;
+        private final long weight;
+        // Única parte mutable: solo ordena las candidatas a desalojo
+        private volatile long lastAccess;
+
+        Entry(V value, long storedAt, long ttlMillis, long weight, long lastAccess) {
+            this.value = value;
+            this.storedAt = storedAt;
+            this.ttlMillis = ttlMillis;
+            this.weight = weight;
+            this.lastAccess = lastAccess;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - storedAt;
+        }
+
+        public boolean isFresh() {
+            return getAgeMillis() < ttlMillis;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+    }
+
+    public TtlCache(long defaultTtlMillis) {
+        this(defaultTtlMillis, UNBOUNDED, (key, value) -> 1);
+    }
+
+    public TtlCache(long defaultTtlMillis, long maxWeight, Weigher<K, V> weigher) {
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    // Valor vigente, o null si no existe o ya venció
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || !entry.isFresh()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        entry.lastAccess = accessClock.incrementAndGet();
+        return entry.value;
+    }
+
+    // Valor aunque esté vencido (stale-while-revalidate, 304)
+    public V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    public Entry<V> getEntry(K key) {
+        return entries.get(key);
+    }
+
+    public boolean isFresh(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && entry.isFresh();
+    }
+
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public void put(K key, V value) {
+        put(key, value, defaultTtlMillis, System.currentTimeMillis());
+    }
+
+    // storedAt permite restaurar datos guardados antes (por ejemplo desde disco) con su edad real
+    public void put(K key, V value, long ttlMillis, long storedAt) {
+        long weight = Math.max(0, weigher.weigh(key, value));
+        if (weight > maxWeight) {
+            // Una sola entrada no puede vaciar todo el cache
+            rejected.incrementAndGet();
+            remove(key);
+            return;
+        }
+
+        Entry<V> previous = entries.put(key,
+                new Entry<>(value, storedAt, ttlMillis, weight, accessClock.incrementAndGet()));
+        totalWeight.addAndGet(weight - (previous != null ? previous.weight : 0));
+
+        if (totalWeight.get() > maxWeight) {
+            trimToWeight(maxWeight);
+        }
+    }
+
+    // Renueva el vencimiento sin cambiar el valor (respuesta 304)
+    public boolean touch(K key) {
+        long now = System.currentTimeMillis();
+        return entries.computeIfPresent(key, (k, entry) ->
+                new Entry<>(entry.value, now, entry.ttlMillis, entry.weight, accessClock.incrementAndGet())) != null;
+    }
+
+    public void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight.addAndGet(-removed.weight);
+        }
+    }
+
+    public void clear() {
+        for (K key : entries.keySet()) {
+            remove(key);
+        }
+    }
+
+    // Descarta entradas (vencidas primero, luego las menos usadas) hasta quedar en targetWeight
+    public void trimToWeight(long targetWeight) {
+        synchronized (evictionLock) {
+            removeExpired();
+            while (totalWeight.get() > targetWeight) {
+                Map.Entry<K, Entry<V>> oldest = null;
+                for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+                    if (oldest == null || candidate.getValue().lastAccess < oldest.getValue().lastAccess) {
+                        oldest = candidate;
+                    }
+                }
+                if (oldest == null) {
+                    break;
+                }
+                // Si otro hilo reemplazó la entrada mientras tanto, se vuelve a buscar
+                if (entries.remove(oldest.getKey(), oldest.getValue())) {
+                    totalWeight.addAndGet(-oldest.getValue().weight);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // Conserva como máximo fraction del peso actual (presión de memoria)
+    public void trimToFraction(double fraction) {
+        trimToWeight((long) (totalWeight.get() * Math.max(0, Math.min(1, fraction))));
+    }
+
+    private void removeExpired() {
+        for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+            if (!candidate.getValue().isFresh() && entries.remove(candidate.getKey(), candidate.getValue())) {
+                totalWeight.addAndGet(-candidate.getValue().weight);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getWeight() {
+        return totalWeight.get();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        rejected.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "TtlCache{entries=%d, weight=%d/%s, hitRatio=%.2f (hit=%d, miss=%d), evicted=%d, rejected=%d}",
+                entries.size(), totalWeight.get(), maxWeight == UNBOUNDED ? "∞" : String.valueOf(maxWeight),
+                getHitRatio(), hits.get(), misses.get(), evictions.get(), rejected.get());
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.lugarescomunes.repository.local;
+
+import com.example.lugarescomunes.models.CompactPolyline;
+import com.example.lugarescomunes.models.api.PlaceResponse;
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+import com.example.lugarescomunes.models.api.RouteResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Paquete offline de un destino: sus rutas, los puntos de cada ruta y los datos del lugar
+// en un solo archivo binario. Se lee con el archivo mapeado en memoria: las rutas se
+// decodifican al abrir y el recorrido de cada ruta solo cuando se pide.
+//
+// Formato (big-endian):
+//   cabecera   int MAGIC, short VERSION, long createdAt
+//   strings    int n, n x (int largo, bytes UTF-8)   -- tabla sin repetidos, -1 = null
+//   destino    registro de lugar
+//   rutas      int n, n x (registro de ruta, int offset del recorrido, int largo del recorrido)
+//   recorridos una CompactPolyline codificada por ruta (deltas varint + textos propios)
+public final class OfflineRoutePackage {
+
+    private static final int MAGIC = 0x4C435250; // "LCRP"
+    // v2: recorridos como CompactPolyline; los paquetes v1 se descartan y se vuelven a descargar
+    private static final short VERSION = 2;
+
+    // Centinelas para valores ausentes
+    private static final int NO_STRING = -1;
+    private static final int NO_INT = Integer.MIN_VALUE;
+    private static final byte NO_BOOL = -1;
+
+    private final ByteBuffer buffer;
+    private final long createdAt;
+    private final String[] strings;
+    private final PlaceResponse destination;
+    private final List<RouteResponse> routes;
+    private final Map<String, int[]> polylineRanges = new HashMap<>();
+
+    private OfflineRoutePackage(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            throw new IOException("Paquete offline inválido o de otra versión");
+        }
+        this.createdAt = buffer.getLong();
+
+        int stringCount = buffer.getInt();
+        strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        destination = readPlace();
+
+        int routeCount = buffer.getInt();
+        List<RouteResponse> decoded = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            RouteResponse route = readRoute();
+            route.setToPlace(destination);
+            int polylineOffset = buffer.getInt();
+            int polylineLength = buffer.getInt();
+            if (route.getId() != null) {
+                polylineRanges.put(route.getId(), new int[]{polylineOffset, polylineLength});
+            }
+            decoded.add(route);
+        }
+        routes = Collections.unmodifiableList(decoded);
+    }
+
+    // Mapea el archivo en solo lectura; el mapeo sigue válido después de cerrar el canal
+    public static OfflineRoutePackage open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return new OfflineRoutePackage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public PlaceResponse getDestination() {
+        return destination;
+    }
+
+    // Lista no modificable; los objetos son compartidos entre llamadas
+    public List<RouteResponse> getRoutes() {
+        return routes;
+    }
+
+    public boolean hasRoute(String routeId) {
+        return polylineRanges.containsKey(routeId);
+    }
+
+    // Decodifica el recorrido de una ruta desde el archivo mapeado; null si la ruta no está
+    public CompactPolyline getPolyline(String routeId) {
+        int[] range = polylineRanges.get(routeId);
+        if (range == null || (long) range[0] + range[1] > buffer.limit()) {
+            return null;
+        }
+
+        // Vista propia: la posición del buffer compartido no se toca y se puede leer en paralelo
+        ByteBuffer view = buffer.duplicate();
+        view.position(range[0]);
+        view.limit(range[0] + range[1]);
+        return CompactPolyline.decode(view);
+    }
+
+    // Puntos como modelo de la API; null si la ruta no está
+    public List<RoutePointResponse> getPoints(String routeId) {
+        CompactPolyline polyline = getPolyline(routeId);
+        return polyline != null ? polyline.toRoutePoints() : null;
+    }
+
+    private PlaceResponse readPlace() {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        PlaceResponse place = new PlaceResponse();
+        place.setId(string(buffer.getInt()));
+        place.setName(string(buffer.getInt()));
+        place.setCategory(string(buffer.getInt()));
+        place.setDescription(string(buffer.getInt()));
+        place.setWhat3words(string(buffer.getInt()));
+        double latitude = buffer.getDouble();
+        double longitude = buffer.getDouble();
+        place.setLatitude(Double.isNaN(latitude) ? null : BigDecimal.valueOf(latitude));
+        place.setLongitude(Double.isNaN(longitude) ? null : BigDecimal.valueOf(longitude));
+        place.setIsAvailable(boolOrNull(buffer.get()));
+        place.setPlaceType(string(buffer.getInt()));
+        place.setCapacity(intOrNull(buffer.getInt()));
+        place.setSchedule(string(buffer.getInt()));
+        place.setImageUrl(string(buffer.getInt()));
+        place.setBuildingName(string(buffer.getInt()));
+        place.setFloorNumber(intOrNull(buffer.getInt()));
+        place.setRoomCode(string(buffer.getInt()));
+        place.setEquipment(readStringSet());
+        place.setAccessibilityFeatures(readStringSet());
+        return place;
+    }
+
+    private RouteResponse readRoute() {
+        RouteResponse route = new RouteResponse();
+        route.setId(string(buffer.getInt()));
+        route.setName(string(buffer.getInt()));
+        route.setDescription(string(buffer.getInt()));
+        route.setFromLatitude(doubleOrNull(buffer.getDouble()));
+        route.setFromLongitude(doubleOrNull(buffer.getDouble()));
+        route.setFromDescription(string(buffer.getInt()));
+        route.setTotalDistance(intOrNull(buffer.getInt()));
+        route.setEstimatedTime(intOrNull(buffer.getInt()));
+        route.setDifficulty(string(buffer.getInt()));
+        route.setIsActive(boolOrNull(buffer.get()));
+        route.setAverageRating(doubleOrNull(buffer.getDouble()));
+        route.setTotalRatings(intOrNull(buffer.getInt()));
+        route.setTimesUsed(intOrNull(buffer.getInt()));
+        route.setRatingText(string(buffer.getInt()));
+        route.setDifficultyText(string(buffer.getInt()));
+        route.setFormattedDistance(string(buffer.getInt()));
+        route.setFormattedTime(string(buffer.getInt()));
+        route.setPopular(boolOrNull(buffer.get()));
+        route.setWellRated(boolOrNull(buffer.get()));
+        return route;
+    }
+
+    private Set<String> readStringSet() {
+        int count = buffer.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Set<String> values = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            values.add(string(buffer.getInt()));
+        }
+        return values;
+    }
+
+    private String string(int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static Integer intOrNull(int value) {
+        return value == NO_INT ? null : value;
+    }
+
+    private static Double doubleOrNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static Boolean boolOrNull(byte value) {
+        return value == NO_BOOL ? null : value != 0;
+    }
+
+    // ===== ESCRITURA =====
+
+    // Serializa el paquete completo; pointsByRoute puede no tener todas las rutas
+    public static byte[] encode(PlaceResponse destination, List<RouteResponse> routes,
+                                Map<String, List<RoutePointResponse>> pointsByRoute) throws IOException {
+        StringTable table = new StringTable();
+
+        // Primero los registros (así se llena la tabla de strings), después el archivo completo
+        ByteArrayOutputStream placeBytes = new ByteArrayOutputStream();
+        writePlace(new DataOutputStream(placeBytes), destination, table);
+
+        List<byte[]> encodedRoutes = new ArrayList<>(routes.size());
+        ByteArrayOutputStream polylineBytes = new ByteArrayOutputStream();
+        List<int[]> polylineRanges = new ArrayList<>(routes.size());
+        int routesSize = 0;
+        for (RouteResponse route : routes) {
+            ByteArrayOutputStream single = new ByteArrayOutputStream();
+            writeRoute(new DataOutputStream(single), route, table);
+            encodedRoutes.add(single.toByteArray());
+            routesSize += single.size() + 8;
+
+            List<RoutePointResponse> points = route.getId() != null ? pointsByRoute.get(route.getId()) : null;
+            byte[] polyline = CompactPolyline.fromPoints(points).encode();
+            polylineRanges.add(new int[]{polylineBytes.size(), polyline.length});
+            polylineBytes.write(polyline);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(file);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        table.write(out);
+        out.write(placeBytes.toByteArray());
+        out.writeInt(routes.size());
+
+        // Los offsets de recorridos son absolutos: se conocen recién con el tamaño de todo lo anterior
+        int polylinesBase = out.size() + routesSize;
+        for (int i = 0; i < encodedRoutes.size(); i++) {
+            out.write(encodedRoutes.get(i));
+            out.writeInt(polylinesBase + polylineRanges.get(i)[0]);
+            out.writeInt(polylineRanges.get(i)[1]);
+        }
+        out.write(polylineBytes.toByteArray());
+        out.flush();
+        return file.toByteArray();
+    }
+
+    private static void writePlace(DataOutputStream out, PlaceResponse place, StringTable table) throws IOException {
+        out.writeByte(place != null ? 1 : 0);
+        if (place == null) {
+            return;
+        }
+        out.writeInt(table.indexOf(place.getId()));
+        out.writeInt(table.indexOf(place.getName()));
+        out.writeInt(table.indexOf(place.getCategory()));
+        out.writeInt(table.indexOf(place.getDescription()));
+        out.writeInt(table.indexOf(place.getWhat3words()));
+        out.writeDouble(place.getLatitude() != null ? place.getLatitude().doubleValue() : Double.NaN);
+        out.writeDouble(place.getLongitude() != null ? place.getLongitude().doubleValue() : Double.NaN);
+        out.writeByte(bool(place.getIsAvailable()));
+        out.writeInt(table.indexOf(place.getPlaceType()));
+        out.writeInt(integer(place.getCapacity()));
+        out.writeInt(table.indexOf(place.getSchedule()));
+        out.writeInt(table.indexOf(place.getImageUrl()));
+        out.writeInt(table.indexOf(place.getBuildingName()));
+        out.writeInt(integer(place.getFloorNumber()));
+        out.writeInt(table.indexOf(place.getRoomCode()));
+        writeStringSet(out, place.getEquipment(), table);
+        writeStringSet(out, place.getAccessibilityFeatures(), table);
+    }
+
+    private static void writeRoute(DataOutputStream out, RouteResponse route, StringTable table) throws IOException {
+        out.writeInt(table.indexOf(route.getId()));
+        out.writeInt(table.indexOf(route.getName()));
+        out.writeInt(table.indexOf(route.getDescription()));
+        out.writeDouble(route.getFromLatitude() != null ? route.getFromLatitude() : Double.NaN);
+        out.writeDouble(route.getFromLongitude() != null ? route.getFromLongitude() : Double.NaN);
+        out.writeInt(table.indexOf(route.getFromDescription()));
+        out.writeInt(integer(route.getTotalDistance()));
+        out.writeInt(integer(route.getEstimatedTime()));
+        out.writeInt(table.indexOf(route.getDifficulty()));
+        out.writeByte(bool(route.getIsActive()));
+        out.writeDouble(route.getAverageRating() != null ? route.getAverageRating() : Double.NaN);
+        out.writeInt(integer(route.getTotalRatings()));
+        out.writeInt(integer(route.getTimesUsed()));
+        out.writeInt(table.indexOf(route.getRatingText()));
+        out.writeInt(table.indexOf(route.getDifficultyText()));
+        out.writeInt(table.indexOf(route.getFormattedDistance()));
+        out.writeInt(table.indexOf(route.getFormattedTime()));
+        out.writeByte(bool(route.getPopular()));
+        out.writeByte(bool(route.getWellRated()));
+    }
+
+    private static void writeStringSet(DataOutputStream out, Set<String> values, StringTable table) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeInt(table.indexOf(value));
+        }
+    }
+
+    private static int integer(Integer value) {
+        return value != null ? value : NO_INT;
+    }
+
+    private static byte bool(Boolean value) {
+        return value == null ? NO_BOOL : (byte) (value ? 1 : 0);
+    }
+
+    // Instrucciones y nombres se repiten mucho entre rutas: cada texto se guarda una sola vez
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = values.size();
+                indices.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.lugarescomunes.repository.local;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.lugarescomunes.models.api.PlaceResponse;
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+import com.example.lugarescomunes.models.api.RouteResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Paquetes offline de rutas en disco, uno por destino (files/offline_routes/<id>.lcrp).
+// Los paquetes abiertos se conservan mapeados: volver a abrir un destino no vuelve a leer el archivo.
+// Se conservan como mucho MAX_OPENED (se suelta el menos usado) y se sueltan todos con presión de
+// memoria; un paquete soltado se vuelve a abrir desde disco la próxima vez que se pida.
+public class OfflineRoutesStore {
+
+    private static final String TAG = "OfflineRoutesStore";
+    private static final String DIRECTORY = "offline_routes";
+    private static final String EXTENSION = ".lcrp";
+    private static final int MAX_OPENED = 8;
+
+    private static OfflineRoutesStore instance;
+
+    private final File directory;
+    // En orden de acceso: el primero es el menos usado. opened y routeIndex se protegen con synchronized (this)
+    private final LinkedHashMap<String, OfflineRoutePackage> opened = new LinkedHashMap<>(16, 0.75f, true);
+    // Id de ruta -> destino del paquete abierto que la contiene
+    private final Map<String, String> routeIndex = new HashMap<>();
+    // Un solo hilo: escribir y abrir paquetes nunca corre en paralelo ni en el hilo principal
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "offline-routes-disk");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private OfflineRoutesStore(Context context) {
+        this.directory = new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    public static synchronized OfflineRoutesStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new OfflineRoutesStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Paquete del destino, o null si nunca se descargó o está dañado
+    public CompletableFuture<OfflineRoutePackage> load(String destinationId) {
+        OfflineRoutePackage cached = peek(destinationId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> open(destinationId), diskExecutor);
+    }
+
+    // Solo paquetes ya abiertos (sin tocar disco): para decidir en el hilo principal
+    public synchronized OfflineRoutePackage peek(String destinationId) {
+        return opened.get(destinationId);
+    }
+
+    // Paquete que contiene la ruta, o null. Primero entre los abiertos; si no está y se conoce
+    // el destino, se abre desde disco (un paquete soltado por presión de memoria vuelve a estar
+    // disponible sin señal).
+    public CompletableFuture<OfflineRoutePackage> loadForRoute(String routeId, String destinationId) {
+        OfflineRoutePackage mapped = packageWithRoute(routeId);
+        if (mapped != null || destinationId == null) {
+            return CompletableFuture.completedFuture(mapped);
+        }
+        return load(destinationId).thenApply(routePackage ->
+                routePackage != null && routePackage.hasRoute(routeId) ? routePackage : null);
+    }
+
+    // Presión de memoria (ComponentCallbacks2): los mapeos se pueden rehacer desde disco, así que
+    // con la UI oculta se sueltan todos y con la app en uso se conserva la mitad más usada
+    public void onTrimMemory(int level) {
+        int keep;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            keep = 0;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            keep = MAX_OPENED / 2;
+        } else {
+            return;
+        }
+        synchronized (this) {
+            int before = opened.size();
+            trimTo(keep);
+            Log.i(TAG, "onTrimMemory(" + level + "): paquetes abiertos " + before + " -> " + opened.size());
+        }
+    }
+
+    public CompletableFuture<Void> save(String destinationId, PlaceResponse destination, List<RouteResponse> routes,
+                                        Map<String, List<RoutePointResponse>> pointsByRoute) {
+        return CompletableFuture.runAsync(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                byte[] bytes = OfflineRoutePackage.encode(destination, routes, pointsByRoute);
+                File target = fileFor(destinationId);
+                writeAtomically(target, bytes);
+                // El mapeo anterior apunta al archivo reemplazado: abrir el nuevo
+                putOpened(destinationId, OfflineRoutePackage.open(target));
+                Log.d(TAG, "Paquete offline guardado para " + destinationId + ": " + routes.size() +
+                        " rutas, " + bytes.length + " bytes en " + (SystemClock.elapsedRealtime() - start) + "ms");
+            } catch (IOException e) {
+                throw new RuntimeException("No se pudo guardar el paquete offline", e);
+            }
+        }, diskExecutor);
+    }
+
+    public boolean exists(String destinationId) {
+        return peek(destinationId) != null || fileFor(destinationId).exists();
+    }
+
+    public CompletableFuture<Void> delete(String destinationId) {
+        return CompletableFuture.runAsync(() -> {
+            removeOpened(destinationId);
+            if (!fileFor(destinationId).delete()) {
+                Log.d(TAG, "No había paquete offline para " + destinationId);
+            }
+        }, diskExecutor);
+    }
+
+    public CompletableFuture<Void> clear() {
+        return CompletableFuture.runAsync(() -> {
+            synchronized (this) {
+                trimTo(0);
+            }
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            Log.i(TAG, "Paquetes offline eliminados");
+        }, diskExecutor);
+    }
+
+    private OfflineRoutePackage open(String destinationId) {
+        OfflineRoutePackage cached = peek(destinationId);
+        if (cached != null) {
+            return cached;
+        }
+        File file = fileFor(destinationId);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            long start = SystemClock.elapsedRealtime();
+            OfflineRoutePackage routePackage = OfflineRoutePackage.open(file);
+            putOpened(destinationId, routePackage);
+            Log.d(TAG, "Paquete offline abierto para " + destinationId + " en " +
+                    (SystemClock.elapsedRealtime() - start) + "ms");
+            return routePackage;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Paquete offline dañado para " + destinationId + ", se descarta", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private synchronized OfflineRoutePackage packageWithRoute(String routeId) {
+        String destinationId = routeIndex.get(routeId);
+        return destinationId != null ? opened.get(destinationId) : null;
+    }
+
+    private synchronized void putOpened(String destinationId, OfflineRoutePackage routePackage) {
+        removeOpened(destinationId);
+        opened.put(destinationId, routePackage);
+        for (RouteResponse route : routePackage.getRoutes()) {
+            if (route.getId() != null) {
+                routeIndex.put(route.getId(), destinationId);
+            }
+        }
+        trimTo(MAX_OPENED);
+    }
+
+    private synchronized void removeOpened(String destinationId) {
+        OfflineRoutePackage removed = opened.remove(destinationId);
+        if (removed == null) {
+            return;
+        }
+        for (RouteResponse route : removed.getRoutes()) {
+            // Solo si la ruta no pasó a otro paquete abierto después
+            if (route.getId() != null && destinationId.equals(routeIndex.get(route.getId()))) {
+                routeIndex.remove(route.getId());
+            }
+        }
+    }
+
+    // Suelta los paquetes menos usados hasta quedarse con maxOpened
+    private synchronized void trimTo(int maxOpened) {
+        if (opened.size() <= maxOpened) {
+            return;
+        }
+        List<String> eldest = new ArrayList<>(opened.size() - maxOpened);
+        for (String destinationId : opened.keySet()) {
+            if (eldest.size() == opened.size() - maxOpened) {
+                break;
+            }
+            eldest.add(destinationId);
+        }
+        for (String destinationId : eldest) {
+            removeOpened(destinationId);
+        }
+    }
+
+    // Escribir a un temporal y renombrar: un corte a mitad de escritura no deja un paquete roto
+    private void writeAtomically(File target, byte[] bytes) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("No se pudo crear " + directory);
+        }
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("No se pudo reemplazar " + target);
+        }
+    }
+
+    private File fileFor(String destinationId) {
+        // Los ids vienen del servidor: solo caracteres seguros para un nombre de archivo
+        return new File(directory, destinationId.replaceAll("[^A-Za-z0-9._-]", "_") + EXTENSION);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.lugarescomunes.repository.local;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cola de escrituras pendientes hacia la API (SQLite, sobrevive a reinicios).
+// También guarda la relación entre ids de sesión locales y los que asigna el servidor,
+// para poder completar una navegación cuyo inicio todavía no se había enviado.
+public class OutboxStore {
+
+    private static final String DATABASE_NAME = "outbox.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_OUTBOX = "outbox";
+    private static final String TABLE_SESSIONS = "session_ids";
+
+    private static OutboxStore instance;
+
+    public static class Entry {
+        private final long id;
+        private final String type;
+        private final String reference;
+        private final String payload;
+        private final String idempotencyKey;
+        private final int attempts;
+        private final long createdAt;
+
+        Entry(long id, String type, String reference, String payload, String idempotencyKey, int attempts,
+              long createdAt) {
+            this.id = id;
+            this.type = type;
+            this.reference = reference;
+            this.payload = payload;
+            this.idempotencyKey = idempotencyKey;
+            this.attempts = attempts;
+            this.createdAt = createdAt;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        // Id al que se refiere la escritura (sesión local, ruta); puede ser null
+        public String getReference() {
+            return reference;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    private static class Helper extends SQLiteOpenHelper {
+
+        Helper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "type TEXT NOT NULL, " +
+                    "reference TEXT, " +
+                    "payload TEXT NOT NULL, " +
+                    "idempotency_key TEXT NOT NULL UNIQUE, " +
+                    "coalesce_key TEXT, " +
+                    "attempts INTEGER NOT NULL DEFAULT 0, " +
+                    "next_attempt_at INTEGER NOT NULL, " +
+                    "created_at INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX outbox_next_attempt ON " + TABLE_OUTBOX + " (next_attempt_at)");
+            db.execSQL("CREATE INDEX outbox_coalesce ON " + TABLE_OUTBOX + " (coalesce_key)");
+            db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " (" +
+                    "local_id TEXT PRIMARY KEY, " +
+                    "server_id TEXT NOT NULL, " +
+                    "created_at INTEGER NOT NULL)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Sin migraciones todavía: la versión 1 es la única
+        }
+    }
+
+    private final Helper helper;
+
+    private OutboxStore(Context context) {
+        this.helper = new Helper(context);
+    }
+
+    public static synchronized OutboxStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new OutboxStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Agrega una escritura; si tiene coalesceKey reemplaza a la pendiente con la misma clave.
+    // Hace I/O: no llamar desde el hilo principal.
+    public long add(String type, String reference, String payload, String idempotencyKey, String coalesceKey) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            if (coalesceKey != null) {
+                db.delete(TABLE_OUTBOX, "coalesce_key = ?", new String[]{coalesceKey});
+            }
+            ContentValues values = new ContentValues();
+            values.put("type", type);
+            values.put("reference", reference);
+            values.put("payload", payload);
+            values.put("idempotency_key", idempotencyKey);
+            values.put("coalesce_key", coalesceKey);
+            values.put("attempts", 0);
+            values.put("next_attempt_at", now);
+            values.put("created_at", now);
+            long id = db.insertOrThrow(TABLE_OUTBOX, null, values);
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Escrituras listas para enviar, en el orden en que se agregaron
+    public List<Entry> due(long now, int limit) {
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = helper.getReadableDatabase().query(TABLE_OUTBOX,
+                new String[]{"id", "type", "reference", "payload", "idempotency_key", "attempts", "created_at"},
+                "next_attempt_at <= ?", new String[]{String.valueOf(now)},
+                null, null, "id ASC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4), cursor.getInt(5), cursor.getLong(6)));
+            }
+        }
+        return entries;
+    }
+
+    public void remove(long id) {
+        helper.getWritableDatabase().delete(TABLE_OUTBOX, "id = ?", new String[]{String.valueOf(id)});
+    }
+
+    public void reschedule(long id, int attempts, long nextAttemptAt) {
+        ContentValues values = new ContentValues();
+        values.put("attempts", attempts);
+        values.put("next_attempt_at", nextAttemptAt);
+        helper.getWritableDatabase().update(TABLE_OUTBOX, values, "id = ?", new String[]{String.valueOf(id)});
+    }
+
+    // Próximo momento en que hay algo para enviar, o -1 si la cola está vacía
+    public long nextAttemptAt() {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                "SELECT MIN(next_attempt_at) FROM " + TABLE_OUTBOX, null)) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        }
+    }
+
+    public long size() {
+        return DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), TABLE_OUTBOX);
+    }
+
+    public boolean hasPending(String type, String reference) {
+        return DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), TABLE_OUTBOX,
+                "type = ? AND reference = ?", new String[]{type, reference}) > 0;
+    }
+
+    // ===== IDS DE SESIÓN =====
+
+    public void putSessionId(String localId, String serverId) {
+        ContentValues values = new ContentValues();
+        values.put("local_id", localId);
+        values.put("server_id", serverId);
+        values.put("created_at", System.currentTimeMillis());
+        helper.getWritableDatabase().insertWithOnConflict(TABLE_SESSIONS, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    public String getSessionId(String localId) {
+        try (Cursor cursor = helper.getReadableDatabase().query(TABLE_SESSIONS, new String[]{"server_id"},
+                "local_id = ?", new String[]{localId}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    public void removeSessionId(String localId) {
+        helper.getWritableDatabase().delete(TABLE_SESSIONS, "local_id = ?", new String[]{localId});
+    }
+
+    // Sesiones que nunca se completaron no deben acumularse para siempre
+    public int pruneSessionIds(long olderThan) {
+        return helper.getWritableDatabase().delete(TABLE_SESSIONS, "created_at < ?",
+                new String[]{String.valueOf(olderThan)});
+    }
+}
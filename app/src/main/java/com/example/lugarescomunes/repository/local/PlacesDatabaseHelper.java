@@ -0,0 +1,101 @@
+package com.example.lugarescomunes.repository.local;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+public class PlacesDatabaseHelper extends SQLiteOpenHelper {
+
+    private static final String TAG = "PlacesDatabaseHelper";
+    private static final String DATABASE_NAME = "lugares_comunes.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Tabla de lugares (campos de Place / PlaceResponse)
+    public static final String TABLE_PLACES = "places";
+    public static final String COL_ID = "id";
+    public static final String COL_NAME = "name";
+    public static final String COL_CATEGORY = "category";
+    public static final String COL_DESCRIPTION = "description";
+    public static final String COL_WHAT3WORDS = "what3words";
+    public static final String COL_LATITUDE = "latitude";
+    public static final String COL_LONGITUDE = "longitude";
+    public static final String COL_IS_AVAILABLE = "is_available";
+    public static final String COL_PLACE_TYPE = "place_type";
+    public static final String COL_CAPACITY = "capacity";
+    public static final String COL_SCHEDULE = "schedule";
+    public static final String COL_IMAGE_URL = "image_url";
+    public static final String COL_BUILDING_NAME = "building_name";
+    public static final String COL_FLOOR_NUMBER = "floor_number";
+    public static final String COL_ROOM_CODE = "room_code";
+    public static final String COL_EQUIPMENT = "equipment";
+    public static final String COL_ACCESSIBILITY_FEATURES = "accessibility_features";
+    public static final String COL_CREATED_AT = "created_at";
+    public static final String COL_UPDATED_AT = "updated_at";
+    public static final String COL_POSITION = "position";
+
+    // Tabla de metadatos de sincronización (clave/valor)
+    public static final String TABLE_SYNC_METADATA = "sync_metadata";
+    public static final String COL_KEY = "key";
+    public static final String COL_VALUE = "value";
+
+    private static PlacesDatabaseHelper instance;
+
+    private PlacesDatabaseHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static synchronized PlacesDatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlacesDatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // WAL permite leer el cache mientras el refresco escribe
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_PLACES + " (" +
+                COL_ID + " TEXT PRIMARY KEY, " +
+                COL_NAME + " TEXT, " +
+                COL_CATEGORY + " TEXT, " +
+                COL_DESCRIPTION + " TEXT, " +
+                COL_WHAT3WORDS + " TEXT, " +
+                COL_LATITUDE + " REAL, " +
+                COL_LONGITUDE + " REAL, " +
+                COL_IS_AVAILABLE + " INTEGER NOT NULL DEFAULT 1, " +
+                COL_PLACE_TYPE + " TEXT, " +
+                COL_CAPACITY + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_SCHEDULE + " TEXT, " +
+                COL_IMAGE_URL + " TEXT, " +
+                COL_BUILDING_NAME + " TEXT, " +
+                COL_FLOOR_NUMBER + " INTEGER, " +
+                COL_ROOM_CODE + " TEXT, " +
+                COL_EQUIPMENT + " TEXT, " +
+                COL_ACCESSIBILITY_FEATURES + " TEXT, " +
+                COL_CREATED_AT + " TEXT, " +
+                COL_UPDATED_AT + " TEXT, " +
+                COL_POSITION + " INTEGER NOT NULL DEFAULT 0)");
+
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_METADATA + " (" +
+                COL_KEY + " TEXT PRIMARY KEY, " +
+                COL_VALUE + " TEXT)");
+
+        Log.i(TAG, "Base de datos local creada");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Los datos son un cache del servidor: se pueden recrear sin pérdida
+        Log.w(TAG, "Actualizando base de datos de " + oldVersion + " a " + newVersion);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PLACES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_METADATA);
+        onCreate(db);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.lugarescomunes.repository.local;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.lugarescomunes.Place;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.example.lugarescomunes.repository.local.PlacesDatabaseHelper.*;
+
+public class PlacesLocalDataSource {
+
+    private static final String TAG = "PlacesLocalDataSource";
+    private static final String KEY_LAST_SYNC = "places_last_sync";
+    private static final Type STRING_LIST_TYPE = new TypeToken<List<String>>() {}.getType();
+
+    private static PlacesLocalDataSource instance;
+
+    private final PlacesDatabaseHelper dbHelper;
+    private final Gson gson = new Gson();
+    // Un solo hilo: las escrituras quedan serializadas y nunca tocan el hilo principal
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "places-disk");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private PlacesLocalDataSource(Context context) {
+        this.dbHelper = PlacesDatabaseHelper.getInstance(context);
+    }
+
+    public static synchronized PlacesLocalDataSource getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlacesLocalDataSource(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Leer todos los lugares guardados (en background)
+    public CompletableFuture<List<Place>> loadPlaces() {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<Place> places = new ArrayList<>();
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+            try (Cursor cursor = db.query(TABLE_PLACES, null, null, null, null, null, COL_POSITION + " ASC")) {
+                int idIdx = cursor.getColumnIndexOrThrow(COL_ID);
+                int nameIdx = cursor.getColumnIndexOrThrow(COL_NAME);
+                int categoryIdx = cursor.getColumnIndexOrThrow(COL_CATEGORY);
+                int descriptionIdx = cursor.getColumnIndexOrThrow(COL_DESCRIPTION);
+                int what3wordsIdx = cursor.getColumnIndexOrThrow(COL_WHAT3WORDS);
+                int latitudeIdx = cursor.getColumnIndexOrThrow(COL_LATITUDE);
+                int longitudeIdx = cursor.getColumnIndexOrThrow(COL_LONGITUDE);
+                int availableIdx = cursor.getColumnIndexOrThrow(COL_IS_AVAILABLE);
+                int typeIdx = cursor.getColumnIndexOrThrow(COL_PLACE_TYPE);
+                int capacityIdx = cursor.getColumnIndexOrThrow(COL_CAPACITY);
+                int scheduleIdx = cursor.getColumnIndexOrThrow(COL_SCHEDULE);
+                int imageUrlIdx = cursor.getColumnIndexOrThrow(COL_IMAGE_URL);
+                int buildingIdx = cursor.getColumnIndexOrThrow(COL_BUILDING_NAME);
+                int floorIdx = cursor.getColumnIndexOrThrow(COL_FLOOR_NUMBER);
+                int roomIdx = cursor.getColumnIndexOrThrow(COL_ROOM_CODE);
+                int equipmentIdx = cursor.getColumnIndexOrThrow(COL_EQUIPMENT);
+                int accessibilityIdx = cursor.getColumnIndexOrThrow(COL_ACCESSIBILITY_FEATURES);
+                int createdIdx = cursor.getColumnIndexOrThrow(COL_CREATED_AT);
+                int updatedIdx = cursor.getColumnIndexOrThrow(COL_UPDATED_AT);
+
+                while (cursor.moveToNext()) {
+                    Place place = new Place();
+                    place.setId(cursor.getString(idIdx));
+                    place.setName(cursor.getString(nameIdx));
+                    place.setCategory(cursor.getString(categoryIdx));
+                    place.setDescription(cursor.getString(descriptionIdx));
+                    place.setWhat3words(cursor.getString(what3wordsIdx));
+                    place.setLatitude(cursor.getDouble(latitudeIdx));
+                    place.setLongitude(cursor.getDouble(longitudeIdx));
+                    place.setAvailable(cursor.getInt(availableIdx) != 0);
+                    place.setPlaceTypeString(cursor.getString(typeIdx));
+                    place.setCapacity(cursor.getInt(capacityIdx));
+                    place.setSchedule(cursor.getString(scheduleIdx));
+                    place.setImageUrl(cursor.getString(imageUrlIdx));
+                    place.setBuildingName(cursor.getString(buildingIdx));
+                    place.setFloorNumber(cursor.isNull(floorIdx) ? null : cursor.getInt(floorIdx));
+                    place.setRoomCode(cursor.getString(roomIdx));
+                    place.setEquipment(fromJson(cursor.getString(equipmentIdx)));
+                    place.setAccessibilityFeatures(fromJson(cursor.getString(accessibilityIdx)));
+                    place.setCreatedAt(cursor.getString(createdIdx));
+                    place.setUpdatedAt(cursor.getString(updatedIdx));
+                    places.add(place);
+                }
+            }
+
+            Log.d(TAG, "Lugares leídos de disco: " + places.size() + " en " +
+                    (SystemClock.elapsedRealtime() - start) + "ms");
+            return places;
+        }, diskExecutor);
+    }
+
+    // Reemplazar el catálogo completo en una sola transacción
+    public CompletableFuture<Void> savePlaces(List<Place> places) {
+        List<Place> snapshot = new ArrayList<>(places);
+        return CompletableFuture.runAsync(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_PLACES, null, null);
+
+                int position = 0;
+                // El statement se cierra aunque falle a mitad de la transacción
+                try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_PLACES + " (" +
+                        COL_ID + ", " + COL_NAME + ", " + COL_CATEGORY + ", " + COL_DESCRIPTION + ", " +
+                        COL_WHAT3WORDS + ", " + COL_LATITUDE + ", " + COL_LONGITUDE + ", " +
+                        COL_IS_AVAILABLE + ", " + COL_PLACE_TYPE + ", " + COL_CAPACITY + ", " +
+                        COL_SCHEDULE + ", " + COL_IMAGE_URL + ", " + COL_BUILDING_NAME + ", " +
+                        COL_FLOOR_NUMBER + ", " + COL_ROOM_CODE + ", " + COL_EQUIPMENT + ", " +
+                        COL_ACCESSIBILITY_FEATURES + ", " + COL_CREATED_AT + ", " + COL_UPDATED_AT + ", " +
+                        COL_POSITION + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (Place place : snapshot) {
+                        if (place.getId() == null) {
+                            continue;
+                        }
+                        insert.clearBindings();
+                        insert.bindString(1, place.getId());
+                        bindNullable(insert, 2, place.getName());
+                        bindNullable(insert, 3, place.getCategory());
+                        bindNullable(insert, 4, place.getDescription());
+                        bindNullable(insert, 5, place.getWhat3words());
+                        insert.bindDouble(6, place.getLatitude());
+                        insert.bindDouble(7, place.getLongitude());
+                        insert.bindLong(8, place.isAvailable() ? 1 : 0);
+                        bindNullable(insert, 9, place.getPlaceTypeString());
+                        insert.bindLong(10, place.getCapacity());
+                        bindNullable(insert, 11, place.getSchedule());
+                        bindNullable(insert, 12, place.getImageUrl());
+                        bindNullable(insert, 13, place.getBuildingName());
+                        if (place.getFloorNumber() != null) {
+                            insert.bindLong(14, place.getFloorNumber());
+                        }
+                        bindNullable(insert, 15, place.getRoomCode());
+                        bindNullable(insert, 16, toJson(place.getEquipment()));
+                        bindNullable(insert, 17, toJson(place.getAccessibilityFeatures()));
+                        bindNullable(insert, 18, place.getCreatedAt());
+                        bindNullable(insert, 19, place.getUpdatedAt());
+                        insert.bindLong(20, position++);
+                        insert.executeInsert();
+                    }
+                }
+
+                ContentValues meta = new ContentValues();
+                meta.put(COL_KEY, KEY_LAST_SYNC);
+                meta.put(COL_VALUE, String.valueOf(System.currentTimeMillis()));
+                db.insertWithOnConflict(TABLE_SYNC_METADATA, null, meta, SQLiteDatabase.CONFLICT_REPLACE);
+
+                db.setTransactionSuccessful();
+                Log.d(TAG, "Lugares guardados en disco: " + position);
+            } finally {
+                db.endTransaction();
+            }
+        }, diskExecutor);
+    }
+
+    // Momento (epoch ms) de la última sincronización guardada, 0 si nunca
+    public CompletableFuture<Long> getLastSyncTime() {
+        return CompletableFuture.supplyAsync(() -> {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            try (Cursor cursor = db.query(TABLE_SYNC_METADATA, new String[]{COL_VALUE},
+                    COL_KEY + " = ?", new String[]{KEY_LAST_SYNC}, null, null, null)) {
+                if (cursor.moveToFirst()) {
+                    try {
+                        return Long.parseLong(cursor.getString(0));
+                    } catch (NumberFormatException e) {
+                        return 0L;
+                    }
+                }
+                return 0L;
+            }
+        }, diskExecutor);
+    }
+
+    public CompletableFuture<Void> clear() {
+        return CompletableFuture.runAsync(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.delete(TABLE_PLACES, null, null);
+            db.delete(TABLE_SYNC_METADATA, COL_KEY + " = ?", new String[]{KEY_LAST_SYNC});
+            Log.i(TAG, "Cache en disco limpiado");
+        }, diskExecutor);
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        }
+    }
+
+    private String toJson(List<String> values) {
+        return values != null ? gson.toJson(values) : null;
+    }
+
+    private List<String> fromJson(String json) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(json, STRING_LIST_TYPE);
+        } catch (Exception e) {
+            Log.w(TAG, "Lista JSON inválida en disco: " + json);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.lugarescomunes.repository.local;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.datastore.preferences.SharedPreferencesMigrationKt;
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.preferences.core.PreferencesKeys;
+import androidx.datastore.preferences.rxjava3.RxPreferenceDataStoreBuilder;
+import androidx.datastore.rxjava3.RxDataStore;
+
+import com.example.lugarescomunes.models.api.UserResponse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import io.reactivex.rxjava3.core.Single;
+
+// Sesión del usuario en Preferences DataStore: la lectura y las escrituras corren fuera del hilo
+// principal y cada escritura cambia todas las claves en una sola transacción.
+// La UI consulta la copia en memoria (getSnapshot), que nunca bloquea.
+// La primera lectura migra las claves del archivo de SharedPreferences que se usaba antes.
+public class SessionStore {
+
+    private static final String TAG = "SessionStore";
+    private static final String DATASTORE_NAME = "session";
+    private static final String LEGACY_PREFS_NAME = "LugaresComunes";
+
+    private static final String KEY_TOKEN = "auth_token";
+    private static final String KEY_USER_ID = "user_id";
+    private static final String KEY_USER_EMAIL = "user_email";
+    private static final String KEY_USER_NAME = "user_name";
+    private static final String KEY_USER_TYPE = "user_type";
+    private static final String KEY_IS_LOGGED_IN = "is_logged_in";
+
+    private static final Preferences.Key<String> TOKEN = PreferencesKeys.stringKey(KEY_TOKEN);
+    private static final Preferences.Key<String> USER_ID = PreferencesKeys.stringKey(KEY_USER_ID);
+    private static final Preferences.Key<String> USER_EMAIL = PreferencesKeys.stringKey(KEY_USER_EMAIL);
+    private static final Preferences.Key<String> USER_NAME = PreferencesKeys.stringKey(KEY_USER_NAME);
+    private static final Preferences.Key<String> USER_TYPE = PreferencesKeys.stringKey(KEY_USER_TYPE);
+    private static final Preferences.Key<Boolean> IS_LOGGED_IN = PreferencesKeys.booleanKey(KEY_IS_LOGGED_IN);
+
+    private static SessionStore instance;
+
+    public static class Session {
+        private final String token;
+        private final UserResponse user;
+
+        Session(String token, UserResponse user) {
+            this.token = token;
+            this.user = user;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public UserResponse getUser() {
+            return user;
+        }
+    }
+
+    private final RxDataStore<Preferences> dataStore;
+    // Completa con la sesión guardada (o null si no hay) cuando termina la primera lectura
+    private final CompletableFuture<Session> loaded = new CompletableFuture<>();
+    private volatile Session snapshot;
+    // Si hubo login o logout antes de terminar la lectura, lo leído de disco ya es viejo
+    private boolean changedBeforeLoad = false;
+
+    private SessionStore(Context context) {
+        Set<String> legacyKeys = new HashSet<>(Arrays.asList(KEY_TOKEN, KEY_USER_ID, KEY_USER_EMAIL,
+                KEY_USER_NAME, KEY_USER_TYPE, KEY_IS_LOGGED_IN));
+        dataStore = new RxPreferenceDataStoreBuilder(context, DATASTORE_NAME)
+                .addDataMigration(SharedPreferencesMigrationKt.SharedPreferencesMigration(
+                        context, LEGACY_PREFS_NAME, legacyKeys))
+                .build();
+
+        dataStore.data().firstOrError().subscribe(
+                this::onLoaded,
+                throwable -> {
+                    Log.e(TAG, "Error leyendo sesión guardada", throwable);
+                    onLoaded(null);
+                });
+    }
+
+    public static synchronized SessionStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public CompletableFuture<Session> load() {
+        return loaded;
+    }
+
+    // Sesión actual en memoria; null sin sesión o si todavía no terminó la primera lectura
+    public Session getSnapshot() {
+        return snapshot;
+    }
+
+    public CompletableFuture<Void> save(String token, UserResponse user) {
+        Session session = new Session(token, user);
+        markChanged(session);
+        return update(preferences -> {
+            preferences.set(IS_LOGGED_IN, true);
+            preferences.set(TOKEN, token);
+            preferences.set(USER_ID, orEmpty(user.getId()));
+            preferences.set(USER_EMAIL, orEmpty(user.getEmail()));
+            preferences.set(USER_NAME, orEmpty(user.getFullName()));
+            preferences.set(USER_TYPE, user.getUserType() != null ? user.getUserType() : "VISITOR");
+        });
+    }
+
+    public CompletableFuture<Void> clear() {
+        markChanged(null);
+        return update(SessionStore::removeSession);
+    }
+
+    private interface Edit {
+        void apply(MutablePreferences preferences);
+    }
+
+    private CompletableFuture<Void> update(Edit edit) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        dataStore.updateDataAsync(preferences -> {
+            MutablePreferences mutable = preferences.toMutablePreferences();
+            edit.apply(mutable);
+            return Single.just(mutable);
+        }).subscribe(
+                preferences -> future.complete(null),
+                throwable -> {
+                    Log.e(TAG, "Error guardando sesión", throwable);
+                    future.completeExceptionally(throwable);
+                });
+        return future;
+    }
+
+    private synchronized void markChanged(Session session) {
+        snapshot = session;
+        if (!loaded.isDone()) {
+            changedBeforeLoad = true;
+        }
+    }
+
+    private void onLoaded(Preferences preferences) {
+        Session session = preferences != null ? read(preferences) : null;
+        synchronized (this) {
+            if (changedBeforeLoad) {
+                session = snapshot;
+            } else {
+                snapshot = session;
+            }
+        }
+        Log.i(TAG, session != null ? "Sesión cargada: " + session.getUser().getEmail() : "Sin sesión guardada");
+        loaded.complete(session);
+    }
+
+    private Session read(Preferences preferences) {
+        Boolean loggedIn = preferences.get(IS_LOGGED_IN);
+        if (loggedIn == null || !loggedIn) {
+            return null;
+        }
+        String token = preferences.get(TOKEN);
+        if (token == null) {
+            // Marcada como iniciada pero sin token: no sirve, se limpia
+            update(SessionStore::removeSession);
+            return null;
+        }
+
+        UserResponse user = new UserResponse();
+        user.setId(orEmpty(preferences.get(USER_ID)));
+        user.setEmail(orEmpty(preferences.get(USER_EMAIL)));
+        user.setFullName(orEmpty(preferences.get(USER_NAME)));
+        String userType = preferences.get(USER_TYPE);
+        user.setUserType(userType != null ? userType : "VISITOR");
+        return new Session(token, user);
+    }
+
+    private static void removeSession(MutablePreferences preferences) {
+        preferences.remove(IS_LOGGED_IN);
+        preferences.remove(TOKEN);
+        preferences.remove(USER_ID);
+        preferences.remove(USER_EMAIL);
+        preferences.remove(USER_NAME);
+        preferences.remove(USER_TYPE);
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
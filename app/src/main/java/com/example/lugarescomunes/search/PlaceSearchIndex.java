@@ -0,0 +1,558 @@
+package com.example.lugarescomunes.search;
+
+import com.example.lugarescomunes.Place;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Índice invertido de búsqueda sobre el catálogo de lugares: términos normalizados (minúsculas,
+// sin tildes) con búsqueda por prefijo, y trigramas de términos para encontrar un texto en medio
+// de una palabra ("teca" -> "biblioteca") y tolerar errores de tipeo.
+// Inmutable y seguro entre hilos; las consultas usan buffers por hilo y no crean objetos
+// salvo la lista de resultados.
+public final class PlaceSearchIndex {
+
+    // Peso por campo: un acierto en el nombre pesa más que uno en la descripción
+    private static final int WEIGHT_NAME = 8;
+    private static final int WEIGHT_WHAT3WORDS = 5;
+    private static final int WEIGHT_CATEGORY = 4;
+    private static final int WEIGHT_LOCATION = 3;
+    private static final int WEIGHT_DESCRIPTION = 1;
+
+    // Tipo de coincidencia de cada término de la consulta
+    private static final int MATCH_EXACT = 4;
+    private static final int MATCH_PREFIX = 3;
+    private static final int MATCH_INFIX = 2;
+    private static final int MATCH_FUZZY = 1;
+
+    // Un trigrama es lo mínimo para buscar dentro de una palabra
+    private static final int MIN_INFIX_LENGTH = 3;
+    // Con menos letras un error de tipeo coincide con demasiados términos
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int MAX_QUERY_LENGTH = 64;
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int MAX_SCORE = WEIGHT_NAME * MATCH_EXACT * MAX_QUERY_TERMS;
+
+    public static final PlaceSearchIndex EMPTY = new PlaceSearchIndex(new ArrayList<>(), null);
+
+    private final Place[] places;
+    private final Document[] documents;
+
+    // Vocabulario ordenado; por término, lugares que lo contienen y peso del mejor campo
+    private final String[] terms;
+    private final int[][] termDocs;
+    private final int[][] termWeights;
+
+    // Trigramas (3 chars empaquetados en un long) ordenados -> términos que los contienen
+    private final long[] gramKeys;
+    private final int[][] gramTerms;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<>();
+
+    // Términos ya normalizados de un lugar; se reutilizan si el lugar no cambió
+    private static final class Document {
+        final String[] sources;
+        final Map<String, Integer> termWeights;
+
+        Document(String[] sources, Map<String, Integer> termWeights) {
+            this.sources = sources;
+            this.termWeights = termWeights;
+        }
+    }
+
+    public static PlaceSearchIndex build(List<Place> places) {
+        return build(places, null);
+    }
+
+    // Reconstrucción incremental: solo se normalizan los lugares nuevos o modificados
+    public static PlaceSearchIndex build(List<Place> places, PlaceSearchIndex previous) {
+        if (places == null || places.isEmpty()) {
+            return EMPTY;
+        }
+        return new PlaceSearchIndex(places, previous);
+    }
+
+    private PlaceSearchIndex(List<Place> source, PlaceSearchIndex previous) {
+        Map<String, Document> reusable = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.places.length; i++) {
+                if (previous.places[i].getId() != null) {
+                    reusable.put(previous.places[i].getId(), previous.documents[i]);
+                }
+            }
+        }
+
+        int size = source.size();
+        places = source.toArray(new Place[0]);
+        documents = new Document[size];
+
+        // Término -> (lugar -> peso), ordenado para la búsqueda por prefijo
+        TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+        for (int doc = 0; doc < size; doc++) {
+            Place place = places[doc];
+            String[] sources = sourcesOf(place);
+            Document cached = place.getId() != null ? reusable.get(place.getId()) : null;
+            Document document = cached != null && Arrays.equals(cached.sources, sources) ?
+                    cached : tokenize(sources);
+            documents[doc] = document;
+
+            for (Map.Entry<String, Integer> entry : document.termWeights.entrySet()) {
+                Map<Integer, Integer> docs = postings.get(entry.getKey());
+                if (docs == null) {
+                    docs = new HashMap<>();
+                    postings.put(entry.getKey(), docs);
+                }
+                docs.put(doc, entry.getValue());
+            }
+        }
+
+        terms = postings.keySet().toArray(new String[0]);
+        termDocs = new int[terms.length][];
+        termWeights = new int[terms.length][];
+        TreeMap<Long, List<Integer>> grams = new TreeMap<>();
+        for (int term = 0; term < terms.length; term++) {
+            Map<Integer, Integer> docs = postings.get(terms[term]);
+            termDocs[term] = new int[docs.size()];
+            termWeights[term] = new int[docs.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : docs.entrySet()) {
+                termDocs[term][i] = entry.getKey();
+                termWeights[term][i] = entry.getValue();
+                i++;
+            }
+
+            String value = terms[term];
+            for (int start = 0; start + 3 <= value.length(); start++) {
+                long key = gramKey(value.charAt(start), value.charAt(start + 1), value.charAt(start + 2));
+                List<Integer> list = grams.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    grams.put(key, list);
+                }
+                // El mismo trigrama puede repetirse dentro de un término
+                if (list.isEmpty() || list.get(list.size() - 1) != term) {
+                    list.add(term);
+                }
+            }
+        }
+
+        gramKeys = new long[grams.size()];
+        gramTerms = new int[grams.size()][];
+        int g = 0;
+        for (Map.Entry<Long, List<Integer>> entry : grams.entrySet()) {
+            gramKeys[g] = entry.getKey();
+            List<Integer> list = entry.getValue();
+            gramTerms[g] = new int[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                gramTerms[g][i] = list.get(i);
+            }
+            g++;
+        }
+    }
+
+    public int size() {
+        return places.length;
+    }
+
+    public boolean isEmpty() {
+        return places.length == 0;
+    }
+
+    // Lugares que contienen todos los términos de la consulta, del más relevante al menos
+    public List<Place> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    public List<Place> search(String query, int limit) {
+        if (query == null || isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Scratch s = scratchFor();
+        int termCount = normalizeQuery(query, s);
+        if (termCount == 0) {
+            return new ArrayList<>(Arrays.asList(places));
+        }
+
+        s.candidateCount = 0;
+        for (int t = 0; t < termCount; t++) {
+            s.bestCount = 0;
+            matchTerm(s, s.termStart[t], s.termEnd[t]);
+
+            // Acumular el mejor acierto de este término en cada lugar
+            for (int i = 0; i < s.bestCount; i++) {
+                int doc = s.bestDocs[i];
+                if (s.matchedTerms[doc] == t) {
+                    if (t == 0) {
+                        s.candidates[s.candidateCount++] = doc;
+                    }
+                    s.scores[doc] += s.best[doc];
+                    s.matchedTerms[doc] = t + 1;
+                }
+                s.best[doc] = 0;
+            }
+        }
+
+        // Resultados: lugares con todos los términos
+        int resultCount = 0;
+        for (int i = 0; i < s.candidateCount; i++) {
+            int doc = s.candidates[i];
+            if (s.matchedTerms[doc] == termCount) {
+                s.results[resultCount++] = doc;
+            }
+        }
+        sortByScore(s, resultCount);
+
+        int count = Math.min(resultCount, limit);
+        List<Place> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(places[s.results[i]]);
+        }
+
+        // Dejar los buffers en cero para la próxima consulta
+        for (int i = 0; i < s.candidateCount; i++) {
+            int doc = s.candidates[i];
+            s.scores[doc] = 0;
+            s.matchedTerms[doc] = 0;
+        }
+        return results;
+    }
+
+    // Coincidencias exactas, por prefijo, dentro de la palabra y aproximadas de un término de la consulta
+    private void matchTerm(Scratch s, int start, int end) {
+        int length = end - start;
+        char[] query = s.query;
+
+        // Prefijo: rango contiguo en el vocabulario ordenado
+        int from = lowerBound(query, start, end);
+        for (int term = from; term < terms.length && startsWith(terms[term], query, start, end); term++) {
+            int kind = terms[term].length() == length ? MATCH_EXACT : MATCH_PREFIX;
+            addTermMatches(s, term, kind);
+        }
+
+        if (length < MIN_INFIX_LENGTH) {
+            return;
+        }
+
+        // Términos que comparten trigramas con la consulta, y cuántos comparten
+        s.touchedTermCount = 0;
+        for (int i = start; i + 3 <= end; i++) {
+            int gram = Arrays.binarySearch(gramKeys, gramKey(query[i], query[i + 1], query[i + 2]));
+            if (gram < 0) {
+                continue;
+            }
+            for (int term : gramTerms[gram]) {
+                if (s.termHits[term]++ == 0) {
+                    s.touchedTerms[s.touchedTermCount++] = term;
+                }
+            }
+        }
+
+        // Dentro de la palabra: el término tiene todos los trigramas de la consulta (se confirma
+        // buscando el texto). Aproximado: comparte trigramas y está a distancia de edición acotada;
+        // cada edición puede romper hasta 3 trigramas.
+        int queryGrams = length - 2;
+        boolean fuzzy = length >= MIN_FUZZY_LENGTH;
+        int maxEdits = length <= 6 ? 1 : 2;
+        int minShared = Math.max(1, queryGrams - 3 * maxEdits);
+        for (int i = 0; i < s.touchedTermCount; i++) {
+            int term = s.touchedTerms[i];
+            int hits = s.termHits[term];
+            s.termHits[term] = 0;
+            if (startsWith(terms[term], query, start, end)) {
+                // Ya contado como exacto o prefijo
+                continue;
+            }
+            if (hits >= queryGrams && contains(terms[term], query, start, end)) {
+                addTermMatches(s, term, MATCH_INFIX);
+            } else if (fuzzy && hits >= minShared && withinEdits(s, terms[term], query, start, end, maxEdits)) {
+                addTermMatches(s, term, MATCH_FUZZY);
+            }
+        }
+    }
+
+    private void addTermMatches(Scratch s, int term, int kind) {
+        int[] docs = termDocs[term];
+        int[] weights = termWeights[term];
+        for (int i = 0; i < docs.length; i++) {
+            int doc = docs[i];
+            int score = weights[i] * kind;
+            if (s.best[doc] == 0) {
+                s.bestDocs[s.bestCount++] = doc;
+            }
+            if (score > s.best[doc]) {
+                s.best[doc] = score;
+            }
+        }
+    }
+
+    // Distancia de edición (Levenshtein) contra el término completo o contra su prefijo del
+    // mismo largo que la consulta, para tolerar errores mientras se escribe
+    private static boolean withinEdits(Scratch s, String term, char[] query, int start, int end, int maxEdits) {
+        int queryLength = end - start;
+        int termLength = Math.min(term.length(), queryLength + maxEdits);
+
+        int[] previous = s.editRowA;
+        int[] current = s.editRowB;
+        for (int j = 0; j <= termLength; j++) {
+            previous[j] = j;
+        }
+        int bestPrefix = Integer.MAX_VALUE;
+        for (int i = 1; i <= queryLength; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char q = query[start + i - 1];
+            for (int j = 1; j <= termLength; j++) {
+                int cost = q == term.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        // previous = última fila: cualquier prefijo del término de largo similar sirve
+        for (int j = Math.max(0, queryLength - maxEdits); j <= termLength; j++) {
+            bestPrefix = Math.min(bestPrefix, previous[j]);
+        }
+        return bestPrefix <= maxEdits;
+    }
+
+    private int lowerBound(char[] query, int start, int end) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(terms[mid], query, start, end) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(String term, char[] query, int start, int end) {
+        int length = Math.min(term.length(), end - start);
+        for (int i = 0; i < length; i++) {
+            int diff = term.charAt(i) - query[start + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return term.length() - (end - start);
+    }
+
+    private static boolean startsWith(String term, char[] query, int start, int end) {
+        if (term.length() < end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (term.charAt(i - start) != query[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(String term, char[] query, int start, int end) {
+        int length = end - start;
+        for (int offset = 1; offset + length <= term.length(); offset++) {
+            int i = 0;
+            while (i < length && term.charAt(offset + i) == query[start + i]) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Counting sort descendente: los puntajes son enteros pequeños y acotados.
+    // Estable, así que a igual puntaje se conserva el orden del catálogo.
+    private static void sortByScore(Scratch s, int count) {
+        int[] buckets = s.scoreBuckets;
+        Arrays.fill(buckets, 0);
+        for (int i = 0; i < count; i++) {
+            buckets[s.scores[s.results[i]]]++;
+        }
+        int position = 0;
+        for (int score = MAX_SCORE; score >= 0; score--) {
+            int bucketSize = buckets[score];
+            buckets[score] = position;
+            position += bucketSize;
+        }
+        for (int i = 0; i < count; i++) {
+            int doc = s.results[i];
+            s.sorted[buckets[s.scores[doc]]++] = doc;
+        }
+        System.arraycopy(s.sorted, 0, s.results, 0, count);
+    }
+
+    // Normaliza la consulta en el buffer del hilo y delimita sus términos (sin crear Strings)
+    private static int normalizeQuery(String query, Scratch s) {
+        int length = 0;
+        int termCount = 0;
+        boolean inTerm = false;
+        for (int i = 0; i < query.length() && length < MAX_QUERY_LENGTH; i++) {
+            char c = fold(query.charAt(i));
+            if (c == 0) {
+                if (inTerm) {
+                    s.termEnd[termCount++] = length;
+                    inTerm = false;
+                    if (termCount == MAX_QUERY_TERMS) {
+                        return termCount;
+                    }
+                }
+                continue;
+            }
+            if (!inTerm) {
+                s.termStart[termCount] = length;
+                inTerm = true;
+            }
+            s.query[length++] = c;
+        }
+        if (inTerm) {
+            s.termEnd[termCount++] = length;
+        }
+        return termCount;
+    }
+
+    // Minúscula sin tilde para letras y dígitos; 0 para separadores
+    private static char fold(char c) {
+        if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+            return c;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        switch (c) {
+            case 'á': case 'à': case 'ä': case 'â': case 'Á': case 'À': case 'Ä': case 'Â':
+                return 'a';
+            case 'é': case 'è': case 'ë': case 'ê': case 'É': case 'È': case 'Ë': case 'Ê':
+                return 'e';
+            case 'í': case 'ì': case 'ï': case 'î': case 'Í': case 'Ì': case 'Ï': case 'Î':
+                return 'i';
+            case 'ó': case 'ò': case 'ö': case 'ô': case 'Ó': case 'Ò': case 'Ö': case 'Ô':
+                return 'o';
+            case 'ú': case 'ù': case 'ü': case 'û': case 'Ú': case 'Ù': case 'Ü': case 'Û':
+                return 'u';
+            case 'ñ': case 'Ñ':
+                return 'n';
+            case 'ç': case 'Ç':
+                return 'c';
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    // Otras letras: quitar diacríticos con Normalizer (raro en este catálogo)
+                    String folded = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+                    return Character.toLowerCase(folded.charAt(0));
+                }
+                return 0;
+        }
+    }
+
+    private static String[] sourcesOf(Place place) {
+        return new String[]{
+                place.getName(),
+                place.getWhat3words(),
+                place.getCategory(),
+                place.getBuildingName(),
+                place.getRoomCode(),
+                place.getDescription()
+        };
+    }
+
+    private static final int[] SOURCE_WEIGHTS = {
+            WEIGHT_NAME, WEIGHT_WHAT3WORDS, WEIGHT_CATEGORY, WEIGHT_LOCATION, WEIGHT_LOCATION, WEIGHT_DESCRIPTION
+    };
+
+    private static Document tokenize(String[] sources) {
+        Map<String, Integer> weights = new HashMap<>();
+        StringBuilder term = new StringBuilder();
+        for (int field = 0; field < sources.length; field++) {
+            String value = sources[field];
+            if (value == null) {
+                continue;
+            }
+            for (int i = 0; i <= value.length(); i++) {
+                char c = i < value.length() ? fold(value.charAt(i)) : 0;
+                if (c != 0) {
+                    term.append(c);
+                } else if (term.length() > 0) {
+                    String key = term.toString();
+                    Integer current = weights.get(key);
+                    if (current == null || current < SOURCE_WEIGHTS[field]) {
+                        weights.put(key, SOURCE_WEIGHTS[field]);
+                    }
+                    term.setLength(0);
+                }
+            }
+        }
+        return new Document(sources, weights);
+    }
+
+    private static long gramKey(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private Scratch scratchFor() {
+        Scratch s = scratch.get();
+        if (s == null) {
+            s = new Scratch(places.length, terms.length);
+            scratch.set(s);
+        }
+        return s;
+    }
+
+    // Buffers reutilizados por hilo; se dimensionan una vez por índice
+    private static final class Scratch {
+        final char[] query = new char[MAX_QUERY_LENGTH];
+        final int[] termStart = new int[MAX_QUERY_TERMS];
+        final int[] termEnd = new int[MAX_QUERY_TERMS];
+        final int[] editRowA = new int[MAX_QUERY_LENGTH + 3];
+        final int[] editRowB = new int[MAX_QUERY_LENGTH + 3];
+
+        final int[] scores;
+        final int[] matchedTerms;
+        final int[] best;
+        final int[] bestDocs;
+        final int[] candidates;
+        final int[] results;
+        final int[] sorted;
+        final int[] scoreBuckets = new int[MAX_SCORE + 1];
+        int bestCount;
+        int candidateCount;
+
+        final int[] termHits;
+        final int[] touchedTerms;
+        int touchedTermCount;
+
+        Scratch(int documents, int terms) {
+            scores = new int[documents];
+            matchedTerms = new int[documents];
+            best = new int[documents];
+            bestDocs = new int[documents];
+            candidates = new int[documents];
+            results = new int[documents];
+            sorted = new int[documents];
+            termHits = new int[terms];
+            touchedTerms = new int[terms];
+        }
+    }
+
+    // Solo para depuración
+    @Override
+    public String toString() {
+        return "PlaceSearchIndex{places=" + places.length + ", terms=" + terms.length +
+                ", trigrams=" + gramKeys.length + "}";
+    }
+}
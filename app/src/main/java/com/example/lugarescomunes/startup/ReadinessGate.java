@@ -0,0 +1,84 @@
+package com.example.lugarescomunes.startup;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// Compuerta del splash: se abre en cuanto están listas todas las condiciones pedidas
+// (datos para mostrar, sesión leída) o al cumplirse el tiempo máximo, lo que pase primero.
+// Así la duración del splash depende del trabajo real y no de una constante.
+// Todo corre en el hilo principal; markReady() se puede llamar desde cualquier hilo.
+public class ReadinessGate {
+
+    private static final String TAG = "ReadinessGate";
+
+    public enum Condition {
+        DATA,
+        SESSION
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<Condition> pending;
+    private final long maxWaitMs;
+    private final Runnable onOpen;
+    private final Runnable timeout = () -> open("tiempo máximo");
+
+    private long startedAt;
+    private boolean open = false;
+
+    public ReadinessGate(Set<Condition> required, long maxWaitMs, Runnable onOpen) {
+        this.pending = required.isEmpty() ? EnumSet.noneOf(Condition.class) : EnumSet.copyOf(required);
+        this.maxWaitMs = maxWaitMs;
+        this.onOpen = onOpen;
+    }
+
+    public void start() {
+        startedAt = SystemClock.elapsedRealtime();
+        if (pending.isEmpty()) {
+            open("sin condiciones");
+            return;
+        }
+        mainHandler.postDelayed(timeout, maxWaitMs);
+    }
+
+    public void markReady(Condition condition) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> markReady(condition));
+            return;
+        }
+        if (open || !pending.remove(condition)) {
+            return;
+        }
+        Log.d(TAG, condition + " listo a " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+        if (pending.isEmpty()) {
+            open("todo listo");
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    // La Activity se destruyó antes de abrir: no ejecutar nada más
+    public void cancel() {
+        mainHandler.removeCallbacks(timeout);
+        open = true;
+    }
+
+    private void open(String reason) {
+        if (open) {
+            return;
+        }
+        open = true;
+        mainHandler.removeCallbacks(timeout);
+        if (!pending.isEmpty()) {
+            Log.w(TAG, "Abriendo sin esperar a " + pending);
+        }
+        Log.i(TAG, "Splash cerrado (" + reason + ") a " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+        onOpen.run();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.lugarescomunes.startup;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.example.lugarescomunes.Place;
+import com.example.lugarescomunes.api.PlaceStreamParser;
+import com.example.lugarescomunes.repository.AuthRepository;
+import com.example.lugarescomunes.repository.PlacesDiff;
+import com.example.lugarescomunes.repository.PlacesRepository;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Arranque en frío: la sesión guardada, el cache en disco y el health check salen todos a la vez
+// en cuanto se abre la pantalla principal, en lugar de uno detrás de otro. La descarga de destinos
+// espera solo a la lectura del disco, para revalidar contra esa copia y no contra un cache vacío.
+// El health check ya no condiciona la descarga: solo sirve para elegir el mensaje si esta falla.
+// Registra cuánto tarda cada fase desde que arrancó el proceso, para detectar regresiones.
+public class StartupOrchestrator {
+
+    private static final String TAG = "StartupOrchestrator";
+
+    public enum Phase {
+        SESSION_RESTORED,
+        CACHE_LOADED,
+        FIRST_FRAME,
+        SPLASH_DISMISSED,
+        FIRST_DATA,
+        NETWORK_DATA,
+        HEALTH_CHECKED
+    }
+
+    private static StartupOrchestrator instance;
+
+    // Momento en que arrancó el proceso (reloj de elapsedRealtime)
+    private final long processStart = Process.getStartElapsedRealtime();
+    private final Map<Phase, Long> timings = new EnumMap<>(Phase.class);
+
+    private boolean started = false;
+    private PlacesRepository placesRepository;
+    private CompletableFuture<AuthRepository> session;
+    private CompletableFuture<List<Place>> cachedPlaces;
+    // La descarga y el health check especulativos se entregan una sola vez; después cada
+    // pantalla pide los suyos (el SingleFlight del repositorio junta las descargas simultáneas)
+    private CompletableFuture<PlacesDiff> placesFetch;
+    private final CompletableFuture<List<Place>> firstPlaces = new CompletableFuture<>();
+    private CompletableFuture<Boolean> health;
+
+    private StartupOrchestrator() {
+    }
+
+    public static synchronized StartupOrchestrator getInstance() {
+        if (instance == null) {
+            instance = new StartupOrchestrator();
+        }
+        return instance;
+    }
+
+    // Solo la primera llamada del proceso hace algo; recrear la Activity no repite el arranque
+    public synchronized void start(Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+        Context appContext = context.getApplicationContext();
+
+        // La sesión se lee de disco fuera del hilo principal (DataStore)
+        session = AuthRepository.getInstance(appContext).whenSessionLoaded();
+        session.thenRun(() -> mark(Phase.SESSION_RESTORED));
+
+        placesRepository = PlacesRepository.getInstance(appContext);
+        cachedPlaces = placesRepository.loadCachedPlaces();
+        cachedPlaces.thenRun(() -> mark(Phase.CACHE_LOADED));
+
+        // Descarga especulativa: los destinos empiezan a llegar mientras se infla la pantalla.
+        // Sale después del disco: con el cache vacío se descartarían los validadores (sin 304)
+        // y el diff marcaría como nuevos todos los destinos ya guardados.
+        placesFetch = cachedPlaces.thenCompose(cached -> placesRepository.refreshPlaces(firstPlaces::complete));
+        placesFetch.thenRun(() -> mark(Phase.NETWORK_DATA));
+
+        health = placesRepository.checkApiHealth();
+        health.thenRun(() -> mark(Phase.HEALTH_CHECKED));
+
+        Log.d(TAG, "Arranque iniciado a " + sinceProcessStart() + "ms del inicio del proceso");
+    }
+
+    public CompletableFuture<AuthRepository> session() {
+        return session;
+    }
+
+    public CompletableFuture<List<Place>> cachedPlaces() {
+        return cachedPlaces;
+    }
+
+    // La primera vez devuelve la descarga que ya está en curso (y le pasa al listener el primer
+    // lote si llega o ya llegó); después hace una descarga normal
+    public synchronized CompletableFuture<PlacesDiff> takePlacesFetch(PlaceStreamParser.Listener firstPlacesListener) {
+        if (placesFetch == null) {
+            return placesRepository.refreshPlaces(firstPlacesListener);
+        }
+        CompletableFuture<PlacesDiff> fetch = placesFetch;
+        placesFetch = null;
+        firstPlaces.thenAccept(firstPlacesListener::onFirstPlaces);
+        return fetch;
+    }
+
+    // Resultado del health check; no bloquea nada, solo se consulta si la descarga falla
+    public synchronized CompletableFuture<Boolean> takeHealth() {
+        if (health == null) {
+            return placesRepository.checkApiHealth();
+        }
+        CompletableFuture<Boolean> result = health;
+        health = null;
+        return result;
+    }
+
+    // Primer frame dibujado de la pantalla principal
+    public void watchFirstFrame(View view) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                mark(Phase.FIRST_FRAME);
+                return true;
+            }
+        });
+    }
+
+    // Primeros destinos visibles (de cache o de red): la pantalla ya es útil
+    public void onFirstDataShown(Activity activity) {
+        if (mark(Phase.FIRST_DATA)) {
+            activity.reportFullyDrawn();
+        }
+    }
+
+    // Registra la fase una sola vez; devuelve false si ya estaba registrada
+    public boolean mark(Phase phase) {
+        long elapsed = sinceProcessStart();
+        synchronized (timings) {
+            if (timings.containsKey(phase)) {
+                return false;
+            }
+            timings.put(phase, elapsed);
+        }
+        Log.i(TAG, "Arranque: " + phase + " a " + elapsed + "ms");
+        if (phase == Phase.NETWORK_DATA || phase == Phase.FIRST_DATA) {
+            logSummaryIfComplete();
+        }
+        return true;
+    }
+
+    // Milisegundos desde el inicio del proceso hasta cada fase alcanzada
+    public Map<Phase, Long> getTimings() {
+        synchronized (timings) {
+            return Collections.unmodifiableMap(new EnumMap<>(timings));
+        }
+    }
+
+    private void logSummaryIfComplete() {
+        Map<Phase, Long> snapshot = getTimings();
+        if (!snapshot.containsKey(Phase.FIRST_DATA) || !snapshot.containsKey(Phase.NETWORK_DATA)) {
+            return;
+        }
+        StringBuilder summary = new StringBuilder("Resumen de arranque:");
+        for (Map.Entry<Phase, Long> entry : snapshot.entrySet()) {
+            summary.append(' ').append(entry.getKey().name().toLowerCase()).append('=')
+                    .append(entry.getValue()).append("ms");
+        }
+        Log.i(TAG, summary.toString());
+    }
+
+    private long sinceProcessStart() {
+        return SystemClock.elapsedRealtime() - processStart;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.lugarescomunes.work;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.lugarescomunes.repository.RoutesRepository;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// Descarga en segundo plano los paquetes offline (rutas + puntos) de los destinos indicados,
+// para que RoutesActivity y la navegación funcionen sin señal.
+public class OfflineRoutesWorker extends Worker {
+
+    private static final String TAG = "OfflineRoutesWorker";
+    private static final String KEY_DESTINATION_IDS = "destination_ids";
+    private static final String UNIQUE_WORK_PREFIX = "offline-routes-";
+    private static final long DOWNLOAD_TIMEOUT_SECONDS = 60;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public OfflineRoutesWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // Un trabajo único por destino: pedirlo varias veces no duplica la descarga
+    public static void enqueue(Context context, Collection<String> destinationIds) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        WorkManager workManager = WorkManager.getInstance(context);
+        for (String destinationId : destinationIds) {
+            if (destinationId == null || destinationId.trim().isEmpty()) {
+                continue;
+            }
+            OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OfflineRoutesWorker.class)
+                    .setConstraints(constraints)
+                    .setInputData(new Data.Builder()
+                            .putStringArray(KEY_DESTINATION_IDS, new String[]{destinationId})
+                            .build())
+                    .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                    .build();
+            workManager.enqueueUniqueWork(UNIQUE_WORK_PREFIX + destinationId, ExistingWorkPolicy.KEEP, request);
+        }
+        Log.d(TAG, "Precarga offline programada para " + destinationIds.size() + " destinos");
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String[] destinationIds = getInputData().getStringArray(KEY_DESTINATION_IDS);
+        if (destinationIds == null || destinationIds.length == 0) {
+            return Result.success();
+        }
+
+        RoutesRepository routesRepository = RoutesRepository.getInstance(getApplicationContext());
+        int failed = 0;
+        for (String destinationId : destinationIds) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            try {
+                int routes = routesRepository.downloadOfflinePackage(destinationId)
+                        .get(DOWNLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                Log.i(TAG, "Paquete offline listo para " + destinationId + " (" + routes + " rutas)");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            } catch (Exception e) {
+                Log.w(TAG, "No se pudo descargar el paquete offline de " + destinationId, e);
+                failed++;
+            }
+        }
+
+        if (failed == 0) {
+            return Result.success();
+        }
+        return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.lugarescomunes.work;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.lugarescomunes.repository.AuthRepository;
+import com.example.lugarescomunes.repository.OutboxRepository;
+
+import java.util.concurrent.TimeUnit;
+
+// Vacía la cola de escrituras pendientes (OutboxRepository) cuando hay red.
+public class OutboxWorker extends Worker {
+
+    private static final String TAG = "OutboxWorker";
+    private static final String UNIQUE_WORK_NAME = "outbox-flush";
+    // Los reintentos con backoff van aparte: un reintento lejano no debe demorar una escritura nueva
+    private static final String RETRY_WORK_NAME = "outbox-retry";
+    // Espera antes de enviar: las escrituras de una misma ráfaga salen juntas
+    private static final long BATCH_WINDOW_MS = 5_000;
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // Con un envío ya pendiente o corriendo no se hace nada: ese envío toma de la base todo lo
+    // que esté listo, incluida la escritura nueva. REPLACE cancelaba un lote a medio enviar y,
+    // con escrituras seguidas (calificaciones durante la navegación), lo postergaba sin fin.
+    public static void schedule(Context context) {
+        enqueue(context, UNIQUE_WORK_NAME, BATCH_WINDOW_MS, ExistingWorkPolicy.KEEP);
+    }
+
+    private static void enqueue(Context context, String name, long delayMs, ExistingWorkPolicy policy) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(name, policy, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        // Sin la sesión cargada las escrituras saldrían sin token
+        AuthRepository.getInstance(getApplicationContext()).whenSessionLoaded().join();
+
+        long nextDelay = OutboxRepository.getInstance(getApplicationContext()).flush();
+        if (nextDelay >= 0) {
+            // Quedan reintentos con backoff propio: un solo envío programado para el más próximo
+            Log.d(TAG, "Próximo envío de la cola en " + (nextDelay / 1000) + "s");
+            enqueue(getApplicationContext(), RETRY_WORK_NAME, Math.max(nextDelay, BATCH_WINDOW_MS),
+                    ExistingWorkPolicy.REPLACE);
+        }
+        return Result.success();
+    }
+}
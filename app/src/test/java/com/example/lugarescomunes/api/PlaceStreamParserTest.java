@@ -0,0 +1,161 @@
+package com.example.lugarescomunes.api;
+
+import com.example.lugarescomunes.Place;
+import com.example.lugarescomunes.PlaceType;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlaceStreamParserTest {
+
+    private static final String FULL_PLACE = "{"
+            + "\"id\":\"p1\",\"name\":\"Biblioteca Central\",\"category\":\"Estudio\","
+            + "\"description\":\"Sala de lectura\",\"what3words\":\"casa.perro.gato\","
+            + "\"latitude\":-0.2101,\"longitude\":-78.4891,\"isAvailable\":false,"
+            + "\"placeType\":\"library\",\"capacity\":120,\"schedule\":\"7-21\","
+            + "\"imageUrl\":\"https://example.com/b.png\",\"buildingName\":\"Edificio A\","
+            + "\"floorNumber\":2,\"roomCode\":\"A-201\",\"equipment\":[\"wifi\",null,\"proyector\"],"
+            + "\"accessibilityFeatures\":[\"rampa\"],\"createdAt\":\"2024-01-01\","
+            + "\"updatedAt\":\"2024-02-01\",\"unknownField\":{\"nested\":[1,2]}"
+            + "}";
+
+    private static PlaceStreamParser.Result parse(String json) throws IOException {
+        return PlaceStreamParser.parse(new StringReader(json), 0, null);
+    }
+
+    @Test
+    public void parse_readsAllFields() throws IOException {
+        PlaceStreamParser.Result result = parse("{\"success\":true,\"message\":\"ok\",\"data\":[" + FULL_PLACE + "]}");
+
+        assertTrue(result.isSuccess());
+        assertEquals("ok", result.getMessage());
+        assertEquals(1, result.getPlaces().size());
+
+        Place place = result.getPlaces().get(0);
+        assertEquals("p1", place.getId());
+        assertEquals("Biblioteca Central", place.getName());
+        assertEquals("Estudio", place.getCategory());
+        assertEquals("Sala de lectura", place.getDescription());
+        assertEquals("casa.perro.gato", place.getWhat3words());
+        assertEquals(-0.2101, place.getLatitude(), 1e-9);
+        assertEquals(-78.4891, place.getLongitude(), 1e-9);
+        assertFalse(place.isAvailable());
+        assertEquals(PlaceType.LIBRARY, place.getType());
+        assertEquals(120, place.getCapacity());
+        assertEquals("7-21", place.getSchedule());
+        assertEquals("https://example.com/b.png", place.getImageUrl());
+        assertEquals("Edificio A", place.getBuildingName());
+        assertEquals(Integer.valueOf(2), place.getFloorNumber());
+        assertEquals("A-201", place.getRoomCode());
+        assertEquals(Arrays.asList("wifi", "proyector"), place.getEquipment());
+        assertEquals(Arrays.asList("rampa"), place.getAccessibilityFeatures());
+        assertEquals("2024-01-01", place.getCreatedAt());
+        assertEquals("2024-02-01", place.getUpdatedAt());
+    }
+
+    @Test
+    public void parse_missingOrNullFieldsUseDefaults() throws IOException {
+        PlaceStreamParser.Result result = parse(
+                "{\"success\":true,\"data\":[{\"id\":\"p2\",\"name\":null,\"placeType\":\"NO_EXISTE\"},{\"id\":\"p3\"}]}");
+
+        assertEquals(2, result.getPlaces().size());
+        Place first = result.getPlaces().get(0);
+        assertNull(first.getName());
+        assertTrue(first.isAvailable());
+        assertEquals(PlaceType.SERVICE, first.getType());
+        assertEquals(PlaceType.SERVICE, result.getPlaces().get(1).getType());
+    }
+
+    @Test
+    public void parse_failedResponseKeepsMessage() throws IOException {
+        PlaceStreamParser.Result result = parse("{\"data\":null,\"success\":false,\"message\":\"Sin permisos\"}");
+
+        assertFalse(result.isSuccess());
+        assertEquals("Sin permisos", result.getMessage());
+        assertTrue(result.getPlaces().isEmpty());
+    }
+
+    @Test
+    public void parse_skipsNonObjectArrayEntries() throws IOException {
+        PlaceStreamParser.Result result = parse("{\"success\":true,\"data\":[1,\"x\",{\"id\":\"p4\"},null]}");
+
+        assertEquals(1, result.getPlaces().size());
+        assertEquals("p4", result.getPlaces().get(0).getId());
+    }
+
+    @Test
+    public void parse_deliversFirstBatchOnceBeforeTheEnd() throws IOException {
+        StringBuilder json = new StringBuilder("{\"success\":true,\"data\":[");
+        for (int i = 0; i < 5; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"p").append(i).append("\"}");
+        }
+        json.append("]}");
+
+        List<List<Place>> batches = new ArrayList<>();
+        PlaceStreamParser.Result result = PlaceStreamParser.parse(new StringReader(json.toString()), 2, batches::add);
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("p0", batches.get(0).get(0).getId());
+        assertEquals(5, result.getPlaces().size());
+    }
+
+    @Test
+    public void parse_shortListIsDeliveredAsFirstBatch() throws IOException {
+        List<List<Place>> batches = new ArrayList<>();
+        PlaceStreamParser.parse(new StringReader("{\"success\":true,\"data\":[{\"id\":\"p1\"}]}"), 20, batches::add);
+
+        assertEquals(1, batches.size());
+        assertEquals(1, batches.get(0).size());
+    }
+
+    @Test
+    public void parse_failedResponseDeliversNothing() throws IOException {
+        List<List<Place>> batches = new ArrayList<>();
+        PlaceStreamParser.Result result = PlaceStreamParser.parse(
+                new StringReader("{\"success\":false,\"data\":[{\"id\":\"p1\"}]}"), 20, batches::add);
+
+        assertTrue(batches.isEmpty());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    public void parse_dataBeforeFailedSuccessDeliversNothing() throws IOException {
+        List<List<Place>> batches = new ArrayList<>();
+        PlaceStreamParser.Result result = PlaceStreamParser.parse(
+                new StringReader("{\"data\":[{\"id\":\"p1\"},{\"id\":\"p2\"}],\"success\":false}"), 1, batches::add);
+
+        assertTrue(batches.isEmpty());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    public void parse_dataBeforeSuccessSkipsEarlyDeliveryButKeepsPlaces() throws IOException {
+        List<List<Place>> batches = new ArrayList<>();
+        PlaceStreamParser.Result result = PlaceStreamParser.parse(
+                new StringReader("{\"data\":[{\"id\":\"p1\"},{\"id\":\"p2\"}],\"success\":true}"), 1, batches::add);
+
+        // Sin saber si la respuesta es exitosa no se entrega nada por adelantado
+        assertTrue(batches.isEmpty());
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getPlaces().size());
+    }
+
+    @Test
+    public void parse_emptyListDeliversNothing() throws IOException {
+        List<List<Place>> batches = new ArrayList<>();
+        PlaceStreamParser.parse(new StringReader("{\"success\":true,\"data\":[]}"), 20, batches::add);
+
+        assertTrue(batches.isEmpty());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.lugarescomunes.api;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.*;
+
+public class TokenAuthenticatorTest {
+
+    private static String jwt(String claims) {
+        String header = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + ".firma";
+    }
+
+    private static Response response(int code, Response prior) {
+        return new Response.Builder()
+                .request(new Request.Builder().url("https://api.example.com/places").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .priorResponse(prior)
+                .build();
+    }
+
+    @Test
+    public void expiresAt_readsExpClaimInMillis() {
+        assertEquals(1_700_000_000_000L, TokenAuthenticator.expiresAt(jwt("{\"sub\":\"u1\",\"exp\":1700000000}")));
+    }
+
+    @Test
+    public void expiresAt_acceptsUrlSafeAlphabetWithoutPadding() {
+        // Caracteres que en Base64 URL-safe salen como '-' y '_', y largo que necesitaría relleno
+        String claims = "{\"sub\":\"¿?>>~~\",\"exp\":1700000001}";
+        String token = jwt(claims);
+        String payload = token.split("\\.")[1];
+        assertTrue(payload.contains("-") || payload.contains("_"));
+        assertNotEquals(0, payload.length() % 4);
+
+        assertEquals(1_700_000_001_000L, TokenAuthenticator.expiresAt(token));
+    }
+
+    @Test
+    public void expiresAt_invalidTokensReturnMinusOne() {
+        assertEquals(-1, TokenAuthenticator.expiresAt(null));
+        assertEquals(-1, TokenAuthenticator.expiresAt("sin-puntos"));
+        assertEquals(-1, TokenAuthenticator.expiresAt("a.%%%.c"));
+        assertEquals(-1, TokenAuthenticator.expiresAt(jwt("no es json")));
+        assertEquals(-1, TokenAuthenticator.expiresAt(jwt("{\"sub\":\"u1\"}")));
+        assertEquals(-1, TokenAuthenticator.expiresAt(jwt("{\"exp\":{\"valor\":1}}")));
+    }
+
+    @Test
+    public void retryDelay_growsAndIsCapped() {
+        assertEquals(TimeUnit.SECONDS.toMillis(15), TokenAuthenticator.retryDelay(1));
+        assertEquals(TimeUnit.SECONDS.toMillis(30), TokenAuthenticator.retryDelay(2));
+        assertEquals(TimeUnit.SECONDS.toMillis(60), TokenAuthenticator.retryDelay(3));
+        assertEquals(TimeUnit.MINUTES.toMillis(5), TokenAuthenticator.retryDelay(10));
+        assertEquals(TimeUnit.MINUTES.toMillis(5), TokenAuthenticator.retryDelay(1000));
+    }
+
+    @Test
+    public void unauthorizedCount_countsOnly401s() {
+        Response first = response(401, null);
+        assertEquals(1, TokenAuthenticator.unauthorizedCount(first));
+
+        // Una redirección antes del 401 no cuenta como reintento
+        Response redirected = response(401, response(302, null));
+        assertEquals(1, TokenAuthenticator.unauthorizedCount(redirected));
+
+        // Ya se repitió una vez con token renovado
+        Response retried = response(401, response(401, null));
+        assertEquals(2, TokenAuthenticator.unauthorizedCount(retried));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.lugarescomunes.location;
+
+import com.example.lugarescomunes.Place;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PlaceSpatialIndexTest {
+
+    // Campus de referencia (Quito)
+    private static final double CENTER_LAT = -0.2101;
+    private static final double CENTER_LNG = -78.4891;
+
+    private static Place place(String id, double latitude, double longitude) {
+        Place place = new Place();
+        place.setId(id);
+        place.setLatitude(latitude);
+        place.setLongitude(longitude);
+        return place;
+    }
+
+    // Lugares repartidos en ~1 km alrededor del centro
+    private static List<Place> campus(int count, long seed) {
+        Random random = new Random(seed);
+        List<Place> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            places.add(place("p" + i,
+                    CENTER_LAT + (random.nextDouble() - 0.5) * 0.01,
+                    CENTER_LNG + (random.nextDouble() - 0.5) * 0.01));
+        }
+        return places;
+    }
+
+    private static List<String> bruteForceNearest(List<Place> places, double latitude, double longitude, int k) {
+        List<Place> sorted = new ArrayList<>(places);
+        Collections.sort(sorted, Comparator.comparingDouble(p ->
+                PlaceSpatialIndex.distanceMeters(latitude, longitude, p.getLatitude(), p.getLongitude())));
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, sorted.size()); i++) {
+            ids.add(sorted.get(i).getId());
+        }
+        return ids;
+    }
+
+    private static List<String> ids(List<PlaceSpatialIndex.Match> matches) {
+        List<String> ids = new ArrayList<>(matches.size());
+        for (PlaceSpatialIndex.Match match : matches) {
+            ids.add(match.getPlace().getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        List<Place> places = campus(500, 7);
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(places);
+
+        Random random = new Random(11);
+        for (int query = 0; query < 50; query++) {
+            double latitude = CENTER_LAT + (random.nextDouble() - 0.5) * 0.012;
+            double longitude = CENTER_LNG + (random.nextDouble() - 0.5) * 0.012;
+            assertEquals(bruteForceNearest(places, latitude, longitude, 5), ids(index.nearest(latitude, longitude, 5)));
+        }
+    }
+
+    @Test
+    public void nearest_isSortedByDistance() {
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(campus(200, 3));
+
+        List<PlaceSpatialIndex.Match> matches = index.nearest(CENTER_LAT, CENTER_LNG, 20);
+        assertEquals(20, matches.size());
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i - 1).getDistanceMeters() <= matches.get(i).getDistanceMeters());
+        }
+    }
+
+    @Test
+    public void nearest_kLargerThanSizeReturnsEveryPlace() {
+        List<Place> places = campus(30, 5);
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(places);
+
+        List<PlaceSpatialIndex.Match> matches = index.nearest(CENTER_LAT, CENTER_LNG, 100);
+        assertEquals(30, matches.size());
+        assertEquals(bruteForceNearest(places, CENTER_LAT, CENTER_LNG, 30), ids(matches));
+    }
+
+    @Test
+    public void nearest_includesOutliers() {
+        List<Place> places = campus(100, 9);
+        // Un lugar a cientos de kilómetros (p. ej. coordenadas mal cargadas) no agranda la grilla
+        Place far = place("lejos", 40.4168, -3.7038);
+        places.add(far);
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(places);
+
+        assertEquals(101, index.size());
+        // Consultando junto al lugar lejano, es el más cercano
+        List<PlaceSpatialIndex.Match> matches = index.nearest(40.4168, -3.7039, 1);
+        assertEquals(Collections.singletonList("lejos"), ids(matches));
+        // Y desde el campus queda último
+        List<PlaceSpatialIndex.Match> all = index.nearest(CENTER_LAT, CENTER_LNG, 101);
+        assertEquals("lejos", all.get(all.size() - 1).getPlace().getId());
+    }
+
+    @Test
+    public void withinRadius_matchesBruteForce() {
+        List<Place> places = campus(500, 13);
+        places.add(place("lejos", 40.4168, -3.7038));
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(places);
+
+        double radius = 250;
+        Set<String> expected = new HashSet<>();
+        for (Place place : places) {
+            if (PlaceSpatialIndex.distanceMeters(CENTER_LAT, CENTER_LNG,
+                    place.getLatitude(), place.getLongitude()) <= radius) {
+                expected.add(place.getId());
+            }
+        }
+
+        List<PlaceSpatialIndex.Match> matches = index.withinRadius(CENTER_LAT, CENTER_LNG, radius);
+        assertEquals(expected, new HashSet<>(ids(matches)));
+        for (PlaceSpatialIndex.Match match : matches) {
+            assertTrue(match.getDistanceMeters() <= radius);
+        }
+    }
+
+    @Test
+    public void withinRadius_reachesOutliers() {
+        List<Place> places = campus(50, 17);
+        places.add(place("lejos", 40.4168, -3.7038));
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(places);
+
+        assertEquals(Collections.singletonList("lejos"), ids(index.withinRadius(40.4168, -3.7038, 100)));
+    }
+
+    @Test
+    public void build_skipsPlacesWithoutCoordinates() {
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(Arrays.asList(
+                place("sin", 0, 0), place("con", CENTER_LAT, CENTER_LNG)));
+
+        assertEquals(1, index.size());
+        assertEquals(Collections.singletonList("con"), ids(index.nearest(CENTER_LAT, CENTER_LNG, 5)));
+    }
+
+    @Test
+    public void emptyIndexReturnsNothing() {
+        PlaceSpatialIndex index = PlaceSpatialIndex.build(new ArrayList<>());
+
+        assertTrue(index.isEmpty());
+        assertTrue(index.nearest(CENTER_LAT, CENTER_LNG, 5).isEmpty());
+        assertTrue(index.withinRadius(CENTER_LAT, CENTER_LNG, 1000).isEmpty());
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.lugarescomunes.models;
+
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactPolylineTest {
+
+    private static final double E7_TOLERANCE = 1e-7;
+
+    private static RoutePointResponse point(String id, double latitude, double longitude, Integer stepOrder,
+                                            String instruction, String landmark, Integer seconds) {
+        RoutePointResponse point = new RoutePointResponse();
+        point.setId(id);
+        point.setLatitude(BigDecimal.valueOf(latitude));
+        point.setLongitude(BigDecimal.valueOf(longitude));
+        point.setStepOrder(stepOrder);
+        point.setInstruction(instruction);
+        point.setLandmark(landmark);
+        point.setEstimatedTimeFromPreviousSeconds(seconds);
+        return point;
+    }
+
+    // Más de un intervalo de checkpoints, con textos repetidos y campos ausentes
+    private static List<RoutePointResponse> route(int count) {
+        List<RoutePointResponse> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(point(i % 3 == 0 ? "pt" + i : null,
+                    -0.2101 + i * 0.0000731, -78.4891 - i * 0.0000417, i,
+                    i % 5 == 0 ? "Gire a la derecha" : null,
+                    i % 7 == 0 ? "Junto a la cafetería" : null,
+                    i % 2 == 0 ? i * 3 : null));
+        }
+        return points;
+    }
+
+    private static void assertSamePoints(List<RoutePointResponse> expected, CompactPolyline polyline) {
+        assertEquals(expected.size(), polyline.size());
+        for (int i = 0; i < expected.size(); i++) {
+            RoutePointResponse point = expected.get(i);
+            assertEquals(point.getLatitude().doubleValue(), polyline.getLatitude(i), E7_TOLERANCE);
+            assertEquals(point.getLongitude().doubleValue(), polyline.getLongitude(i), E7_TOLERANCE);
+            assertEquals(point.getStepOrder(), polyline.getStepOrder(i));
+            assertEquals(point.getInstruction(), polyline.getInstruction(i));
+            assertEquals(point.getLandmark(), polyline.getLandmark(i));
+            assertEquals(point.getEstimatedTimeFromPreviousSeconds(), polyline.getSecondsFromPrevious(i));
+            assertEquals(point.getId(), polyline.getPointId(i));
+        }
+    }
+
+    @Test
+    public void fromPoints_keepsEveryField() {
+        List<RoutePointResponse> points = route(100);
+
+        assertSamePoints(points, CompactPolyline.fromPoints(points));
+    }
+
+    @Test
+    public void encodeDecode_roundTrip() {
+        List<RoutePointResponse> points = route(100);
+        CompactPolyline original = CompactPolyline.fromPoints(points);
+
+        byte[] bytes = original.encode();
+        CompactPolyline decoded = CompactPolyline.decode(ByteBuffer.wrap(bytes));
+
+        assertSamePoints(points, decoded);
+        assertArrayEquals(bytes, decoded.encode());
+    }
+
+    @Test
+    public void decode_readsFromCurrentPositionAndAdvances() {
+        CompactPolyline first = CompactPolyline.fromPoints(route(40));
+        CompactPolyline second = CompactPolyline.fromPoints(route(3));
+        byte[] a = first.encode();
+        byte[] b = second.encode();
+        ByteBuffer buffer = ByteBuffer.allocate(a.length + b.length + 1);
+        buffer.put((byte) 7).put(a).put(b).flip();
+        buffer.get();
+
+        assertEquals(40, CompactPolyline.decode(buffer).size());
+        assertEquals(3, CompactPolyline.decode(buffer).size());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void fromPoints_sortsByStepOrderWithMissingLast() {
+        List<RoutePointResponse> points = Arrays.asList(
+                point("c", -0.3, -78.3, null, null, null, null),
+                point("b", -0.2, -78.2, 2, null, null, null),
+                point("a", -0.1, -78.1, 1, null, null, null));
+
+        CompactPolyline polyline = CompactPolyline.fromPoints(points);
+
+        assertEquals("a", polyline.getPointId(0));
+        assertEquals("b", polyline.getPointId(1));
+        assertEquals("c", polyline.getPointId(2));
+        assertNull(polyline.getStepOrder(2));
+    }
+
+    @Test
+    public void fromPoints_skipsPointsWithoutCoordinates() {
+        RoutePointResponse noLatitude = point("x", 0, -78.15, 2, "Sin latitud", null, null);
+        noLatitude.setLatitude(null);
+        RoutePointResponse noLongitude = point("y", -0.15, 0, 3, null, null, null);
+        noLongitude.setLongitude(null);
+        List<RoutePointResponse> points = Arrays.asList(
+                point("a", -0.1, -78.1, 1, null, null, null),
+                noLatitude,
+                null,
+                noLongitude,
+                point("b", -0.2, -78.2, 4, null, null, null));
+
+        CompactPolyline polyline = CompactPolyline.fromPoints(points);
+
+        assertEquals(2, polyline.size());
+        assertEquals("a", polyline.getPointId(0));
+        assertEquals("b", polyline.getPointId(1));
+        assertEquals(-0.2, polyline.getLatitude(1), E7_TOLERANCE);
+        assertSame(CompactPolyline.EMPTY, CompactPolyline.fromPoints(Collections.singletonList(noLatitude)));
+    }
+
+    @Test
+    public void toRoutePoints_matchesSource() {
+        List<RoutePointResponse> points = route(50);
+
+        List<RoutePointResponse> restored = CompactPolyline.fromPoints(points).toRoutePoints();
+
+        assertSamePoints(restored, CompactPolyline.fromPoints(points));
+        assertEquals(points.size(), restored.size());
+        assertEquals(points.get(49).getLatitude().doubleValue(), restored.get(49).getLatitude().doubleValue(),
+                E7_TOLERANCE);
+    }
+
+    @Test
+    public void forEachPointAndCopyCoordinatesAgreeWithRandomAccess() {
+        CompactPolyline polyline = CompactPolyline.fromPoints(route(70));
+        double[] latitudes = new double[polyline.size()];
+        double[] longitudes = new double[polyline.size()];
+        polyline.copyCoordinates(latitudes, longitudes);
+
+        polyline.forEachPoint((index, latitude, longitude) -> {
+            assertEquals(polyline.getLatitude(index), latitude, 0);
+            assertEquals(polyline.getLongitude(index), longitude, 0);
+            assertEquals(latitudes[index], latitude, 0);
+            assertEquals(longitudes[index], longitude, 0);
+        });
+    }
+
+    @Test
+    public void emptyInputGivesEmptyPolyline() {
+        assertSame(CompactPolyline.EMPTY, CompactPolyline.fromPoints(null));
+        assertSame(CompactPolyline.EMPTY, CompactPolyline.fromPoints(Collections.emptyList()));
+        assertSame(CompactPolyline.EMPTY, CompactPolyline.decode(ByteBuffer.wrap(CompactPolyline.EMPTY.encode())));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getLatitude_outOfRangeThrows() {
+        CompactPolyline.fromPoints(route(3)).getLatitude(3);
+    }
+}
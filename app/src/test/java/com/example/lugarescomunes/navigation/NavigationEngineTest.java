@@ -0,0 +1,214 @@
+package com.example.lugarescomunes.navigation;
+
+import com.example.lugarescomunes.models.CompactPolyline;
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NavigationEngineTest {
+
+    private static final double ORIGIN_LAT = -0.2;
+    private static final double ORIGIN_LNG = -78.49;
+    private static final double METERS_PER_DEGREE_LAT = 111_320.0;
+    private static final double METERS_PER_DEGREE_LNG = METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians(ORIGIN_LAT));
+    private static final float ACCURACY = 5f;
+
+    // Ruta armada en metros (x hacia el este, y hacia el norte) a partir del origen
+    private static final class RouteBuilder {
+        private final List<RoutePointResponse> points = new ArrayList<>();
+
+        RouteBuilder point(double x, double y, String instruction) {
+            RoutePointResponse point = new RoutePointResponse();
+            point.setLatitude(BigDecimal.valueOf(lat(y)));
+            point.setLongitude(BigDecimal.valueOf(lng(x)));
+            point.setStepOrder(points.size());
+            point.setInstruction(instruction);
+            points.add(point);
+            return this;
+        }
+
+        NavigationEngine build() {
+            return new NavigationEngine(CompactPolyline.fromPoints(points));
+        }
+    }
+
+    private static double lat(double y) {
+        return ORIGIN_LAT + y / METERS_PER_DEGREE_LAT;
+    }
+
+    private static double lng(double x) {
+        return ORIGIN_LNG + x / METERS_PER_DEGREE_LNG;
+    }
+
+    private static NavigationEngine.Update at(NavigationEngine engine, double x, double y) {
+        return engine.update(lat(y), lng(x), ACCURACY);
+    }
+
+    // 200 m hacia el este con puntos cada 10 m y un giro anunciado a los 100 m
+    private static NavigationEngine straightRoute() {
+        RouteBuilder route = new RouteBuilder();
+        for (int x = 0; x <= 200; x += 10) {
+            route.point(x, 0, x == 100 ? "Gire a la izquierda" : null);
+        }
+        return route.build();
+    }
+
+    // Cuadrado de 100 m de lado que termina donde empieza
+    private static NavigationEngine loopRoute() {
+        RouteBuilder route = new RouteBuilder();
+        double[][] corners = {{0, 0}, {100, 0}, {100, 100}, {0, 100}, {0, 0}};
+        for (int side = 0; side < 4; side++) {
+            for (int step = 0; step < 10; step++) {
+                double f = step / 10.0;
+                route.point(corners[side][0] + (corners[side + 1][0] - corners[side][0]) * f,
+                        corners[side][1] + (corners[side + 1][1] - corners[side][1]) * f, null);
+            }
+        }
+        return route.point(0, 0, null).build();
+    }
+
+    @Test
+    public void update_snapsToRouteAndTracksProgress() {
+        NavigationEngine engine = straightRoute();
+        assertEquals(NavigationEngine.State.WAITING, engine.getState());
+        assertEquals(200, engine.getTotalMeters(), 0.5);
+
+        NavigationEngine.Update update = at(engine, 50, 4);
+
+        assertEquals(NavigationEngine.State.ON_ROUTE, update.getState());
+        assertEquals(50, update.getTravelledMeters(), 0.5);
+        assertEquals(150, update.getRemainingMeters(), 0.5);
+        assertEquals(4, update.getDistanceFromRoute(), 0.5);
+        assertEquals(lat(0), update.getSnappedLatitude(), 1e-6);
+        assertEquals("Gire a la izquierda", update.getInstruction());
+        assertEquals(50, update.getDistanceToInstruction(), 0.5);
+    }
+
+    @Test
+    public void update_instructionAdvancesOncePassed() {
+        NavigationEngine engine = straightRoute();
+        at(engine, 90, 0);
+        assertEquals("Gire a la izquierda", engine.getLastUpdate().getInstruction());
+
+        NavigationEngine.Update update = at(engine, 120, 0);
+
+        assertNull(update.getInstruction());
+    }
+
+    @Test
+    public void update_singleGpsJumpDoesNotLeaveRoute() {
+        NavigationEngine engine = straightRoute();
+        at(engine, 40, 0);
+
+        assertEquals(NavigationEngine.State.ON_ROUTE, at(engine, 50, 80).getState());
+        assertEquals(NavigationEngine.State.ON_ROUTE, at(engine, 50, 0).getState());
+    }
+
+    @Test
+    public void update_consecutiveFarFixesGoOffRouteAndBack() {
+        NavigationEngine engine = straightRoute();
+        at(engine, 40, 0);
+
+        at(engine, 50, 60);
+        at(engine, 55, 65);
+        NavigationEngine.Update off = at(engine, 60, 70);
+        assertEquals(NavigationEngine.State.OFF_ROUTE, off.getState());
+        assertTrue(off.getDistanceFromRoute() > 30);
+
+        // Vuelve a la ruta más adelante: búsqueda completa, no solo la ventana anterior
+        NavigationEngine.Update back = at(engine, 170, 2);
+        assertEquals(NavigationEngine.State.ON_ROUTE, back.getState());
+        assertEquals(170, back.getTravelledMeters(), 0.5);
+    }
+
+    @Test
+    public void update_poorAccuracyWidensOffRouteThreshold() {
+        NavigationEngine engine = straightRoute();
+        at(engine, 40, 0);
+
+        for (int i = 0; i < 3; i++) {
+            engine.update(lat(45), lng(50), 60f);
+        }
+        assertEquals(NavigationEngine.State.ON_ROUTE, engine.getState());
+    }
+
+    @Test
+    public void update_arrivesAtTheEnd() {
+        NavigationEngine engine = straightRoute();
+        for (int x = 0; x < 190; x += 10) {
+            assertEquals(NavigationEngine.State.ON_ROUTE, at(engine, x, 0).getState());
+        }
+
+        NavigationEngine.Update update = at(engine, 195, 0);
+
+        assertEquals(NavigationEngine.State.ARRIVED, update.getState());
+        assertEquals(1.0, update.getProgress(), 1e-9);
+        // Después de llegar se ignoran los fixes
+        assertSame(update, at(engine, 0, 0));
+    }
+
+    @Test
+    public void update_loopRouteDoesNotArriveAtTheStart() {
+        NavigationEngine engine = loopRoute();
+
+        NavigationEngine.Update first = at(engine, 1, 1);
+
+        assertEquals(NavigationEngine.State.ON_ROUTE, first.getState());
+        assertTrue(first.getTravelledMeters() < 5);
+    }
+
+    @Test
+    public void update_loopRouteArrivesAfterTheWholeLoop() {
+        NavigationEngine engine = loopRoute();
+        at(engine, 1, 1);
+
+        int fixes = 0;
+        NavigationEngine.State state = engine.getState();
+        for (int d = 5; d <= 400 && state != NavigationEngine.State.ARRIVED; d += 5) {
+            int side = d / 100;
+            double r = d % 100;
+            double x = side == 0 ? r : side == 1 ? 100 : side == 2 ? 100 - r : 0;
+            double y = side == 0 ? 0 : side == 1 ? r : side == 2 ? 100 : side == 3 ? 100 - r : 0;
+            state = at(engine, x, y).getState();
+            fixes++;
+        }
+
+        assertEquals(NavigationEngine.State.ARRIVED, state);
+        // Llega en el último lado, no antes
+        assertTrue("Llegó tras " + fixes + " fixes", fixes > 75);
+    }
+
+    @Test
+    public void update_searchWindowStaysBounded() {
+        RouteBuilder route = new RouteBuilder();
+        for (int x = 0; x <= 5000; x += 5) {
+            route.point(x, 0, null);
+        }
+        NavigationEngine engine = route.build();
+        at(engine, 0, 0);
+
+        at(engine, 2500, 0);
+        at(engine, 2510, 0);
+
+        assertTrue(engine.getSegmentsExamined() < 100);
+    }
+
+    @Test
+    public void singlePointRouteArrivesNearby() {
+        NavigationEngine engine = new RouteBuilder().point(0, 0, null).build();
+
+        assertEquals(NavigationEngine.State.ON_ROUTE, at(engine, 50, 0).getState());
+        assertEquals(NavigationEngine.State.ARRIVED, at(engine, 5, 0).getState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRouteIsRejected() {
+        new NavigationEngine(CompactPolyline.EMPTY);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.lugarescomunes.repository;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class OutboxRepositoryTest {
+
+    private static final String TYPE = OutboxRepository.TYPE_RATE_ROUTE;
+
+    @Test
+    public void classify_successAndReplayAreSent() {
+        assertEquals(OutboxRepository.Outcome.SENT, OutboxRepository.classify(TYPE, 200));
+        assertEquals(OutboxRepository.Outcome.SENT, OutboxRepository.classify(TYPE, 201));
+        assertEquals(OutboxRepository.Outcome.SENT, OutboxRepository.classify(TYPE, 204));
+        // La Idempotency-Key ya se había procesado
+        assertEquals(OutboxRepository.Outcome.SENT, OutboxRepository.classify(TYPE, 409));
+    }
+
+    @Test
+    public void classify_transientErrorsAreRetried() {
+        for (int code : new int[]{401, 408, 429, 500, 502, 503, 504}) {
+            assertEquals("Código " + code, OutboxRepository.Outcome.RETRY, OutboxRepository.classify(TYPE, code));
+        }
+    }
+
+    @Test
+    public void classify_permanentErrorsAreDropped() {
+        for (int code : new int[]{400, 403, 404, 410, 422}) {
+            assertEquals("Código " + code, OutboxRepository.Outcome.DROP, OutboxRepository.classify(TYPE, code));
+        }
+    }
+
+    @Test
+    public void backoffDelay_growsExponentiallyWithJitter() {
+        long base = TimeUnit.SECONDS.toMillis(30);
+        for (int attempts = 1; attempts <= 5; attempts++) {
+            long full = base << (attempts - 1);
+            for (int sample = 0; sample < 100; sample++) {
+                long delay = OutboxRepository.backoffDelay(attempts);
+                assertTrue("Intento " + attempts + ": " + delay, delay >= full / 2 && delay <= full);
+            }
+        }
+    }
+
+    @Test
+    public void backoffDelay_isCappedAtOneHour() {
+        long max = TimeUnit.HOURS.toMillis(1);
+        for (int attempts : new int[]{8, 20, 64, 1000}) {
+            long delay = OutboxRepository.backoffDelay(attempts);
+            assertTrue("Intento " + attempts + ": " + delay, delay >= max / 2 && delay <= max);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.lugarescomunes.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void run_coalescesConcurrentCallsForSameKey() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> source = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = flight.run("k", () -> {
+            loads.incrementAndGet();
+            return source;
+        });
+        CompletableFuture<String> second = flight.run("k", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("otro");
+        });
+
+        assertTrue(flight.isInFlight("k"));
+        source.complete("valor");
+
+        assertEquals("valor", first.get());
+        assertEquals("valor", second.get());
+        assertEquals(1, loads.get());
+        assertEquals(2, flight.getRequestCount());
+        assertEquals(1, flight.getLoadCount());
+        assertEquals(1, flight.getCoalescedCount());
+        assertFalse(flight.isInFlight("k"));
+    }
+
+    @Test
+    public void run_coalescesAcrossThreads() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>("test");
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        int callers = 16;
+        CountDownLatch ready = new CountDownLatch(callers);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CompletableFuture<Integer>>> submitted = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                submitted.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return flight.run("k", () -> {
+                        loads.incrementAndGet();
+                        return source;
+                    });
+                }));
+            }
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (Future<CompletableFuture<Integer>> future : submitted) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            source.complete(42);
+
+            for (CompletableFuture<Integer> result : results) {
+                assertEquals(Integer.valueOf(42), result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void run_differentKeysLoadSeparately() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+
+        CompletableFuture<String> a = flight.run("a", () -> CompletableFuture.completedFuture("A"));
+        CompletableFuture<String> b = flight.run("b", () -> CompletableFuture.completedFuture("B"));
+
+        assertEquals("A", a.get());
+        assertEquals("B", b.get());
+        assertEquals(2, flight.getLoadCount());
+    }
+
+    @Test
+    public void run_afterCompletionStartsNewLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        AtomicInteger loads = new AtomicInteger();
+
+        flight.run("k", () -> CompletableFuture.completedFuture("v" + loads.incrementAndGet())).get();
+        String second = flight.run("k", () -> CompletableFuture.completedFuture("v" + loads.incrementAndGet())).get();
+
+        assertEquals("v2", second);
+        assertEquals(0, flight.getCoalescedCount());
+    }
+
+    @Test
+    public void run_propagatesErrorToEveryCaller() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.run("k", () -> source);
+        CompletableFuture<String> second = flight.run("k", () -> source);
+
+        IllegalStateException error = new IllegalStateException("sin red");
+        source.completeExceptionally(error);
+
+        for (CompletableFuture<String> caller : Arrays.asList(first, second)) {
+            try {
+                caller.get();
+                fail("Se esperaba el error de la carga");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+        // El error libera la clave: el próximo pedido vuelve a cargar
+        assertFalse(flight.isInFlight("k"));
+        assertEquals("ok", flight.run("k", () -> CompletableFuture.completedFuture("ok")).get());
+    }
+
+    @Test
+    public void run_loaderThatThrowsFailsTheFuture() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+
+        CompletableFuture<String> result = flight.run("k", () -> {
+            throw new IllegalArgumentException("mal armado");
+        });
+
+        try {
+            result.get();
+            fail("Se esperaba el error del loader");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertFalse(flight.isInFlight("k"));
+    }
+
+    @Test
+    public void run_copierGivesEachCallerItsOwnValue() throws Exception {
+        SingleFlight<String, List<String>> flight = new SingleFlight<>("test", ArrayList::new);
+        CompletableFuture<List<String>> source = new CompletableFuture<>();
+        CompletableFuture<List<String>> first = flight.run("k", () -> source);
+        CompletableFuture<List<String>> second = flight.run("k", () -> source);
+        source.complete(new ArrayList<>(Arrays.asList("a", "b")));
+
+        first.get().add("c");
+
+        assertEquals(Arrays.asList("a", "b"), second.get());
+    }
+
+    @Test
+    public void run_cancellingOneCallerDoesNotCancelOthers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test");
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.run("k", () -> source);
+        CompletableFuture<String> second = flight.run("k", () -> source);
+
+        first.cancel(true);
+        source.complete("valor");
+
+        assertTrue(first.isCancelled());
+        assertEquals("valor", second.get());
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.lugarescomunes.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TtlCacheTest {
+
+    private static final long TTL = 60_000;
+
+    @Test
+    public void get_returnsFreshValue() {
+        TtlCache<String, String> cache = new TtlCache<>(TTL);
+        cache.put("a", "uno");
+
+        assertEquals("uno", cache.get("a"));
+        assertTrue(cache.isFresh("a"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void get_expiredValueIsMissButStaleIsKept() {
+        TtlCache<String, String> cache = new TtlCache<>(TTL);
+        cache.put("a", "uno", TTL, System.currentTimeMillis() - TTL - 1);
+
+        assertNull(cache.get("a"));
+        assertFalse(cache.isFresh("a"));
+        assertEquals("uno", cache.getStale("a"));
+        assertTrue(cache.containsKey("a"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_keepsRestoredAge() {
+        TtlCache<String, String> cache = new TtlCache<>(TTL);
+        long storedAt = System.currentTimeMillis() - 10_000;
+        cache.put("a", "uno", TTL, storedAt);
+
+        assertEquals(storedAt, cache.getEntry("a").getStoredAt());
+        assertTrue(cache.getEntry("a").getAgeMillis() >= 10_000);
+        assertEquals("uno", cache.get("a"));
+    }
+
+    @Test
+    public void touch_renewsExpiredEntry() {
+        TtlCache<String, String> cache = new TtlCache<>(TTL);
+        cache.put("a", "uno", TTL, System.currentTimeMillis() - TTL - 1);
+
+        assertTrue(cache.touch("a"));
+        assertEquals("uno", cache.get("a"));
+        assertFalse(cache.touch("b"));
+    }
+
+    @Test
+    public void removeAndClear() {
+        TtlCache<String, String> cache = new TtlCache<>(TTL);
+        cache.put("a", "uno");
+        cache.put("b", "dos");
+
+        cache.remove("a");
+        assertNull(cache.getStale("a"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    // Peso = largo del texto
+    private static TtlCache<String, String> weighted(long maxWeight) {
+        return new TtlCache<>(TTL, maxWeight, (key, value) -> value.length());
+    }
+
+    @Test
+    public void weight_tracksPutsReplacementsAndRemovals() {
+        TtlCache<String, String> cache = weighted(100);
+        cache.put("a", "12345");
+        cache.put("b", "123");
+        assertEquals(8, cache.getWeight());
+
+        cache.put("a", "1");
+        assertEquals(4, cache.getWeight());
+
+        cache.remove("b");
+        assertEquals(1, cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedOverMaxWeight() {
+        TtlCache<String, String> cache = weighted(10);
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        // "a" pasa a ser la más usada
+        cache.get("a");
+        cache.put("c", "1234");
+
+        assertEquals(8, cache.getWeight());
+        assertNotNull(cache.getStale("a"));
+        assertNull(cache.getStale("b"));
+        assertNotNull(cache.getStale("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void put_evictsExpiredBeforeRecentlyUsed() {
+        TtlCache<String, String> cache = weighted(10);
+        cache.put("viejo", "1234", TTL, System.currentTimeMillis() - TTL - 1);
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+
+        assertNull(cache.getStale("viejo"));
+        assertNotNull(cache.getStale("a"));
+        assertNotNull(cache.getStale("b"));
+    }
+
+    @Test
+    public void put_rejectsEntryHeavierThanMaxWeight() {
+        TtlCache<String, String> cache = weighted(5);
+        cache.put("a", "12");
+        cache.put("b", "123456");
+
+        assertNull(cache.getStale("b"));
+        assertNotNull(cache.getStale("a"));
+        assertEquals(2, cache.getWeight());
+        assertEquals(1, cache.getRejectedCount());
+    }
+
+    @Test
+    public void trimToFraction_keepsMostRecentlyUsed() {
+        TtlCache<String, String> cache = weighted(100);
+        cache.put("a", "12345");
+        cache.put("b", "12345");
+        cache.put("c", "12345");
+        cache.put("d", "12345");
+        cache.get("a");
+        cache.get("b");
+
+        cache.trimToFraction(0.5);
+
+        assertEquals(10, cache.getWeight());
+        assertNotNull(cache.getStale("a"));
+        assertNotNull(cache.getStale("b"));
+        assertNull(cache.getStale("c"));
+        assertNull(cache.getStale("d"));
+
+        cache.trimToWeight(0);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+}
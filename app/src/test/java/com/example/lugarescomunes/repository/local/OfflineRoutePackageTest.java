@@ -0,0 +1,171 @@
+package com.example.lugarescomunes.repository.local;
+
+import com.example.lugarescomunes.models.CompactPolyline;
+import com.example.lugarescomunes.models.api.PlaceResponse;
+import com.example.lugarescomunes.models.api.RoutePointResponse;
+import com.example.lugarescomunes.models.api.RouteResponse;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OfflineRoutePackageTest {
+
+    private static final double E7_TOLERANCE = 1e-7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PlaceResponse destination() {
+        PlaceResponse place = new PlaceResponse();
+        place.setId("d1");
+        place.setName("Biblioteca Ñandú");
+        place.setCategory("Estudio");
+        place.setLatitude(new BigDecimal("-0.2101"));
+        place.setLongitude(new BigDecimal("-78.4891"));
+        place.setIsAvailable(true);
+        place.setCapacity(40);
+        place.setEquipment(new LinkedHashSet<>(Arrays.asList("wifi", "proyector")));
+        // Sin descripción, piso ni accesibilidad: deben volver como null
+        return place;
+    }
+
+    private static RouteResponse route(String id, Double fromLatitude, Integer distance, Boolean popular) {
+        RouteResponse route = new RouteResponse();
+        route.setId(id);
+        route.setName("Ruta " + id);
+        route.setFromLatitude(fromLatitude);
+        route.setFromLongitude(-78.49);
+        route.setTotalDistance(distance);
+        route.setAverageRating(4.5);
+        route.setPopular(popular);
+        return route;
+    }
+
+    private static List<RoutePointResponse> points(int count) {
+        List<RoutePointResponse> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RoutePointResponse point = new RoutePointResponse();
+            point.setLatitude(BigDecimal.valueOf(-0.2101 + i * 0.00005));
+            point.setLongitude(BigDecimal.valueOf(-78.4891 - i * 0.00003));
+            point.setStepOrder(i);
+            point.setInstruction(i == 2 ? "Gire a la derecha" : null);
+            points.add(point);
+        }
+        return points;
+    }
+
+    private OfflineRoutePackage roundTrip(PlaceResponse destination, List<RouteResponse> routes,
+                                          Map<String, List<RoutePointResponse>> pointsByRoute) throws IOException {
+        File file = folder.newFile("destino.lcrp");
+        Files.write(file.toPath(), OfflineRoutePackage.encode(destination, routes, pointsByRoute));
+        return OfflineRoutePackage.open(file);
+    }
+
+    @Test
+    public void encodeOpen_keepsDestinationAndNullFields() throws IOException {
+        OfflineRoutePackage routePackage = roundTrip(destination(), new ArrayList<>(), new HashMap<>());
+
+        PlaceResponse place = routePackage.getDestination();
+        assertEquals("d1", place.getId());
+        assertEquals("Biblioteca Ñandú", place.getName());
+        assertEquals("Estudio", place.getCategory());
+        assertEquals(-0.2101, place.getLatitude().doubleValue(), 0);
+        assertEquals(-78.4891, place.getLongitude().doubleValue(), 0);
+        assertEquals(Boolean.TRUE, place.getIsAvailable());
+        assertEquals(Integer.valueOf(40), place.getCapacity());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("wifi", "proyector")), place.getEquipment());
+        assertNull(place.getDescription());
+        assertNull(place.getFloorNumber());
+        assertNull(place.getAccessibilityFeatures());
+        assertTrue(routePackage.getRoutes().isEmpty());
+        assertTrue(routePackage.getCreatedAt() > 0);
+    }
+
+    @Test
+    public void encodeOpen_keepsRoutesAndTheirPolylines() throws IOException {
+        List<RouteResponse> routes = Arrays.asList(
+                route("r0", -0.2, 120, true),
+                route("r1", null, null, null),
+                route("r2", -0.3, 80, false));
+        Map<String, List<RoutePointResponse>> pointsByRoute = new HashMap<>();
+        pointsByRoute.put("r0", points(12));
+        pointsByRoute.put("r2", points(3));
+        // r1 no tiene puntos
+
+        OfflineRoutePackage routePackage = roundTrip(destination(), routes, pointsByRoute);
+
+        assertEquals(3, routePackage.getRoutes().size());
+        for (int i = 0; i < routes.size(); i++) {
+            RouteResponse expected = routes.get(i);
+            RouteResponse actual = routePackage.getRoutes().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getFromLatitude(), actual.getFromLatitude());
+            assertEquals(expected.getFromLongitude(), actual.getFromLongitude());
+            assertEquals(expected.getTotalDistance(), actual.getTotalDistance());
+            assertEquals(expected.getAverageRating(), actual.getAverageRating());
+            assertEquals(expected.getPopular(), actual.getPopular());
+            assertNull(actual.getDescription());
+            assertNull(actual.getIsActive());
+            assertSame(routePackage.getDestination(), actual.getToPlace());
+            assertTrue(routePackage.hasRoute(expected.getId()));
+
+            List<RoutePointResponse> expectedPoints = pointsByRoute.get(expected.getId());
+            CompactPolyline polyline = routePackage.getPolyline(expected.getId());
+            assertNotNull(polyline);
+            if (expectedPoints == null) {
+                assertTrue(polyline.isEmpty());
+                continue;
+            }
+            assertEquals(expectedPoints.size(), polyline.size());
+            for (int p = 0; p < expectedPoints.size(); p++) {
+                assertEquals(expectedPoints.get(p).getLatitude().doubleValue(), polyline.getLatitude(p), E7_TOLERANCE);
+                assertEquals(expectedPoints.get(p).getLongitude().doubleValue(), polyline.getLongitude(p), E7_TOLERANCE);
+                assertEquals(expectedPoints.get(p).getStepOrder(), polyline.getStepOrder(p));
+                assertEquals(expectedPoints.get(p).getInstruction(), polyline.getInstruction(p));
+            }
+        }
+        assertEquals(12, routePackage.getPoints("r0").size());
+    }
+
+    @Test
+    public void unknownRouteHasNoPolyline() throws IOException {
+        OfflineRoutePackage routePackage = roundTrip(destination(),
+                Arrays.asList(route("r0", -0.2, 120, true)), new HashMap<>());
+
+        assertFalse(routePackage.hasRoute("otra"));
+        assertNull(routePackage.getPolyline("otra"));
+        assertNull(routePackage.getPoints("otra"));
+    }
+
+    @Test
+    public void nullDestinationRoundTrips() throws IOException {
+        OfflineRoutePackage routePackage = roundTrip(null,
+                Arrays.asList(route("r0", -0.2, 120, true)), new HashMap<>());
+
+        assertNull(routePackage.getDestination());
+        assertNull(routePackage.getRoutes().get(0).getToPlace());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("otro.bin");
+        Files.write(file.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        OfflineRoutePackage.open(file);
+    }
+}
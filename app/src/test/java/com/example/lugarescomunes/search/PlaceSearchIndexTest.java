@@ -0,0 +1,110 @@
+package com.example.lugarescomunes.search;
+
+import com.example.lugarescomunes.Place;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlaceSearchIndexTest {
+
+    private static Place place(String id, String name, String category, String description) {
+        Place place = new Place();
+        place.setId(id);
+        place.setName(name);
+        place.setCategory(category);
+        place.setDescription(description);
+        return place;
+    }
+
+    private static PlaceSearchIndex catalog() {
+        return PlaceSearchIndex.build(Arrays.asList(
+                place("lib", "Biblioteca Central", "Estudio", "Libros y salas de lectura"),
+                place("lab", "Laboratorio de Química", "Laboratorio", "Reactivos"),
+                place("caf", "Cafetería Norte", "Comida", "Almuerzos"),
+                place("aud", "Auditorio Principal", "Eventos", "Junto a la biblioteca"),
+                place("fis", "Laboratorio de Física", "Laboratorio", "Óptica")));
+    }
+
+    private static List<String> ids(List<Place> places) {
+        List<String> ids = new ArrayList<>(places.size());
+        for (Place place : places) {
+            ids.add(place.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void search_ignoresAccentsAndCase() {
+        PlaceSearchIndex index = catalog();
+
+        assertEquals(Arrays.asList("lab"), ids(index.search("QUIMICA")));
+        assertEquals(Arrays.asList("lab"), ids(index.search("química")));
+        assertEquals(Arrays.asList("caf"), ids(index.search("cafeteria")));
+    }
+
+    @Test
+    public void search_matchesPrefixes() {
+        PlaceSearchIndex index = catalog();
+
+        assertEquals(Arrays.asList("lab", "fis"), ids(index.search("labora")));
+        assertEquals(Arrays.asList("lib"), ids(index.search("biblio cent")));
+    }
+
+    @Test
+    public void search_matchesInsideWords() {
+        PlaceSearchIndex index = catalog();
+
+        assertEquals(Arrays.asList("lib"), ids(index.search("ntral")));
+        assertEquals(Arrays.asList("caf"), ids(index.search("teria")));
+    }
+
+    @Test
+    public void search_toleratesTypos() {
+        PlaceSearchIndex index = catalog();
+
+        assertEquals(Arrays.asList("lib"), ids(index.search("bibloteca centrl")));
+        assertEquals(Arrays.asList("fis"), ids(index.search("fisca")));
+    }
+
+    @Test
+    public void search_nameMatchRanksAboveDescriptionMatch() {
+        // "biblioteca" está en el nombre de uno y en la descripción del otro
+        assertEquals(Arrays.asList("lib", "aud"), ids(catalog().search("biblioteca")));
+    }
+
+    @Test
+    public void search_requiresEveryTerm() {
+        PlaceSearchIndex index = catalog();
+
+        assertEquals(Arrays.asList("fis"), ids(index.search("laboratorio optica")));
+        assertTrue(index.search("laboratorio almuerzos").isEmpty());
+        assertTrue(index.search("xyz").isEmpty());
+    }
+
+    @Test
+    public void search_blankQueryReturnsEverythingAndLimitApplies() {
+        PlaceSearchIndex index = catalog();
+
+        assertEquals(5, index.search("  ").size());
+        assertEquals(1, index.search("laboratorio", 1).size());
+    }
+
+    @Test
+    public void build_incrementalMatchesFullBuild() {
+        PlaceSearchIndex previous = catalog();
+        List<Place> updated = new ArrayList<>(Arrays.asList(
+                place("lib", "Biblioteca Central", "Estudio", "Libros y salas de lectura"),
+                place("caf", "Cafetería Sur", "Comida", "Almuerzos")));
+
+        PlaceSearchIndex incremental = PlaceSearchIndex.build(updated, previous);
+
+        assertEquals(Arrays.asList("caf"), ids(incremental.search("sur")));
+        assertTrue(incremental.search("norte").isEmpty());
+        assertEquals(Arrays.asList("lib"), ids(incremental.search("biblioteca")));
+    }
+}